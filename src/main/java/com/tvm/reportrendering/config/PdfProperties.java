@@ -0,0 +1,365 @@
+package com.tvm.reportrendering.config;
+
+import com.tvm.reportrendering.model.OutputFormat;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration for PDF rendering, bound from the {@code report.pdf} section of application.yml.
+ */
+@Data
+@ConfigurationProperties(prefix = "report.pdf")
+public class PdfProperties {
+
+    private Engine engine = new Engine();
+    private Pool pool = new Pool();
+    private Shell shell = new Shell();
+    private Assets assets = new Assets();
+    private Fonts fonts = new Fonts();
+    private Workers workers = new Workers();
+    private Recycle recycle = new Recycle();
+    private Concurrency concurrency = new Concurrency();
+    private Streaming streaming = new Streaming();
+    private Sharding sharding = new Sharding();
+    private Optimizer optimizer = new Optimizer();
+    private Preview preview = new Preview();
+    private Readiness readiness = new Readiness();
+    private Deadline deadline = new Deadline();
+    private Metrics metrics = new Metrics();
+
+    @Data
+    public static class Engine {
+        /**
+         * Engine used when neither the request nor the template mapping names one:
+         * {@code chromium} or {@code openhtmltopdf}.
+         */
+        private String defaultEngine = "chromium";
+
+        /**
+         * Engine per template name, for templates that render correctly with a different engine.
+         */
+        private Map<String, String> templates = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class Pool {
+        /**
+         * Maximum number of long-lived browsers. Each browser is confined to its own thread.
+         */
+        private int size = 2;
+
+        /**
+         * How long a render waits for a free browser before failing.
+         */
+        private Duration leaseTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Number of browsers launched eagerly at startup; the rest are launched on demand.
+         */
+        private int warmMinimum = 1;
+    }
+
+    @Data
+    public static class Shell {
+        /**
+         * Keep each template's static shell loaded in pre-warmed pages and inject only the body per render.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of distinct shells kept loaded per browser.
+         */
+        private int maxPagesPerBrowser = 4;
+    }
+
+    @Data
+    public static class Assets {
+        /**
+         * Abort any request that is not for a preloaded template resource instead of letting it reach the network.
+         */
+        private boolean blockExternal = true;
+    }
+
+    @Data
+    public static class Fonts {
+        /**
+         * Load the configured fonts once at startup and declare them with {@code @font-face} in every
+         * Chromium render, served from memory, instead of resolving system fonts per render.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Font files to register. A face whose family matches a family used by the templates (such as
+         * Arial) replaces the system font for that family.
+         */
+        private List<Face> faces = new ArrayList<>();
+
+        @Data
+        public static class Face {
+            /**
+             * CSS font family the file is registered under.
+             */
+            private String family;
+
+            /**
+             * Font file (TrueType, OpenType or WOFF), as a file system path or {@code classpath:} location.
+             */
+            private String file;
+
+            /**
+             * CSS font weight of the file, e.g. 400 for regular and 700 for bold.
+             */
+            private int weight = 400;
+
+            /**
+             * CSS font style of the file: normal or italic.
+             */
+            private String style = "normal";
+        }
+    }
+
+    @Data
+    public static class Workers {
+        /**
+         * Render PDFs in separate worker processes instead of browsers inside the API process.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of worker processes, each owning one browser.
+         */
+        private int count = 2;
+
+        /**
+         * Directory holding the Unix domain sockets of the workers.
+         */
+        private String socketDir = System.getProperty("java.io.tmpdir") + "/report-render-workers";
+
+        /**
+         * How long to wait for a worker to launch its browser and open its socket.
+         */
+        private Duration startupTimeout = Duration.ofSeconds(60);
+
+        /**
+         * How long to wait for a worker to answer a render before it is killed and restarted.
+         */
+        private Duration renderTimeout = Duration.ofSeconds(120);
+
+        /**
+         * JVM options for the worker processes.
+         */
+        private List<String> jvmOptions = new ArrayList<>(List.of("-Xmx256m", "-XX:+UseSerialGC"));
+    }
+
+    @Data
+    public static class Recycle {
+        /**
+         * Retire a browser after this many renders; 0 disables the limit.
+         */
+        private int maxRenders = 1000;
+
+        /**
+         * Retire a browser once it has been running this long.
+         */
+        private Duration maxAge = Duration.ofMinutes(60);
+
+        /**
+         * Retire a browser when the resident memory of its driver and Chromium processes exceeds this size.
+         */
+        private DataSize maxRss = DataSize.ofMegabytes(512);
+
+        /**
+         * How often idle browsers are checked against the age and memory limits.
+         */
+        private Duration checkInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Concurrency {
+        /**
+         * Size the number of in-flight PDF renders from observed render latency instead of running them all at once.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Concurrency limit to start from.
+         */
+        private int initialLimit = 2;
+
+        /**
+         * Lowest the limit may shrink to.
+         */
+        private int minLimit = 1;
+
+        /**
+         * Highest the limit may grow to; 0 uses max-limit-per-browser times the browser pool size (or worker count).
+         */
+        private int maxLimit = 0;
+
+        /**
+         * Renders allowed in flight per browser (or worker) when max-limit is 0. Above 1 because a render also
+         * spends time outside the browser, on templating, streaming, merging and optimizing, or entirely in the
+         * openhtmltopdf engine; renders that only wait for a browser raise latency, and the limit backs off.
+         */
+        private int maxLimitPerBrowser = 4;
+
+        /**
+         * How strongly each latency sample moves the limit, between 0 and 1.
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * Ratio of short-term to long-term latency tolerated before the limit starts shrinking.
+         */
+        private double tolerance = 1.5;
+
+        /**
+         * How long a render waits for a slot before failing.
+         */
+        private Duration queueTimeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Streaming {
+        /**
+         * Stream PDFs out of Chromium into a temporary file and from there to the response, instead of
+         * holding the whole document in memory.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory for spooled PDFs and shard segments; files are deleted once sent or merged.
+         */
+        private String spoolDir = System.getProperty("java.io.tmpdir") + "/report-pdf-spool";
+
+        /**
+         * Size of each chunk read from Chromium.
+         */
+        private DataSize chunkSize = DataSize.ofKilobytes(512);
+    }
+
+    @Data
+    public static class Sharding {
+        /**
+         * Render independent sections of a report (such as the accounts of a statement) as separate PDFs
+         * in parallel and merge them.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Minimum number of sections before a report is sharded; smaller reports render as one document.
+         */
+        private int minShards = 4;
+
+        /**
+         * Maximum number of shards submitted for rendering at once, across all requests.
+         */
+        private int parallelism = 4;
+    }
+
+    @Data
+    public static class Optimizer {
+        /**
+         * Post-process generated PDFs to shrink them: collapse duplicate fonts, images and color profiles,
+         * compress uncompressed streams and write compressed object streams.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Threads optimizing PDFs; optimization is CPU bound and should not compete with Chromium.
+         */
+        private int threads = 2;
+
+        /**
+         * PDFs waiting for an optimizer thread; when the queue is full the PDF is sent unoptimized.
+         */
+        private int queueCapacity = 16;
+
+        /**
+         * Maximum time to wait for one optimization before sending the PDF unoptimized.
+         */
+        private Duration timeout = Duration.ofSeconds(30);
+
+        /**
+         * Linearize the optimized PDF ("fast web view") using qpdf.
+         */
+        private boolean linearize = false;
+
+        /**
+         * qpdf executable used for linearization.
+         */
+        private String qpdfPath = "qpdf";
+    }
+
+    @Data
+    public static class Preview {
+        /**
+         * Layout width of the preview in CSS pixels; the default is the width of an A4 page. The
+         * preview covers one A4 page of that width.
+         */
+        private int width = 794;
+
+        /**
+         * Resolution of the PNG; 96 renders one image pixel per CSS pixel.
+         */
+        private int dpi = 48;
+
+        /**
+         * How long clients may cache a preview before revalidating it with its ETag.
+         */
+        private Duration cacheMaxAge = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Readiness {
+        /**
+         * Run a test render once the application has started and report the application as not ready
+         * until it succeeds.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Delay between test render attempts while the browser is not yet usable.
+         */
+        private Duration retryInterval = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Deadline {
+        /**
+         * Deadline per output format for requests without an {@code X-Request-Timeout} header,
+         * measured from the time the request reaches the controller. Zero disables it.
+         */
+        private Map<OutputFormat, Duration> defaults = new LinkedHashMap<>(Map.of(
+                OutputFormat.HTML, Duration.ofSeconds(30),
+                OutputFormat.CSV, Duration.ofSeconds(30),
+                OutputFormat.PDF, Duration.ofSeconds(120),
+                OutputFormat.PNG, Duration.ofSeconds(30)));
+
+        /**
+         * Upper bound for deadlines requested through the header.
+         */
+        private Duration max = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Metrics {
+        /**
+         * Collect Chromium's layout, style, script, heap and node counters for every in-process
+         * render and publish them as {@code report.pdf.render.*} distributions.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Return the counters of a render in a {@code Server-Timing} response header.
+         */
+        private boolean debugHeaders = false;
+    }
+}
@@ -0,0 +1,37 @@
+package com.tvm.reportrendering.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.FileTemplateResolver;
+import org.thymeleaf.templateresolver.ITemplateResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Resolves templates from {@code report.templates.directory} ahead of the packaged ones.
+ *
+ * Spring Boot adds every {@link ITemplateResolver} bean to the template engine. This one comes
+ * first and only claims templates that exist in the directory, so anything else falls through
+ * to the classpath resolver ({@code spring.thymeleaf.template-resolver-order: 1}). Resolved
+ * templates are cached like the packaged ones; {@code TemplateWatcher} drops them on change.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "report.templates", name = "directory")
+public class TemplateConfig {
+
+    @Bean
+    public ITemplateResolver externalTemplateResolver(TemplateProperties properties) {
+        FileTemplateResolver resolver = new FileTemplateResolver();
+        resolver.setPrefix(Path.of(properties.getDirectory()).toAbsolutePath() + "/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setCheckExistence(true);
+        resolver.setCacheable(true);
+        resolver.setOrder(0);
+        return resolver;
+    }
+}
@@ -0,0 +1,75 @@
+package com.tvm.reportrendering.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration for report templates, bound from the {@code report.templates} section of application.yml.
+ */
+@Data
+@ConfigurationProperties(prefix = "report.templates")
+public class TemplateProperties {
+
+    /**
+     * Directory with templates laid out like {@code templates/} on the classpath
+     * ({@code <report>/<part>.html}). Templates found there take precedence over the packaged
+     * ones. Unset to use the packaged templates only.
+     */
+    private String directory;
+
+    /**
+     * Watch the directory and drop cached templates when files in it change, so edits take
+     * effect without a restart.
+     */
+    private boolean watch = true;
+
+    /**
+     * Quiet period after a change before the cache is cleared, so that an editor or a deployment
+     * writing several files causes a single reload.
+     */
+    private Duration debounce = Duration.ofMillis(500);
+
+    /**
+     * Language whose labels are used for keys missing from another language.
+     */
+    private String defaultLanguage = "en";
+
+    /**
+     * Language to take missing labels from before the default language, e.g. {@code sr: hr}.
+     */
+    private Map<String, String> labelFallbacks = new HashMap<>();
+
+    /**
+     * Render the {@code html} and {@code pdf} parts from compiled templates where they only use
+     * the expressions the compiler supports, instead of interpreting them with Thymeleaf.
+     */
+    private boolean compile = true;
+
+    private Fragments fragments = new Fragments();
+
+    @Data
+    public static class Fragments {
+        /**
+         * Reuse the rendered items of the listed loops of compiled templates across requests.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Estimated size of the rendered fragments kept, beyond which the least recently used are evicted.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(32);
+
+        /**
+         * Iterated expressions, as in {@code th:each="account : ${model.accounts}"}, whose items are
+         * cached. Only loops outside any other loop are cached.
+         */
+        private List<String> iterables = new ArrayList<>(List.of("model.accounts"));
+    }
+}
@@ -1,7 +1,12 @@
 package com.tvm.reportrendering.controller;
 
 import com.tvm.reportrendering.model.OutputFormat;
+import com.tvm.reportrendering.model.RenderCancelledException;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.model.RenderOptions;
 import com.tvm.reportrendering.model.ReportOutput;
+import com.tvm.reportrendering.model.SpooledContent;
+import com.tvm.reportrendering.model.TemplateCapabilities;
 import com.tvm.reportrendering.service.ReportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,6 +18,8 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -20,10 +27,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.regex.Pattern;
 
 import static com.tvm.reportrendering.util.SecurityUtils.sanitizeForLogging;
@@ -36,6 +44,10 @@ public class ReportController {
 
     private final ReportService reportService;
 
+    static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+
+    static final String SERVER_TIMING_HEADER = "Server-Timing";
+
     // Pattern to validate template names - only alphanumeric characters and underscores
     private static final Pattern TEMPLATE_NAME_PATTERN = Pattern.compile("^[a-zA-Z0-9_]+$");
 
@@ -51,21 +63,20 @@ public class ReportController {
 
     /**
      * Validates template name to prevent Server-side Template Injection (SSTI) attacks.
-     * Uses available templates from ReportService to create a dynamic whitelist.
+     * Uses the template registry of ReportService as a dynamic whitelist.
      *
      * @param templateName the template name to validate
+     * @return what the template supports
      * @throws IllegalArgumentException if template name is invalid or not allowed
      */
-    private void validateTemplateName(String templateName) {
+    private TemplateCapabilities validateTemplateName(String templateName) {
         if (templateName == null || templateName.trim().isEmpty()) {
             throw new IllegalArgumentException("Template name cannot be null or empty");
         }
 
-        // Get available templates from the service (dynamic whitelist)
-        Set<String> allowedTemplates = reportService.getAvailableTemplates().keySet();
-
-        // Check against whitelist of allowed template names
-        if (!allowedTemplates.contains(templateName)) {
+        // Check against whitelist of registered templates
+        TemplateCapabilities capabilities = reportService.getTemplateCapabilities(templateName);
+        if (capabilities == null) {
             log.error("Attempted access to unauthorized template: {}", sanitizeForLogging(templateName));
             throw new IllegalArgumentException("Template not allowed: " + templateName);
         }
@@ -81,6 +92,7 @@ public class ReportController {
             log.error("Template name contains path traversal attempt: {}", sanitizeForLogging(templateName));
             throw new IllegalArgumentException("Template name contains forbidden path characters");
         }
+        return capabilities;
     }
 
     /**
@@ -100,9 +112,40 @@ public class ReportController {
         }
     }
 
+    /**
+     * Validates that the template has the parts and labels needed for the request.
+     *
+     * @throws IllegalArgumentException if the format or language is not supported by the template
+     */
+    private void validateSupport(TemplateCapabilities capabilities, String templateName, OutputFormat output,
+                                 String language) {
+        if (output != null && !capabilities.supports(output)) {
+            throw new IllegalArgumentException("Template " + templateName + " does not support output format " + output);
+        }
+        if (!capabilities.supportsLanguage(language)) {
+            throw new IllegalArgumentException("Template " + templateName + " does not support language " + language);
+        }
+    }
+
+    /**
+     * Validates an optional PDF engine name against the engines available in this deployment.
+     *
+     * @param engine the requested engine, or null to use the template's configured engine
+     * @throws IllegalArgumentException if the engine is unknown
+     */
+    private void validatePdfEngine(String engine) {
+        if (engine == null) {
+            return;
+        }
+        if (!reportService.getAvailablePdfEngines().contains(engine)) {
+            log.error("Unknown PDF engine requested: {}", sanitizeForLogging(engine));
+            throw new IllegalArgumentException("Unknown PDF engine: " + engine);
+        }
+    }
+
     @Operation(
             summary = "Generate a financial report",
-            description = "Upload a JSON file containing financial data and generate a report in the specified format (HTML, CSV, or PDF)"
+            description = "Upload a JSON file containing financial data and generate a report in the specified format (HTML, CSV, PDF, or a PNG preview of the first PDF page)"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -111,11 +154,14 @@ public class ReportController {
                     content = {
                             @Content(mediaType = "text/html", schema = @Schema(type = "string"), examples = @ExampleObject(name = "HTML Report", value = "<html>...</html>")),
                             @Content(mediaType = "text/csv", schema = @Schema(type = "string"), examples = @ExampleObject(name = "CSV Report", value = "Account,Balance\nChequing,1000.00")),
-                            @Content(mediaType = "application/pdf", schema = @Schema(type = "string", format = "binary"))
+                            @Content(mediaType = "application/pdf", schema = @Schema(type = "string", format = "binary")),
+                            @Content(mediaType = "image/png", schema = @Schema(type = "string", format = "binary"))
                     }
             ),
+            @ApiResponse(responseCode = "304", description = "PNG preview unchanged since the version identified by If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid request parameters or file format"),
-            @ApiResponse(responseCode = "500", description = "Internal server error during report generation")
+            @ApiResponse(responseCode = "500", description = "Internal server error during report generation"),
+            @ApiResponse(responseCode = "503", description = "Report generation abandoned because the request deadline passed")
     })
     @PostMapping(value = "/reports", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> generateReport(
@@ -126,15 +172,25 @@ public class ReportController {
             @Parameter(description = "Output format for the report", required = true)
             @RequestParam("output") OutputFormat output,
             @Parameter(description = "Two-letter ISO language code", example = "en", required = true)
-            @RequestParam("language") String language) {
+            @RequestParam("language") String language,
+            @Parameter(description = "PDF engine to use instead of the template's default (chromium or openhtmltopdf)", example = "openhtmltopdf")
+            @RequestParam(value = "engine", required = false) String engine,
+            @Parameter(description = "ETag of a previously returned PNG preview")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @Parameter(description = "Milliseconds after which the caller stops waiting; defaults per output format")
+            @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) Long requestTimeout) {
 
         log.info("Received report generation request: template={}, output={}, language={}, file={}",
                 sanitizeForLogging(template), output, sanitizeForLogging(language), sanitizeForLogging(file.getOriginalFilename()));
 
         // Validate template name and language code to prevent SSTI and injection attacks
+        RenderDeadline deadline;
         try {
-            validateTemplateName(template);
+            TemplateCapabilities capabilities = validateTemplateName(template);
             validateLanguageCode(language);
+            validateSupport(capabilities, template, output, language);
+            validatePdfEngine(engine);
+            deadline = reportService.requestDeadline(output, requestTimeout);
         } catch (IllegalArgumentException e) {
             log.error("Validation failed: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -142,26 +198,64 @@ public class ReportController {
         }
 
         try {
+            InputStream input = file.getInputStream();
+            String previewETag = null;
+            if (output == OutputFormat.PNG) {
+                // Previews are identified by their input, so a client holding a current one gets a 304 without a render
+                byte[] data = file.getBytes();
+                previewETag = reportService.previewETag(data, template, language);
+                if (previewETag != null && previewETag.equals(ifNoneMatch)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(previewETag).build();
+                }
+                input = new ByteArrayInputStream(data);
+            }
+
             ReportOutput reportOutput = reportService.generateReport(
-                    file.getInputStream(),
+                    input,
                     template,
                     output,
-                    language
+                    language,
+                    new RenderOptions(engine, deadline)
             );
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.parseMediaType(reportOutput.getMimeType()));
+            if (reportOutput.getRenderMetrics() != null && reportService.isRenderMetricsHeaderEnabled()) {
+                headers.add(SERVER_TIMING_HEADER, reportOutput.getRenderMetrics().toServerTiming());
+            }
 
             if (output == OutputFormat.PDF) {
                 headers.add("Content-Disposition",
                         String.format("attachment; filename=\"%s-report.pdf\"", template));
+                if (reportOutput.isSpooled()) {
+                    // Copied from the spool file to the response; the file is deleted when the stream closes
+                    SpooledContent spooled = reportOutput.getContentAsSpooled();
+                    headers.setContentLength(spooled.getLength());
+                    return new ResponseEntity<>(new InputStreamResource(spooled.openStream()), headers, HttpStatus.OK);
+                }
+                return new ResponseEntity<>(reportOutput.getContentAsByteArray(), headers, HttpStatus.OK);
+            } else if (output == OutputFormat.PNG) {
+                headers.add("Content-Disposition",
+                        String.format("inline; filename=\"%s-preview.png\"", template));
+                if (previewETag != null) {
+                    headers.setETag(previewETag);
+                    headers.setCacheControl(CacheControl.maxAge(reportService.getPreviewCacheMaxAge()).cachePrivate());
+                }
                 return new ResponseEntity<>(reportOutput.getContentAsByteArray(), headers, HttpStatus.OK);
             } else if (output == OutputFormat.CSV) {
                 headers.add("Content-Disposition",
                         String.format("attachment; filename=\"%s-report.csv\"", template));
+                if (reportOutput.isStreamed()) {
+                    // Written row by row to the response by StreamedContentHttpMessageConverter
+                    return new ResponseEntity<>(reportOutput.getContentAsStreamed(), headers, HttpStatus.OK);
+                }
                 return new ResponseEntity<>(reportOutput.getContentAsString(), headers, HttpStatus.OK);
             } else {
                 // HTML
+                if (reportOutput.isStreamed()) {
+                    // Rendered in chunks while StreamedContentHttpMessageConverter writes the response
+                    return new ResponseEntity<>(reportOutput.getContentAsStreamed(), headers, HttpStatus.OK);
+                }
                 return new ResponseEntity<>(reportOutput.getContentAsString(), headers, HttpStatus.OK);
             }
 
@@ -169,6 +263,11 @@ public class ReportController {
             log.error("Error reading uploaded file: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", "Failed to read uploaded file: " + e.getMessage()));
+        } catch (RenderCancelledException e) {
+            // The caller has most likely gone already; the status is for those still waiting
+            log.warn("Report generation abandoned: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Report generation abandoned", "message", e.getMessage()));
         } catch (IllegalArgumentException e) {
             log.error("Invalid request parameters: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -192,7 +291,7 @@ public class ReportController {
                             mediaType = "application/json",
                             schema = @Schema(
                                     type = "object",
-                                    example = "{\"statement\": [\"HTML\", \"CSV\", \"PDF\"]}"
+                                    example = "{\"statement\": [\"HTML\", \"CSV\", \"PDF\", \"PNG\"]}"
                             )
                     )
             ),
@@ -210,4 +309,30 @@ public class ReportController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
+
+    @Operation(
+            summary = "Get a report template",
+            description = "Retrieve the output formats and languages a template can be rendered in"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Template found",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = TemplateCapabilities.class),
+                            examples = @ExampleObject(value = "{\"formats\": [\"PDF\", \"HTML\", \"CSV\", \"PNG\"], \"languages\": [\"en\", \"fr\", \"hr\", \"sr\"]}")
+                    )
+            ),
+            @ApiResponse(responseCode = "404", description = "No such template")
+    })
+    @GetMapping("/templates/{name}")
+    public ResponseEntity<TemplateCapabilities> getTemplate(
+            @Parameter(description = "Template name", example = "statement") @PathVariable("name") String name) {
+        TemplateCapabilities capabilities = reportService.getTemplateCapabilities(name);
+        if (capabilities == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(capabilities);
+    }
 }
\ No newline at end of file
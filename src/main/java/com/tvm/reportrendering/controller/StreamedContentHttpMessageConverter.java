@@ -0,0 +1,43 @@
+package com.tvm.reportrendering.controller;
+
+import com.tvm.reportrendering.model.StreamedContent;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link StreamedContent} response bodies straight to the response stream, on the request
+ * thread, so that a report can be returned in a {@code ResponseEntity} without being buffered.
+ */
+@Component
+public class StreamedContentHttpMessageConverter extends AbstractHttpMessageConverter<StreamedContent> {
+
+    public StreamedContentHttpMessageConverter() {
+        super(MediaType.ALL);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return StreamedContent.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected StreamedContent readInternal(Class<? extends StreamedContent> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Streamed content cannot be read", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(StreamedContent content, HttpOutputMessage outputMessage) throws IOException {
+        content.writeTo(outputMessage.getBody());
+    }
+}
@@ -3,7 +3,8 @@ package com.tvm.reportrendering.model;
 public enum OutputFormat {
     PDF("application/pdf"),
     HTML("text/html"),
-    CSV("text/csv");
+    CSV("text/csv"),
+    PNG("image/png");
 
     private final String mimeType;
 
@@ -0,0 +1,26 @@
+package com.tvm.reportrendering.model;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a report request is abandoned because its {@link RenderDeadline} has passed.
+ *
+ * Passed through unwrapped by every stage, so that the caller can tell an abandoned request
+ * from a failed one.
+ */
+public class RenderCancelledException extends RuntimeException {
+
+    private final String stage;
+
+    public RenderCancelledException(String stage, Duration timeout) {
+        super("Report request exceeded its deadline of " + timeout.toMillis() + " ms before " + stage);
+        this.stage = stage;
+    }
+
+    /**
+     * The stage that was not started.
+     */
+    public String getStage() {
+        return stage;
+    }
+}
@@ -0,0 +1,143 @@
+package com.tvm.reportrendering.model;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Point in time after which nobody will read the result of a report request.
+ *
+ * Rendering stops cooperatively: each stage calls {@link #checkpoint(String)} before it starts,
+ * and waits for a render slot, a browser or a page operation are capped at the time remaining.
+ * Work already inside a single browser call is not interrupted; it is abandoned at the next
+ * checkpoint, which closes the page it was using.
+ *
+ * The deadline of the request being processed is bound to the current thread by
+ * {@link #bind()}, so that components below {@code PdfEngine} can reach it through
+ * {@link #current()}. Work handed to another thread must bind it there as well.
+ */
+public final class RenderDeadline {
+
+    private static final RenderDeadline NONE = new RenderDeadline(null);
+
+    private static final ThreadLocal<RenderDeadline> CURRENT = new ThreadLocal<>();
+
+    private final Duration timeout;
+    private final long deadlineNanos;
+
+    private RenderDeadline(Duration timeout) {
+        this.timeout = timeout;
+        this.deadlineNanos = timeout != null ? System.nanoTime() + timeout.toNanos() : 0;
+    }
+
+    /**
+     * A deadline that never passes.
+     */
+    public static RenderDeadline none() {
+        return NONE;
+    }
+
+    /**
+     * A deadline the given time from now.
+     */
+    public static RenderDeadline after(Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Deadline must be in the future: " + timeout);
+        }
+        return new RenderDeadline(timeout);
+    }
+
+    /**
+     * The deadline bound to the current thread, or {@link #none()}.
+     */
+    public static RenderDeadline current() {
+        RenderDeadline deadline = CURRENT.get();
+        return deadline != null ? deadline : NONE;
+    }
+
+    /**
+     * Makes this the {@link #current()} deadline until the returned scope is closed.
+     */
+    public Scope bind() {
+        RenderDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    public boolean isBounded() {
+        return timeout != null;
+    }
+
+    public boolean isExpired() {
+        return timeout != null && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Time left before the deadline, never negative. Only meaningful for a bounded deadline.
+     */
+    public Duration remaining() {
+        return timeout != null ? Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())) : Duration.ZERO;
+    }
+
+    /**
+     * The given timeout, shortened to the time remaining if the deadline comes first.
+     */
+    public Duration cap(Duration timeout) {
+        if (this.timeout == null) {
+            return timeout;
+        }
+        Duration remaining = remaining();
+        return remaining.compareTo(timeout) < 0 ? remaining : timeout;
+    }
+
+    /**
+     * Throws {@link RenderCancelledException} if the deadline has passed, so that the given
+     * stage is not started.
+     */
+    public void checkpoint(String stage) {
+        if (isExpired()) {
+            throw new RenderCancelledException(stage, timeout);
+        }
+    }
+
+    /**
+     * Waits for the future until it completes or the deadline passes, whichever comes first.
+     *
+     * @return whether the future completed
+     */
+    public boolean await(Future<?> future) throws InterruptedException {
+        try {
+            if (timeout == null) {
+                future.get();
+            } else {
+                future.get(remaining().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } catch (ExecutionException e) {
+            // Completed exceptionally; the caller reads the outcome from the future
+        } catch (TimeoutException e) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return timeout != null ? "RenderDeadline[" + remaining().toMillis() + " of " + timeout.toMillis() + " ms left]" : "RenderDeadline[none]";
+    }
+
+    /**
+     * Restores the previous binding when closed. Also used by {@link RenderMetrics#bind()}.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,129 @@
+package com.tvm.reportrendering.model;
+
+import java.util.Locale;
+
+/**
+ * Chromium performance counters collected while rendering one report.
+ *
+ * Bound to the request thread like {@link RenderDeadline}, and filled in by the page renderer
+ * with the difference in the DevTools {@code Performance.getMetrics} counters across each
+ * page render. A sharded report adds up the time of every shard and keeps the largest heap
+ * and node count.
+ */
+public final class RenderMetrics {
+
+    private static final ThreadLocal<RenderMetrics> CURRENT = new ThreadLocal<>();
+
+    private final String template;
+
+    // Guarded by this; shards record from several browser threads
+    private int samples;
+    private double layoutSeconds;
+    private double recalcStyleSeconds;
+    private double scriptSeconds;
+    private long jsHeapUsedBytes;
+    private long nodes;
+    private int pageCount = -1;
+
+    public RenderMetrics(String template) {
+        this.template = template;
+    }
+
+    /**
+     * The metrics bound to the current thread, or null if the render is not being measured.
+     */
+    public static RenderMetrics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes these the {@link #current()} metrics until the returned scope is closed.
+     */
+    public RenderDeadline.Scope bind() {
+        RenderMetrics previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Binds the given metrics, if any, for work handed to another thread.
+     */
+    public static RenderDeadline.Scope bindIfPresent(RenderMetrics metrics) {
+        return metrics != null ? metrics.bind() : () -> {
+        };
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Adds the counters of one page render.
+     */
+    public synchronized void record(double layoutSeconds, double recalcStyleSeconds, double scriptSeconds,
+                                    long jsHeapUsedBytes, long nodes) {
+        samples++;
+        this.layoutSeconds += layoutSeconds;
+        this.recalcStyleSeconds += recalcStyleSeconds;
+        this.scriptSeconds += scriptSeconds;
+        this.jsHeapUsedBytes = Math.max(this.jsHeapUsedBytes, jsHeapUsedBytes);
+        this.nodes = Math.max(this.nodes, nodes);
+    }
+
+    public synchronized boolean hasSamples() {
+        return samples > 0;
+    }
+
+    public synchronized double getLayoutSeconds() {
+        return layoutSeconds;
+    }
+
+    public synchronized double getRecalcStyleSeconds() {
+        return recalcStyleSeconds;
+    }
+
+    public synchronized double getScriptSeconds() {
+        return scriptSeconds;
+    }
+
+    public synchronized long getJsHeapUsedBytes() {
+        return jsHeapUsedBytes;
+    }
+
+    public synchronized long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Pages in the rendered document, or -1 if not known, as for previews.
+     */
+    public synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    public synchronized void setPageCount(int pageCount) {
+        this.pageCount = pageCount;
+    }
+
+    /**
+     * The metrics as a {@code Server-Timing} header value, with durations in milliseconds.
+     */
+    public synchronized String toServerTiming() {
+        StringBuilder header = new StringBuilder()
+                .append(String.format(Locale.ROOT, "layout;dur=%.1f", layoutSeconds * 1000))
+                .append(String.format(Locale.ROOT, ", style;dur=%.1f", recalcStyleSeconds * 1000))
+                .append(String.format(Locale.ROOT, ", script;dur=%.1f", scriptSeconds * 1000))
+                .append(", jsheap;desc=\"").append(jsHeapUsedBytes).append('"')
+                .append(", nodes;desc=\"").append(nodes).append('"');
+        if (pageCount >= 0) {
+            header.append(", pages;desc=\"").append(pageCount).append('"');
+        }
+        return header.toString();
+    }
+}
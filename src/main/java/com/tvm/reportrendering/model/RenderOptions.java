@@ -0,0 +1,23 @@
+package com.tvm.reportrendering.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Per-request rendering choices that are not part of the report data.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RenderOptions {
+    private String pdfEngine; // null selects the engine configured for the template
+
+    @EqualsAndHashCode.Exclude
+    private RenderDeadline deadline = RenderDeadline.none();
+
+    public RenderOptions(String pdfEngine) {
+        this.pdfEngine = pdfEngine;
+    }
+}
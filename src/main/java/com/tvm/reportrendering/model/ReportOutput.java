@@ -1,31 +1,78 @@
 package com.tvm.reportrendering.model;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 
 @Getter
-@AllArgsConstructor
 @NoArgsConstructor
 public class ReportOutput {
     private String mimeType;
-    private Object content; // String for text formats, byte[] for binary
+    private Object content; // String or StreamedContent for text formats, byte[] or SpooledContent for binary
+
+    @Setter
+    private RenderMetrics renderMetrics; // set for PDF and PNG output when debug headers are enabled
+
+    public ReportOutput(String mimeType, Object content) {
+        this.mimeType = mimeType;
+        this.content = content;
+    }
 
     public boolean isBinary() {
-        return content instanceof byte[];
+        return content instanceof byte[] || content instanceof SpooledContent;
+    }
+
+    public boolean isSpooled() {
+        return content instanceof SpooledContent;
+    }
+
+    public boolean isStreamed() {
+        return content instanceof StreamedContent;
     }
 
+    /**
+     * The content as text; streamed content is written out into a string, for callers other than
+     * the HTTP response.
+     */
     public String getContentAsString() {
         if (content instanceof String) {
             return (String) content;
         }
+        if (content instanceof StreamedContent streamed) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try {
+                streamed.writeTo(outputStream);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write streamed content", e);
+            }
+            return outputStream.toString(StandardCharsets.UTF_8);
+        }
         throw new IllegalStateException("Content is not a string");
     }
 
+    public StreamedContent getContentAsStreamed() {
+        if (content instanceof StreamedContent) {
+            return (StreamedContent) content;
+        }
+        throw new IllegalStateException("Content is not streamed");
+    }
+
     public byte[] getContentAsByteArray() {
         if (content instanceof byte[]) {
             return (byte[]) content;
         }
         throw new IllegalStateException("Content is not a byte array");
     }
-}
\ No newline at end of file
+
+    public SpooledContent getContentAsSpooled() {
+        if (content instanceof SpooledContent) {
+            return (SpooledContent) content;
+        }
+        throw new IllegalStateException("Content is not spooled");
+    }
+}
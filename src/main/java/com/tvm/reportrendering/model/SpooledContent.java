@@ -0,0 +1,64 @@
+package com.tvm.reportrendering.model;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Report content spooled to a temporary file instead of being held on the heap.
+ *
+ * The file is read exactly once: it is deleted when the stream returned by
+ * {@link #openStream()} is closed, or by {@link #discard()} if it is never read.
+ */
+@Slf4j
+public final class SpooledContent {
+
+    private final Path file;
+    private final long length;
+
+    public SpooledContent(Path file) throws IOException {
+        this.file = file;
+        this.length = Files.size(file);
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Opens the content for reading; the file is deleted once the stream is closed.
+     */
+    public InputStream openStream() throws IOException {
+        return new FilterInputStream(Files.newInputStream(file)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    discard();
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads the whole content into memory and deletes the file.
+     */
+    public byte[] readAllBytes() throws IOException {
+        try (InputStream in = openStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    public void discard() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled content {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.tvm.reportrendering.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Report content produced while it is written to the response, so that its size does not
+ * depend on the heap.
+ *
+ * Written once, on the request thread, after the report has been processed. Once output has
+ * been sent, so has the status; an exception thrown after that makes the servlet container close
+ * the connection without ending the chunked body, so the client sees a failed transfer instead of
+ * a complete-looking partial report. Implementations must throw rather than return early.
+ */
+@FunctionalInterface
+public interface StreamedContent {
+
+    void writeTo(OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,27 @@
+package com.tvm.reportrendering.model;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Output formats and languages a report template can actually be rendered in, derived from the
+ * template files present for it.
+ *
+ * @param formats   formats whose template part exists, in {@link OutputFormat} order
+ * @param languages languages with a {@code language_<code>.json} label file, sorted
+ */
+public record TemplateCapabilities(List<OutputFormat> formats, List<String> languages) {
+
+    public TemplateCapabilities {
+        formats = List.copyOf(formats);
+        languages = List.copyOf(languages);
+    }
+
+    public boolean supports(OutputFormat format) {
+        return formats.contains(format);
+    }
+
+    public boolean supportsLanguage(String language) {
+        return languages.contains(language);
+    }
+}
@@ -0,0 +1,205 @@
+package com.tvm.reportrendering.pdf;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.model.RenderDeadline;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of PDF renders in flight, adjusting the limit from observed latency.
+ *
+ * Uses a gradient approach: every completed render compares its latency with a slowly
+ * moving long-term average. While renders finish about as fast as usual the limit grows by
+ * a small queue allowance; when they slow down, which is what happens once Chromium starts
+ * competing for CPU and memory, the limit shrinks in proportion. Because the baseline is an
+ * average over recent traffic rather than a fixed target, the limit settles for a mix of
+ * short and long statements alike. Latency of failed renders is ignored.
+ *
+ * A render waits for a slot at most until its {@link RenderDeadline}, so requests nobody is
+ * waiting for any more leave the queue instead of taking a slot.
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    // Number of samples the long-term latency average roughly spans
+    private static final int LONG_WINDOW = 100;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+    private final Duration queueTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private double longLatencyNanos;
+    private int inFlight;
+    private int queued;
+
+    @Autowired
+    public AdaptiveConcurrencyLimiter(PdfProperties properties, MeterRegistry meterRegistry) {
+        this(properties.getConcurrency(), defaultMaxLimit(properties));
+
+        Gauge.builder("report.pdf.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit of concurrent PDF renders")
+                .register(meterRegistry);
+        Gauge.builder("report.pdf.concurrency.inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("PDF renders currently running")
+                .register(meterRegistry);
+        Gauge.builder("report.pdf.concurrency.queued", this, AdaptiveConcurrencyLimiter::getQueued)
+                .description("PDF renders waiting for a slot")
+                .register(meterRegistry);
+    }
+
+    AdaptiveConcurrencyLimiter(PdfProperties.Concurrency config, int defaultMaxLimit) {
+        this.enabled = config.isEnabled();
+        this.minLimit = Math.max(1, config.getMinLimit());
+        this.maxLimit = Math.max(minLimit, config.getMaxLimit() > 0 ? config.getMaxLimit() : defaultMaxLimit);
+        this.smoothing = Math.min(1.0, Math.max(0.01, config.getSmoothing()));
+        this.tolerance = Math.max(1.0, config.getTolerance());
+        this.queueTimeout = config.getQueueTimeout();
+        this.limit = Math.min(maxLimit, Math.max(minLimit, config.getInitialLimit()));
+    }
+
+    private static int defaultMaxLimit(PdfProperties properties) {
+        int browsers = properties.getWorkers().isEnabled() ? properties.getWorkers().getCount() : properties.getPool().getSize();
+        return browsers * Math.max(1, properties.getConcurrency().getMaxLimitPerBrowser());
+    }
+
+    /**
+     * Runs the task once a slot is free, recording its latency to adjust the limit.
+     */
+    public <T> T execute(Supplier<T> task) {
+        if (!enabled) {
+            return task.get();
+        }
+
+        acquire();
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = task.get();
+            succeeded = true;
+            return result;
+        } finally {
+            release(succeeded ? System.nanoTime() - start : -1);
+        }
+    }
+
+    private void acquire() {
+        RenderDeadline deadline = RenderDeadline.current();
+        lock.lock();
+        try {
+            long remaining = deadline.cap(queueTimeout).toNanos();
+            queued++;
+            try {
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        deadline.checkpoint("acquiring a render slot");
+                        throw new IllegalStateException("Timed out after " + queueTimeout + " waiting for a PDF render slot");
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a PDF render slot", e);
+            } finally {
+                queued--;
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long latencyNanos) {
+        lock.lock();
+        try {
+            // Sample before decrementing so the in-flight count reflects the load the render saw
+            if (latencyNanos >= 0) {
+                onSample(latencyNanos, inFlight);
+            }
+            inFlight--;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adjusts the limit for one latency sample taken with the given number of renders in flight.
+     */
+    void onSample(long latencyNanos, int inFlightAtCompletion) {
+        lock.lock();
+        try {
+            if (longLatencyNanos == 0) {
+                longLatencyNanos = latencyNanos;
+            } else {
+                longLatencyNanos += (latencyNanos - longLatencyNanos) / LONG_WINDOW;
+            }
+            // Let the baseline recover quickly after a sustained slowdown has passed
+            if (longLatencyNanos > 2.0 * latencyNanos) {
+                longLatencyNanos *= 0.95;
+            }
+
+            // Not enough load to learn anything about a higher limit
+            if (inFlightAtCompletion < limit / 2) {
+                return;
+            }
+
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatencyNanos / latencyNanos));
+            double target = limit * gradient + Math.sqrt(limit);
+            double newLimit = limit * (1 - smoothing) + target * smoothing;
+            newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+            if ((int) newLimit != (int) limit) {
+                log.debug("PDF concurrency limit {} -> {} (latency {} ms, baseline {} ms)", (int) limit, (int) newLimit,
+                        TimeUnit.NANOSECONDS.toMillis(latencyNanos), TimeUnit.NANOSECONDS.toMillis((long) longLatencyNanos));
+            }
+            limit = newLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.tvm.reportrendering.pdf;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * In-memory copy of the shared template resources under {@code templates/resources/}.
+ *
+ * Everything is loaded once at startup with its content type and ETag precomputed, so
+ * serving an asset to the browser involves no disk or classpath I/O.
+ */
+@Slf4j
+@Component
+public class AssetRegistry {
+
+    private static final String RESOURCES_ROOT = "templates/";
+    private static final String RESOURCES_PATTERN = "classpath*:templates/resources/**";
+
+    private Map<String, Asset> assets = Map.of();
+
+    /**
+     * A preloaded asset, keyed by its path relative to {@code templates/}, e.g. {@code resources/logo.png}.
+     */
+    public record Asset(String path, byte[] body, String contentType, String etag) {
+    }
+
+    @PostConstruct
+    public void loadAssets() {
+        Map<String, Asset> loaded = new HashMap<>();
+        long totalBytes = 0;
+
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(RESOURCES_PATTERN);
+            for (Resource resource : resources) {
+                if (!resource.isReadable() || resource.getFilename() == null || resource.getFilename().isEmpty()) {
+                    continue;
+                }
+                String path = relativePath(resource);
+                if (path == null) {
+                    continue;
+                }
+                byte[] body;
+                try (InputStream inputStream = resource.getInputStream()) {
+                    body = inputStream.readAllBytes();
+                }
+                loaded.put(path, new Asset(path, body, contentTypeFor(path), etagFor(body)));
+                totalBytes += body.length;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load template resources", e);
+        }
+
+        assets = Map.copyOf(loaded);
+        log.info("Loaded {} template resources into memory ({} bytes)", assets.size(), totalBytes);
+    }
+
+    /**
+     * Returns the asset for a path such as {@code resources/logo.png}, or null if there is none.
+     */
+    public Asset get(String path) {
+        return assets.get(path);
+    }
+
+    /**
+     * Adds an asset that does not come from {@code templates/resources/}. Must be called during startup.
+     */
+    void register(String path, byte[] body) {
+        Map<String, Asset> updated = new HashMap<>(assets);
+        updated.put(path, new Asset(path, body, contentTypeFor(path), etagFor(body)));
+        assets = Map.copyOf(updated);
+    }
+
+    public int size() {
+        return assets.size();
+    }
+
+    private static String relativePath(Resource resource) throws IOException {
+        String url = resource.getURL().toString();
+        int index = url.lastIndexOf("/" + RESOURCES_ROOT + "resources/");
+        if (index < 0) {
+            return null;
+        }
+        return url.substring(index + RESOURCES_ROOT.length() + 1);
+    }
+
+    static String contentTypeFor(String resourcePath) {
+        String lowercasePath = resourcePath.toLowerCase();
+        if (lowercasePath.endsWith(".png")) {
+            return "image/png";
+        } else if (lowercasePath.endsWith(".jpg") || lowercasePath.endsWith(".jpeg")) {
+            return "image/jpeg";
+        } else if (lowercasePath.endsWith(".gif")) {
+            return "image/gif";
+        } else if (lowercasePath.endsWith(".svg")) {
+            return "image/svg+xml";
+        } else if (lowercasePath.endsWith(".css")) {
+            return "text/css";
+        } else if (lowercasePath.endsWith(".js")) {
+            return "application/javascript";
+        } else if (lowercasePath.endsWith(".ttf")) {
+            return "font/ttf";
+        } else if (lowercasePath.endsWith(".otf")) {
+            return "font/otf";
+        } else if (lowercasePath.endsWith(".woff")) {
+            return "font/woff";
+        } else if (lowercasePath.endsWith(".woff2")) {
+            return "font/woff2";
+        } else {
+            return "application/octet-stream";
+        }
+    }
+
+    private static String etagFor(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.tvm.reportrendering.pdf;
+
+import com.microsoft.playwright.Page;
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.model.RenderDeadline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Pool of long-lived browsers shared by all PDF renders.
+ *
+ * Up to {@code report.pdf.pool.size} browsers are kept alive, {@code warm-minimum} of them
+ * launched at startup and the rest on first demand. A render leases an idle browser, runs
+ * against a fresh context and page, and hands the browser back.
+ *
+ * Browsers are recycled according to {@link BrowserRecyclePolicy}: the policy is checked
+ * whenever a browser is handed back and periodically for idle browsers. A replacement is
+ * launched first and the old browser keeps serving until the replacement is ready, so
+ * recycling does not reduce capacity.
+ *
+ * Not created when PDFs are rendered by out-of-process workers.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "report.pdf.workers", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class BrowserPool {
+
+    private final PdfProperties.Pool config;
+    private final PdfProperties.Shell shellConfig;
+    private final PdfProperties.Recycle recycleConfig;
+    private final BrowserRecyclePolicy recyclePolicy;
+    private final ScheduledExecutorService watchdog;
+
+    private final BlockingQueue<BrowserWorker> idleWorkers = new LinkedBlockingQueue<>();
+    private final List<BrowserWorker> workers = new CopyOnWriteArrayList<>();
+
+    private int nextWorkerId;
+    private boolean shuttingDown;
+
+    public BrowserPool(PdfProperties properties) {
+        this.config = properties.getPool();
+        this.shellConfig = properties.getShell();
+        this.recycleConfig = properties.getRecycle();
+        this.recyclePolicy = new BrowserRecyclePolicy(recycleConfig);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pdf-browser-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        int warmCount = Math.min(config.getWarmMinimum(), config.getSize());
+        log.info("Initializing browser pool: size={}, warmMinimum={}, leaseTimeout={}",
+                config.getSize(), warmCount, config.getLeaseTimeout());
+
+        for (int i = 0; i < warmCount; i++) {
+            BrowserWorker worker = createWorker();
+            worker.start().whenComplete((ignored, error) -> {
+                if (error != null) {
+                    log.warn("Failed to warm browser {}: {}", worker.getId(), error.getMessage());
+                }
+            });
+            idleWorkers.offer(worker);
+        }
+
+        long checkMillis = recycleConfig.getCheckInterval().toMillis();
+        if (checkMillis > 0) {
+            watchdog.scheduleWithFixedDelay(this::checkIdleWorkers, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Leases a browser, runs the task against a fresh page and returns the browser to the pool.
+     */
+    public <T> T withPage(Function<Page, T> task) {
+        BrowserWorker worker = acquire();
+        try {
+            return worker.execute(task);
+        } finally {
+            releaseWhenIdle(worker);
+        }
+    }
+
+    /**
+     * Leases a browser and runs the task against its pre-warmed page for the given shell,
+     * creating and initializing that page on first use.
+     */
+    public <T> T withShellPage(String shellKey, Consumer<Page> initializer, Function<Page, T> task) {
+        BrowserWorker worker = acquire();
+        try {
+            return worker.executeOnShell(shellKey, initializer, task);
+        } finally {
+            releaseWhenIdle(worker);
+        }
+    }
+
+    private BrowserWorker acquire() {
+        BrowserWorker worker = idleWorkers.poll();
+        if (worker != null) {
+            return worker;
+        }
+
+        worker = createWorkerIfBelowLimit();
+        if (worker != null) {
+            return worker;
+        }
+
+        RenderDeadline deadline = RenderDeadline.current();
+        try {
+            worker = idleWorkers.poll(deadline.cap(config.getLeaseTimeout()).toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a browser", e);
+        }
+
+        if (worker == null) {
+            deadline.checkpoint("leasing a browser");
+            throw new IllegalStateException("Timed out after " + config.getLeaseTimeout() + " waiting for a browser");
+        }
+        return worker;
+    }
+
+    private synchronized BrowserWorker createWorkerIfBelowLimit() {
+        if (workers.size() >= config.getSize()) {
+            return null;
+        }
+        return createWorker();
+    }
+
+    private synchronized BrowserWorker createWorker() {
+        BrowserWorker worker = new BrowserWorker(nextWorkerId++, shellConfig.getMaxPagesPerBrowser());
+        workers.add(worker);
+        log.debug("Created browser worker {} ({} of {})", worker.getId(), workers.size(), config.getSize());
+        return worker;
+    }
+
+    /**
+     * Returns the worker to the pool once its render has finished. A render abandoned at its
+     * deadline keeps running, so the worker stays leased until then rather than making the next
+     * request queue behind it.
+     */
+    private void releaseWhenIdle(BrowserWorker worker) {
+        CompletableFuture<Void> idle = worker.whenIdle();
+        if (idle.isDone()) {
+            release(worker);
+            return;
+        }
+        log.debug("Browser {} returns to the pool when its abandoned render finishes", worker.getId());
+        idle.whenComplete((ignored, error) -> release(worker));
+    }
+
+    private void release(BrowserWorker worker) {
+        synchronized (this) {
+            if (worker.getState() == BrowserWorker.State.RETIRED) {
+                // Its replacement is already serving
+                workers.remove(worker);
+                closeInBackground(worker);
+                return;
+            }
+            checkRecycle(worker);
+        }
+        idleWorkers.offer(worker);
+    }
+
+    private void checkIdleWorkers() {
+        try {
+            for (BrowserWorker worker : idleWorkers) {
+                synchronized (this) {
+                    checkRecycle(worker);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Browser recycle check failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts recycling the worker if the policy says so. Must hold the pool lock.
+     */
+    private void checkRecycle(BrowserWorker worker) {
+        if (shuttingDown || worker.getState() != BrowserWorker.State.ACTIVE) {
+            return;
+        }
+        String reason = recyclePolicy.recycleReason(worker);
+        if (reason == null) {
+            return;
+        }
+
+        worker.setState(BrowserWorker.State.RETIRING);
+        BrowserWorker replacement = new BrowserWorker(nextWorkerId++, shellConfig.getMaxPagesPerBrowser());
+        log.info("Recycling browser {} ({}), warming replacement {}", worker.getId(), reason, replacement.getId());
+        replacement.start().whenComplete((ignored, error) -> completeRecycle(worker, replacement, error));
+    }
+
+    private synchronized void completeRecycle(BrowserWorker retiring, BrowserWorker replacement, Throwable error) {
+        if (shuttingDown) {
+            closeInBackground(replacement);
+            return;
+        }
+        if (error != null) {
+            // Keep the old browser serving; the policy is checked again on its next release
+            log.warn("Failed to warm replacement for browser {}: {}", retiring.getId(), error.getMessage());
+            retiring.setState(BrowserWorker.State.ACTIVE);
+            closeInBackground(replacement);
+            return;
+        }
+
+        workers.add(replacement);
+        idleWorkers.offer(replacement);
+        retiring.setState(BrowserWorker.State.RETIRED);
+        if (idleWorkers.remove(retiring)) {
+            workers.remove(retiring);
+            closeInBackground(retiring);
+        }
+        log.info("Browser {} replaced by {}", retiring.getId(), replacement.getId());
+    }
+
+    private static void closeInBackground(BrowserWorker worker) {
+        CompletableFuture.runAsync(worker::close);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            shuttingDown = true;
+        }
+        watchdog.shutdownNow();
+        log.info("Shutting down browser pool with {} browsers", workers.size());
+        for (BrowserWorker worker : workers) {
+            worker.close();
+        }
+        workers.clear();
+        idleWorkers.clear();
+    }
+}
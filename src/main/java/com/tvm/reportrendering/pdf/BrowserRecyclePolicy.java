@@ -0,0 +1,49 @@
+package com.tvm.reportrendering.pdf;
+
+import com.tvm.reportrendering.config.PdfProperties;
+
+import java.time.Duration;
+
+/**
+ * Decides when a long-lived browser should be replaced.
+ *
+ * A browser is retired after a number of renders, after a maximum age, or when the
+ * resident memory of its driver and Chromium processes crosses a threshold. A limit of
+ * zero (or a null duration/size) disables that criterion.
+ */
+public class BrowserRecyclePolicy {
+
+    private final PdfProperties.Recycle config;
+
+    public BrowserRecyclePolicy(PdfProperties.Recycle config) {
+        this.config = config;
+    }
+
+    /**
+     * Returns why the worker should be recycled, or null if it can keep serving.
+     */
+    public String recycleReason(BrowserWorker worker) {
+        String reason = recycleReason(worker.getRenderCount(), worker.getAge());
+        if (reason != null) {
+            return reason;
+        }
+        return rssReason(worker.residentSetBytes());
+    }
+
+    String recycleReason(int renderCount, Duration age) {
+        if (config.getMaxRenders() > 0 && renderCount >= config.getMaxRenders()) {
+            return "served " + renderCount + " renders";
+        }
+        if (config.getMaxAge() != null && age != null && age.compareTo(config.getMaxAge()) >= 0) {
+            return "reached age " + age.toMinutes() + " min";
+        }
+        return null;
+    }
+
+    String rssReason(long residentSetBytes) {
+        if (config.getMaxRss() != null && residentSetBytes > config.getMaxRss().toBytes()) {
+            return "resident memory " + residentSetBytes / (1024 * 1024) + " MB";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,332 @@
+package com.tvm.reportrendering.pdf;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.model.RenderMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A long-lived Playwright driver and Chromium browser confined to a single thread.
+ *
+ * Playwright is not thread-safe, so every interaction with the driver, the browser and
+ * the pages it creates happens on the worker's own thread. Callers submit work through
+ * {@link #execute(Function)} and block until it completes.
+ *
+ * A worker can also keep a small number of pre-warmed "shell" pages alive in a dedicated
+ * context, see {@link #executeOnShell(String, Consumer, Function)}.
+ *
+ * The caller's {@link RenderDeadline} is bound on the worker thread and caps the page's
+ * operation timeouts. A caller stops waiting once it passes; the task then fails at its next
+ * checkpoint or page operation, which closes the page, and the worker takes the next task.
+ * {@link RenderMetrics} of the caller are bound on the worker thread the same way.
+ */
+@Slf4j
+public class BrowserWorker implements AutoCloseable {
+
+    /**
+     * Lifecycle of a worker within the pool while it is being recycled.
+     */
+    public enum State {
+        ACTIVE,
+        /** A replacement is being warmed; the worker keeps serving meanwhile. */
+        RETIRING,
+        /** The replacement is in service; the worker is closed once its current lease ends. */
+        RETIRED
+    }
+
+    // Serializes driver launches so each worker can identify the driver process it started
+    private static final Object LAUNCH_LOCK = new Object();
+
+    // Playwright's own default for page operations
+    private static final double DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private final int id;
+    private final int maxShellPages;
+    private final ExecutorService executor;
+
+    // The render last submitted, which may still be running after its caller gave up at the deadline
+    private volatile Future<?> currentTask;
+
+    // Only accessed from the worker thread
+    private Playwright playwright;
+    private Browser browser;
+    private BrowserContext shellContext;
+    private final Map<String, Page> shellPages = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Read by the pool when deciding whether to recycle the worker
+    private final AtomicInteger renderCount = new AtomicInteger();
+    private volatile long launchedAtNanos;
+    private volatile ProcessHandle driverProcess;
+    private volatile State state = State.ACTIVE;
+
+    public BrowserWorker(int id, int maxShellPages) {
+        this.id = id;
+        this.maxShellPages = Math.max(1, maxShellPages);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pdf-browser-" + id);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    /**
+     * Number of renders since the browser was last launched.
+     */
+    public int getRenderCount() {
+        return renderCount.get();
+    }
+
+    /**
+     * Time since the browser was last launched, or null if it has not been launched yet.
+     */
+    public Duration getAge() {
+        long launchedAt = launchedAtNanos;
+        return launchedAt == 0 ? null : Duration.ofNanos(System.nanoTime() - launchedAt);
+    }
+
+    /**
+     * Resident memory of the Playwright driver and the Chromium processes under it, in bytes,
+     * or -1 if it cannot be determined.
+     */
+    public long residentSetBytes() {
+        ProcessHandle driver = driverProcess;
+        if (driver == null || !driver.isAlive()) {
+            return -1;
+        }
+        return ProcessMemory.residentSetBytes(driver);
+    }
+
+    /**
+     * Launches the browser in the background so that the first render does not pay for it.
+     */
+    public CompletableFuture<Void> start() {
+        return CompletableFuture.runAsync(this::ensureBrowser, executor);
+    }
+
+    /**
+     * Runs the task against a fresh page in a fresh browser context, closing both afterwards.
+     */
+    public <T> T execute(Function<Page, T> task) {
+        RenderDeadline deadline = RenderDeadline.current();
+        RenderMetrics metrics = RenderMetrics.current();
+        Future<T> future = submit(() -> {
+            try (RenderDeadline.Scope ignored = deadline.bind();
+                 RenderDeadline.Scope measured = RenderMetrics.bindIfPresent(metrics)) {
+                deadline.checkpoint("rendering");
+                ensureBrowser();
+                renderCount.incrementAndGet();
+                try (BrowserContext context = browser.newContext()) {
+                    Page page = context.newPage();
+                    applyTimeout(page, deadline);
+                    return task.apply(page);
+                }
+            }
+        });
+        return await(future, deadline);
+    }
+
+    /**
+     * Runs the task against a long-lived page that already has the given shell loaded.
+     *
+     * The page is created and passed to {@code initializer} the first time a shell is seen,
+     * and reused afterwards. The least recently used shell page is closed once more than
+     * {@code maxShellPages} are open. A page whose task fails is discarded, since its state
+     * is unknown.
+     */
+    public <T> T executeOnShell(String shellKey, Consumer<Page> initializer, Function<Page, T> task) {
+        RenderDeadline deadline = RenderDeadline.current();
+        RenderMetrics metrics = RenderMetrics.current();
+        Future<T> future = submit(() -> {
+            try (RenderDeadline.Scope ignored = deadline.bind();
+                 RenderDeadline.Scope measured = RenderMetrics.bindIfPresent(metrics)) {
+                deadline.checkpoint("rendering");
+                ensureBrowser();
+                renderCount.incrementAndGet();
+                Page page = shellPages.get(shellKey);
+                if (page == null || page.isClosed()) {
+                    page = openShellPage(initializer);
+                    shellPages.put(shellKey, page);
+                    evictShellPages();
+                }
+
+                try {
+                    // Shell pages are reused, so an unbounded render resets the timeout of the previous one
+                    page.setDefaultTimeout(DEFAULT_TIMEOUT_MILLIS);
+                    applyTimeout(page, deadline);
+                    return task.apply(page);
+                } catch (RuntimeException e) {
+                    shellPages.remove(shellKey);
+                    page.close();
+                    throw e;
+                }
+            }
+        });
+        return await(future, deadline);
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        Future<T> future = executor.submit(task);
+        currentTask = future;
+        return future;
+    }
+
+    /**
+     * Completes once no render is running in this browser. A render abandoned at its deadline is
+     * not interrupted and keeps the browser busy until it finishes.
+     */
+    public CompletableFuture<Void> whenIdle() {
+        Future<?> task = currentTask;
+        if (task == null || task.isDone()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            // Runs after the task, on the same single thread
+            return CompletableFuture.runAsync(() -> {
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            // Closed
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private static void applyTimeout(Page page, RenderDeadline deadline) {
+        if (deadline.isBounded()) {
+            // Zero would disable the timeout
+            page.setDefaultTimeout(Math.max(1, deadline.cap(Duration.ofMillis((long) DEFAULT_TIMEOUT_MILLIS)).toMillis()));
+        }
+    }
+
+    private Page openShellPage(Consumer<Page> initializer) {
+        if (shellContext == null) {
+            shellContext = browser.newContext();
+        }
+        Page page = shellContext.newPage();
+        try {
+            initializer.accept(page);
+        } catch (RuntimeException e) {
+            page.close();
+            throw e;
+        }
+        log.debug("Warmed shell page in browser {} ({} open)", id, shellPages.size() + 1);
+        return page;
+    }
+
+    private void evictShellPages() {
+        Iterator<Page> iterator = shellPages.values().iterator();
+        while (shellPages.size() > maxShellPages && iterator.hasNext()) {
+            Page eldest = iterator.next();
+            iterator.remove();
+            eldest.close();
+        }
+    }
+
+    private void ensureBrowser() {
+        if (browser != null && browser.isConnected()) {
+            return;
+        }
+        if (browser != null) {
+            log.warn("Browser {} is disconnected, relaunching", id);
+        }
+        closeQuietly();
+
+        long start = System.nanoTime();
+        synchronized (LAUNCH_LOCK) {
+            Set<Long> before = childPids();
+            playwright = Playwright.create();
+            driverProcess = ProcessHandle.current().children()
+                    .filter(child -> !before.contains(child.pid()))
+                    .findFirst()
+                    .orElse(null);
+        }
+        browser = playwright.chromium().launch();
+        renderCount.set(0);
+        launchedAtNanos = System.nanoTime();
+        log.info("Launched browser {} ({}) in {} ms", id, browser.version(), (launchedAtNanos - start) / 1_000_000);
+    }
+
+    private static Set<Long> childPids() {
+        return ProcessHandle.current().children().map(ProcessHandle::pid).collect(Collectors.toSet());
+    }
+
+    private void closeQuietly() {
+        try {
+            if (playwright != null) {
+                // Closing Playwright closes the browser it launched as well
+                playwright.close();
+            }
+        } catch (Exception e) {
+            log.warn("Error closing browser {}: {}", id, e.getMessage());
+        } finally {
+            playwright = null;
+            browser = null;
+            driverProcess = null;
+            shellContext = null;
+            shellPages.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            executor.submit(this::closeQuietly).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Error closing browser {}: {}", id, e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> T await(Future<T> future, RenderDeadline deadline) {
+        try {
+            if (!deadline.await(future)) {
+                // Not cancelled: Playwright must not be interrupted mid-call; the task stops at its next checkpoint
+                deadline.checkpoint("the render completed");
+            }
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for browser", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+}
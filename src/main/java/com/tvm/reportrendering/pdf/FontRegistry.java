@@ -0,0 +1,179 @@
+package com.tvm.reportrendering.pdf;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Curated fonts for PDF rendering, loaded once at startup.
+ *
+ * Each configured font file is registered in the {@link AssetRegistry} and declared in an
+ * {@code @font-face} stylesheet that {@link #apply(String)} adds to the head of every
+ * document, so Chromium loads the font from memory instead of resolving system fonts on
+ * every render. With shell pages the stylesheet is part of the shell, so the fonts stay
+ * loaded between renders. The openhtmltopdf engine registers the same fonts directly.
+ *
+ * Header and footer templates are rendered by Chromium outside the page and keep using
+ * system fonts.
+ */
+@Slf4j
+@Component
+public class FontRegistry {
+
+    /**
+     * System property carrying the configured faces to out-of-process render workers.
+     */
+    public static final String FACES_PROPERTY = "report.pdf.fonts.faces";
+
+    // Any origin works: the router serves every URL containing /resources/ from the asset registry
+    private static final String FONT_URL_PREFIX = "https://report.local/";
+
+    private static final Pattern HEAD_PATTERN = Pattern.compile("<head(\\s[^>]*)?>", Pattern.CASE_INSENSITIVE);
+
+    private final AssetRegistry assetRegistry;
+    private final PdfProperties.Fonts config;
+
+    private List<Font> fonts = List.of();
+    private String stylesheet = "";
+
+    /**
+     * A loaded font file.
+     */
+    public record Font(String family, int weight, String style, String path, byte[] body) {
+    }
+
+    public FontRegistry(AssetRegistry assetRegistry, PdfProperties properties) {
+        this.assetRegistry = assetRegistry;
+        this.config = properties.getFonts();
+    }
+
+    @PostConstruct
+    public void loadFonts() {
+        if (!config.isEnabled() || config.getFaces().isEmpty()) {
+            return;
+        }
+
+        List<Font> loaded = new ArrayList<>();
+        StringBuilder css = new StringBuilder("<style id=\"report-fonts\">");
+        long totalBytes = 0;
+        for (PdfProperties.Fonts.Face face : config.getFaces()) {
+            Font font = load(face);
+            assetRegistry.register(font.path(), font.body());
+            loaded.add(font);
+            totalBytes += font.body().length;
+
+            css.append("@font-face{font-family:\"").append(font.family()).append('"')
+                    .append(";src:url(\"").append(FONT_URL_PREFIX).append(font.path()).append("\")")
+                    .append(";font-weight:").append(font.weight())
+                    .append(";font-style:").append(font.style())
+                    .append(";font-display:block}");
+        }
+        css.append("</style>");
+
+        fonts = List.copyOf(loaded);
+        stylesheet = css.toString();
+        log.info("Registered {} fonts for PDF rendering ({} bytes)", fonts.size(), totalBytes);
+    }
+
+    public List<Font> getFonts() {
+        return fonts;
+    }
+
+    /**
+     * Adds the {@code @font-face} declarations to the head of the document, ahead of the
+     * template's own styles. Returns the document unchanged if no fonts are registered.
+     */
+    public String apply(String html) {
+        if (stylesheet.isEmpty() || html == null) {
+            return html;
+        }
+        Matcher head = HEAD_PATTERN.matcher(html);
+        if (head.find()) {
+            return html.substring(0, head.end()) + stylesheet + html.substring(head.end());
+        }
+        return stylesheet + html;
+    }
+
+    private static Font load(PdfProperties.Fonts.Face face) {
+        if (face.getFamily() == null || face.getFamily().isBlank() || face.getFile() == null) {
+            throw new IllegalStateException("Font faces need a family and a file: " + face);
+        }
+        if (face.getFamily().contains("\"") || !face.getStyle().matches("normal|italic|oblique")) {
+            throw new IllegalStateException("Invalid font face: " + face);
+        }
+
+        Resource resource = face.getFile().startsWith("classpath:")
+                ? new ClassPathResource(face.getFile().substring("classpath:".length()))
+                : new FileSystemResource(face.getFile());
+        byte[] body;
+        try (InputStream in = resource.getInputStream()) {
+            body = in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read font file " + face.getFile() + " for " + face.getFamily(), e);
+        }
+
+        String file = resource.getFilename() != null ? resource.getFilename() : "";
+        String extension = file.contains(".") ? file.substring(file.lastIndexOf('.')).toLowerCase(Locale.ROOT) : ".ttf";
+        String slug = face.getFamily().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-");
+        String path = "resources/fonts/" + slug + "-" + face.getWeight() + "-" + face.getStyle() + extension;
+        return new Font(face.getFamily(), face.getWeight(), face.getStyle(), path, body);
+    }
+
+    /**
+     * Encodes the faces for {@link #FACES_PROPERTY}.
+     */
+    public static String encodeFaces(List<PdfProperties.Fonts.Face> faces) {
+        List<String> encoded = new ArrayList<>();
+        for (PdfProperties.Fonts.Face face : faces) {
+            encoded.add(String.join("|", encode(face.getFamily()), encode(face.getFile()),
+                    String.valueOf(face.getWeight()), encode(face.getStyle())));
+        }
+        return String.join(";", encoded);
+    }
+
+    /**
+     * Decodes faces encoded by {@link #encodeFaces(List)}.
+     */
+    public static List<PdfProperties.Fonts.Face> decodeFaces(String encoded) {
+        List<PdfProperties.Fonts.Face> faces = new ArrayList<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return faces;
+        }
+        for (String entry : encoded.split(";")) {
+            String[] fields = entry.split("\\|", -1);
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Invalid font face: " + entry);
+            }
+            PdfProperties.Fonts.Face face = new PdfProperties.Fonts.Face();
+            face.setFamily(decode(fields[0]));
+            face.setFile(decode(fields[1]));
+            face.setWeight(Integer.parseInt(fields[2]));
+            face.setStyle(decode(fields[3]));
+            faces.add(face);
+        }
+        return faces;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value == null ? "" : value, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
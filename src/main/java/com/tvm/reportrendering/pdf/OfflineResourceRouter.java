@@ -0,0 +1,116 @@
+package com.tvm.reportrendering.pdf;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Route;
+import com.tvm.reportrendering.config.PdfProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+import static com.tvm.reportrendering.util.SecurityUtils.sanitizeForLogging;
+
+/**
+ * Answers every request a render page makes without touching the network or the disk.
+ *
+ * URLs containing {@code /resources/} are served from the {@link AssetRegistry}; anything
+ * else is aborted immediately (unless {@code report.pdf.assets.block-external} is off), so
+ * a template referencing an external URL cannot stall a render on an isolated host.
+ */
+@Slf4j
+@Component
+public class OfflineResourceRouter {
+
+    private static final String RESOURCES_SEGMENT = "/resources/";
+
+    private final AssetRegistry assetRegistry;
+    private final boolean blockExternal;
+    private final DistributionSummary requestsPerRender;
+
+    // Route callbacks run on the browser's own thread while a render holds it, so a
+    // per-thread counter attributes every request to the render that issued it.
+    private final ThreadLocal<int[]> renderRequests = ThreadLocal.withInitial(() -> new int[1]);
+
+    public OfflineResourceRouter(AssetRegistry assetRegistry, PdfProperties properties, MeterRegistry meterRegistry) {
+        this.assetRegistry = assetRegistry;
+        this.blockExternal = properties.getAssets().isBlockExternal();
+        this.requestsPerRender = DistributionSummary.builder("report.pdf.render.requests")
+                .description("Number of resource requests issued by a single PDF render")
+                .register(meterRegistry);
+    }
+
+    public void install(Page page) {
+        page.route("**", this::handle);
+    }
+
+    /**
+     * Starts counting requests for a render on the current browser thread.
+     */
+    public void beginRender() {
+        renderRequests.get()[0] = 0;
+    }
+
+    /**
+     * Stops counting, records the count and returns it.
+     */
+    public int endRender() {
+        int count = renderRequests.get()[0];
+        requestsPerRender.record(count);
+        return count;
+    }
+
+    private void handle(Route route) {
+        renderRequests.get()[0]++;
+        String url = route.request().url();
+
+        String resourcePath = resourcePath(url);
+        if (resourcePath != null) {
+            serveAsset(route, resourcePath);
+        } else if (blockExternal) {
+            log.warn("Blocked external request during render: {}", sanitizeForLogging(url));
+            route.abort("blockedbyclient");
+        } else {
+            route.resume();
+        }
+    }
+
+    private void serveAsset(Route route, String resourcePath) {
+        AssetRegistry.Asset asset = assetRegistry.get(resourcePath);
+        if (asset == null) {
+            log.warn("Resource not found: {}", sanitizeForLogging(resourcePath));
+            route.fulfill(new Route.FulfillOptions().setStatus(404));
+            return;
+        }
+
+        route.fulfill(new Route.FulfillOptions()
+                .setStatus(200)
+                .setContentType(asset.contentType())
+                .setHeaders(Map.of("ETag", asset.etag(), "Cache-Control", "max-age=31536000, immutable"))
+                .setBodyBytes(asset.body()));
+        log.debug("Served resource from memory: {} ({} bytes)", asset.path(), asset.body().length);
+    }
+
+    /**
+     * Maps a URL referenced by a template to its {@link AssetRegistry} key ("resources/..."),
+     * or returns null if it does not point at a template resource.
+     */
+    public static String resourcePath(String url) {
+        int index = url.indexOf(RESOURCES_SEGMENT);
+        return index < 0 ? null : stripQuery(url.substring(index + 1)); // Keep "resources/..."
+    }
+
+    private static String stripQuery(String path) {
+        int end = path.length();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = path.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        return path.substring(0, end);
+    }
+}
@@ -0,0 +1,371 @@
+package com.tvm.reportrendering.pdf;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional post-processing that shrinks generated PDFs before they are sent or archived.
+ *
+ * Streams with identical content and dictionaries (fonts, images, ICC profiles; common in
+ * merged shards) are collapsed into one object, uncompressed streams are Flate-compressed,
+ * and the document is rewritten with compressed object streams. With {@code linearize} the
+ * result is additionally passed through {@code qpdf --linearize} for fast first-page display.
+ *
+ * Optimization runs on a small bounded executor. When the queue is full, or anything goes
+ * wrong, the original PDF is returned unchanged: this stage never fails a render.
+ */
+@Slf4j
+@Component
+public class PdfOptimizer {
+
+    // Streams smaller than this are not worth recompressing
+    private static final int MIN_RECOMPRESS_BYTES = 256;
+
+    private final PdfProperties.Optimizer config;
+    private final ThreadPoolExecutor executor;
+
+    private final DistributionSummary sizeBefore;
+    private final DistributionSummary sizeAfter;
+    private final Timer duration;
+    private final Counter skipped;
+
+    public PdfOptimizer(PdfProperties properties, MeterRegistry meterRegistry) {
+        this.config = properties.getOptimizer();
+
+        int threads = Math.max(1, config.getThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-optimizer-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.sizeBefore = DistributionSummary.builder("report.pdf.optimizer.size")
+                .description("PDF size before and after optimization")
+                .baseUnit("bytes")
+                .tag("stage", "before")
+                .register(meterRegistry);
+        this.sizeAfter = DistributionSummary.builder("report.pdf.optimizer.size")
+                .description("PDF size before and after optimization")
+                .baseUnit("bytes")
+                .tag("stage", "after")
+                .register(meterRegistry);
+        this.duration = Timer.builder("report.pdf.optimizer.duration")
+                .description("Time spent optimizing a PDF")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("report.pdf.optimizer.skipped")
+                .description("PDFs sent unoptimized because the optimizer was busy or failed")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Returns an optimized copy of the PDF, or the input itself if optimization is disabled or not possible.
+     */
+    public byte[] optimize(byte[] pdf) {
+        if (!config.isEnabled()) {
+            return pdf;
+        }
+        byte[] optimized = runBounded(() -> {
+            try (PDDocument document = Loader.loadPDF(pdf)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(pdf.length);
+                optimize(document, out);
+                return linearize(out.toByteArray());
+            }
+        });
+        return record(pdf.length, optimized == null ? pdf : optimized);
+    }
+
+    /**
+     * Optimizes the PDF file in place, leaving it untouched if optimization is disabled or not possible.
+     */
+    public void optimize(Path file) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            long before = Files.size(file);
+            Path optimized = runBounded(() -> {
+                Path target = Files.createTempFile(file.getParent(), "optimized-", ".pdf");
+                try {
+                    try (PDDocument document = Loader.loadPDF(file.toFile(), IOUtils.createTempFileOnlyStreamCache());
+                         OutputStream out = Files.newOutputStream(target)) {
+                        optimize(document, out);
+                    }
+                    if (config.isLinearize()) {
+                        Files.write(target, linearize(Files.readAllBytes(target)));
+                    }
+                } catch (Exception e) {
+                    Files.deleteIfExists(target);
+                    throw e;
+                }
+                // The caller gave up waiting and will not pick the result up
+                if (Thread.currentThread().isInterrupted()) {
+                    Files.deleteIfExists(target);
+                }
+                return target;
+            });
+            if (optimized != null) {
+                // Replaced on the caller's thread, so a timed-out task can never touch the file
+                Files.move(optimized, file, StandardCopyOption.REPLACE_EXISTING);
+                sizeBefore.record(before);
+                sizeAfter.record(Files.size(file));
+            }
+        } catch (IOException e) {
+            log.warn("Could not optimize {}: {}", file, e.getMessage());
+        }
+    }
+
+    private byte[] record(int before, byte[] result) {
+        sizeBefore.record(before);
+        sizeAfter.record(result.length);
+        log.debug("Optimized PDF from {} to {} bytes", before, result.length);
+        return result;
+    }
+
+    private <T> T runBounded(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> duration.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            log.debug("PDF optimizer queue is full, sending PDF unoptimized");
+            skipped.increment();
+            return null;
+        }
+
+        try {
+            return future.get(config.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            skipped.increment();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            future.cancel(true);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            log.warn("PDF optimization failed, sending PDF unoptimized: {}", cause.getMessage());
+            skipped.increment();
+            return null;
+        }
+    }
+
+    static void optimize(PDDocument document, OutputStream out) throws IOException {
+        StreamDeduplicator deduplicator = new StreamDeduplicator();
+        deduplicator.visit(document.getDocument().getTrailer());
+        if (deduplicator.duplicates > 0 || deduplicator.recompressed > 0) {
+            log.debug("Collapsed {} duplicate streams, compressed {} streams", deduplicator.duplicates, deduplicator.recompressed);
+        }
+        document.save(out, CompressParameters.DEFAULT_COMPRESSION);
+    }
+
+    private byte[] linearize(byte[] pdf) throws IOException, InterruptedException {
+        if (!config.isLinearize()) {
+            return pdf;
+        }
+        Path input = Files.createTempFile("linearize-", ".pdf");
+        Path output = Files.createTempFile("linearized-", ".pdf");
+        try {
+            Files.write(input, pdf);
+            Process process = new ProcessBuilder(config.getQpdfPath(), "--linearize", input.toString(), output.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            Duration timeout = config.getTimeout();
+            if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("qpdf did not finish within " + timeout);
+            }
+            // Exit code 3 means success with warnings
+            if (process.exitValue() != 0 && process.exitValue() != 3) {
+                throw new IOException("qpdf exited with code " + process.exitValue());
+            }
+            return Files.readAllBytes(output);
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Walks the object graph, replacing references to streams that duplicate an earlier stream
+     * with references to that stream, and compressing unfiltered streams along the way.
+     *
+     * Children are canonicalized before their parent's signature is taken, so two images that
+     * point at duplicate color profiles collapse as well.
+     */
+    private static final class StreamDeduplicator {
+
+        private final Set<COSBase> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Map<COSBase, Integer> ids = new IdentityHashMap<>();
+        private final Map<String, COSObject> canonical = new HashMap<>();
+        private final MessageDigest digest = sha256();
+        private int duplicates;
+        private int recompressed;
+
+        void visit(COSBase base) throws IOException {
+            COSBase value = base instanceof COSObject object ? object.getObject() : base;
+            if (value == null || !visited.add(value)) {
+                return;
+            }
+            if (value instanceof COSArray array) {
+                for (int i = 0; i < array.size(); i++) {
+                    COSBase replacement = visitChild(array.get(i));
+                    if (replacement != null) {
+                        array.set(i, replacement);
+                    }
+                }
+            } else if (value instanceof COSDictionary dictionary) {
+                List<Map.Entry<COSName, COSBase>> entries = new ArrayList<>(dictionary.entrySet());
+                for (Map.Entry<COSName, COSBase> entry : entries) {
+                    // Parent links lead back up the page tree; nothing to deduplicate there
+                    if (COSName.PARENT.equals(entry.getKey())) {
+                        continue;
+                    }
+                    COSBase replacement = visitChild(entry.getValue());
+                    if (replacement != null) {
+                        dictionary.setItem(entry.getKey(), replacement);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Visits a child and returns the canonical object to reference instead, or null to keep it.
+         */
+        private COSBase visitChild(COSBase child) throws IOException {
+            visit(child);
+            if (!(child instanceof COSObject object) || !(object.getObject() instanceof COSStream stream)) {
+                return null;
+            }
+
+            compress(stream);
+            String signature = signature(stream);
+            COSObject existing = canonical.putIfAbsent(signature, object);
+            if (existing == null || existing.getObject() == stream) {
+                return null;
+            }
+            duplicates++;
+            return existing;
+        }
+
+        private void compress(COSStream stream) throws IOException {
+            if (stream.getFilters() != null || stream.getLength() < MIN_RECOMPRESS_BYTES) {
+                return;
+            }
+            byte[] data;
+            try (InputStream in = stream.createRawInputStream()) {
+                data = in.readAllBytes();
+            }
+            try (OutputStream out = stream.createOutputStream(COSName.FLATE_DECODE)) {
+                out.write(data);
+            }
+            recompressed++;
+        }
+
+        private String signature(COSStream stream) throws IOException {
+            digest.reset();
+            try (InputStream in = stream.createRawInputStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+
+            StringBuilder signature = new StringBuilder(HexFormat.of().formatHex(digest.digest()));
+            for (Map.Entry<COSName, COSBase> entry : stream.entrySet()) {
+                if (COSName.LENGTH.equals(entry.getKey())) {
+                    continue;
+                }
+                signature.append('|').append(entry.getKey().getName()).append('=');
+                appendValue(signature, entry.getValue());
+            }
+            return signature.toString();
+        }
+
+        private void appendValue(StringBuilder signature, COSBase value) {
+            if (value instanceof COSName || value instanceof COSNumber || value instanceof COSBoolean) {
+                signature.append(value);
+            } else if (value instanceof COSString string) {
+                signature.append(string.toHexString());
+            } else if (value instanceof COSArray array) {
+                signature.append('[');
+                for (COSBase item : array) {
+                    appendValue(signature, item);
+                    signature.append(' ');
+                }
+                signature.append(']');
+            } else {
+                // Indirect objects and nested dictionaries compare by identity; duplicates among
+                // them have already been replaced by their canonical object
+                COSBase target = value instanceof COSObject object ? object.getObject() : value;
+                signature.append('#').append(ids.computeIfAbsent(target, key -> ids.size()));
+            }
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
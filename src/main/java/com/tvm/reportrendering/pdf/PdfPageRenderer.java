@@ -0,0 +1,344 @@
+package com.tvm.reportrendering.pdf;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.microsoft.playwright.CDPSession;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.Media;
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.model.RenderMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Renders HTML to PDF on a Playwright page.
+ *
+ * Shared by the in-process browser pool and the out-of-process render workers, so both
+ * produce identical documents. All methods must be called on the thread that owns the page.
+ *
+ * The {@code ...ToFile} variants print through the DevTools protocol with
+ * {@code transferMode: ReturnAsStream} and copy the document to a file chunk by chunk, so a
+ * large PDF never exists as a single array on the heap.
+ *
+ * Between stages and streamed chunks the {@link RenderDeadline} bound to the calling thread is
+ * checked, so an abandoned render stops without printing.
+ *
+ * When {@link RenderMetrics} are bound to the calling thread, the DevTools performance counters
+ * of the page are read before and after each render and the difference is recorded there.
+ */
+@Slf4j
+@Component
+public class PdfPageRenderer {
+
+    // Replaces the body of a pre-warmed shell page and waits for images it references
+    private static final String INJECT_BODY_SCRIPT = """
+            async html => {
+                document.body.innerHTML = html;
+                await Promise.all(Array.from(document.images)
+                        .filter(image => !image.complete)
+                        .map(image => new Promise(resolve => image.onload = image.onerror = resolve)));
+            }
+            """;
+
+    private static final String AWAIT_FONTS_SCRIPT = "async () => { await document.fonts.ready; }";
+
+    private static final String CLEAR_BODY_SCRIPT = "() => { document.body.innerHTML = ''; }";
+
+    // A4 as used by Page.pdf, in inches
+    private static final double A4_WIDTH_INCHES = 8.27;
+    private static final double A4_HEIGHT_INCHES = 11.7;
+
+    private final OfflineResourceRouter resourceRouter;
+    private final int streamChunkBytes;
+    private final boolean metricsEnabled;
+    private final Timer fontStage;
+
+    public PdfPageRenderer(OfflineResourceRouter resourceRouter, PdfProperties properties, MeterRegistry meterRegistry) {
+        this.resourceRouter = resourceRouter;
+        this.streamChunkBytes = (int) properties.getStreaming().getChunkSize().toBytes();
+        this.metricsEnabled = properties.getMetrics().isEnabled();
+        this.fontStage = Timer.builder("report.pdf.render.stage")
+                .description("Time spent in each stage of a PDF render")
+                .tag("stage", "fonts")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads a complete document into a fresh page and prints it.
+     */
+    public byte[] render(Page page, String htmlContent, String headerContent, String footerContent) {
+        return render(page, htmlContent, p -> p.pdf(pdfOptions(headerContent, footerContent)));
+    }
+
+    /**
+     * Loads a complete document into a fresh page and streams the printed PDF to the target file.
+     */
+    public void renderToFile(Page page, String htmlContent, String headerContent, String footerContent, Path target) {
+        render(page, htmlContent, p -> printToFile(p, headerContent, footerContent, target));
+    }
+
+    /**
+     * Loads a complete document into a fresh page and captures its first page as a PNG.
+     */
+    public byte[] preview(Page page, String htmlContent, int width, int dpi) {
+        return render(page, htmlContent, p -> screenshotFirstPage(p, width, dpi));
+    }
+
+    private <T> T render(Page page, String htmlContent, Function<Page, T> printer) {
+        resourceRouter.install(page);
+        resourceRouter.beginRender();
+        PerformanceProbe probe = startProbe(page);
+        try {
+            page.setContent(htmlContent);
+            awaitFonts(page);
+            RenderDeadline.current().checkpoint("printing");
+            T result = printer.apply(page);
+            recordProbe(probe);
+            return result;
+        } finally {
+            detachProbe(probe);
+            log.debug("Render issued {} resource requests", resourceRouter.endRender());
+        }
+    }
+
+    /**
+     * Prepares a long-lived page with the static shell of a template.
+     */
+    public void loadShell(Page page, String shellHtml) {
+        resourceRouter.install(page);
+        page.setContent(shellHtml);
+    }
+
+    /**
+     * Injects the body into a page prepared by {@link #loadShell(Page, String)} and prints it.
+     */
+    public byte[] renderOnShell(Page page, String bodyHtml, String headerContent, String footerContent) {
+        return renderOnShell(page, bodyHtml, p -> p.pdf(pdfOptions(headerContent, footerContent)));
+    }
+
+    /**
+     * Like {@link #renderOnShell(Page, String, String, String)}, streaming the PDF to the target file.
+     */
+    public void renderOnShellToFile(Page page, String bodyHtml, String headerContent, String footerContent, Path target) {
+        renderOnShell(page, bodyHtml, p -> printToFile(p, headerContent, footerContent, target));
+    }
+
+    /**
+     * Injects the body into a page prepared by {@link #loadShell(Page, String)} and captures its first page as a PNG.
+     */
+    public byte[] previewOnShell(Page page, String bodyHtml, int width, int dpi) {
+        return renderOnShell(page, bodyHtml, p -> screenshotFirstPage(p, width, dpi));
+    }
+
+    private <T> T renderOnShell(Page page, String bodyHtml, Function<Page, T> printer) {
+        resourceRouter.beginRender();
+        PerformanceProbe probe = startProbe(page);
+        try {
+            page.evaluate(INJECT_BODY_SCRIPT, bodyHtml);
+            awaitFonts(page);
+            RenderDeadline.current().checkpoint("printing");
+            T result = printer.apply(page);
+            recordProbe(probe);
+            return result;
+        } finally {
+            detachProbe(probe);
+            // Do not keep customer data in the long-lived page
+            page.evaluate(CLEAR_BODY_SCRIPT);
+            log.debug("Render issued {} resource requests", resourceRouter.endRender());
+        }
+    }
+
+    /**
+     * Waits until every font the document uses is loaded and records how long that took.
+     */
+    private void awaitFonts(Page page) {
+        RenderDeadline.current().checkpoint("loading fonts");
+        long start = System.nanoTime();
+        page.evaluate(AWAIT_FONTS_SCRIPT);
+        fontStage.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Performance counters of a page at the start of a render. The counters are cumulative
+     * over the life of the page, so shell pages are measured by difference as well.
+     */
+    private record PerformanceProbe(RenderMetrics metrics, CDPSession session, Map<String, Double> baseline) {
+    }
+
+    private PerformanceProbe startProbe(Page page) {
+        RenderMetrics metrics = RenderMetrics.current();
+        if (!metricsEnabled || metrics == null) {
+            return null;
+        }
+        CDPSession session = null;
+        try {
+            session = page.context().newCDPSession(page);
+            session.send("Performance.enable");
+            return new PerformanceProbe(metrics, session, performanceCounters(session));
+        } catch (RuntimeException e) {
+            // Metrics are best effort and must not fail the render
+            log.debug("Could not start performance metrics: {}", e.getMessage());
+            if (session != null) {
+                session.detach();
+            }
+            return null;
+        }
+    }
+
+    private static void recordProbe(PerformanceProbe probe) {
+        if (probe == null) {
+            return;
+        }
+        try {
+            Map<String, Double> counters = performanceCounters(probe.session());
+            Map<String, Double> baseline = probe.baseline();
+            probe.metrics().record(
+                    difference(counters, baseline, "LayoutDuration"),
+                    difference(counters, baseline, "RecalcStyleDuration"),
+                    difference(counters, baseline, "ScriptDuration"),
+                    counters.getOrDefault("JSHeapUsedSize", 0.0).longValue(),
+                    counters.getOrDefault("Nodes", 0.0).longValue());
+        } catch (RuntimeException e) {
+            log.debug("Could not read performance metrics: {}", e.getMessage());
+        }
+    }
+
+    private static void detachProbe(PerformanceProbe probe) {
+        if (probe == null) {
+            return;
+        }
+        try {
+            probe.session().detach();
+        } catch (RuntimeException e) {
+            log.debug("Could not detach performance session: {}", e.getMessage());
+        }
+    }
+
+    private static Map<String, Double> performanceCounters(CDPSession session) {
+        Map<String, Double> counters = new HashMap<>();
+        for (JsonElement metric : session.send("Performance.getMetrics").getAsJsonArray("metrics")) {
+            JsonObject entry = metric.getAsJsonObject();
+            counters.put(entry.get("name").getAsString(), entry.get("value").getAsDouble());
+        }
+        return counters;
+    }
+
+    private static double difference(Map<String, Double> counters, Map<String, Double> baseline, String name) {
+        return Math.max(0, counters.getOrDefault(name, 0.0) - baseline.getOrDefault(name, 0.0));
+    }
+
+    private Path printToFile(Page page, String headerContent, String footerContent, Path target) {
+        CDPSession session = page.context().newCDPSession(page);
+        try {
+            JsonObject result = session.send("Page.printToPDF", printParams(headerContent, footerContent));
+            String handle = result.get("stream").getAsString();
+
+            JsonObject readParams = new JsonObject();
+            readParams.addProperty("handle", handle);
+            readParams.addProperty("size", streamChunkBytes);
+
+            try (OutputStream out = Files.newOutputStream(target)) {
+                RenderDeadline deadline = RenderDeadline.current();
+                boolean eof = false;
+                while (!eof) {
+                    deadline.checkpoint("streaming the PDF");
+                    JsonObject chunk = session.send("IO.read", readParams);
+                    String data = chunk.get("data").getAsString();
+                    boolean base64 = chunk.has("base64Encoded") && chunk.get("base64Encoded").getAsBoolean();
+                    out.write(base64 ? Base64.getDecoder().decode(data) : data.getBytes(StandardCharsets.UTF_8));
+                    eof = chunk.get("eof").getAsBoolean();
+                }
+            } finally {
+                JsonObject closeParams = new JsonObject();
+                closeParams.addProperty("handle", handle);
+                session.send("IO.close", closeParams);
+            }
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write PDF to " + target, e);
+        } finally {
+            session.detach();
+        }
+    }
+
+    /**
+     * Screenshots the area of the first printed page: a viewport of the given CSS width and
+     * A4 proportions with print styles applied, scaled to the requested resolution. Header and
+     * footer templates are print-only and do not appear.
+     */
+    private byte[] screenshotFirstPage(Page page, int width, int dpi) {
+        int height = (int) Math.round(width * A4_HEIGHT_INCHES / A4_WIDTH_INCHES);
+        page.setViewportSize(width, height);
+        page.emulateMedia(new Page.EmulateMediaOptions().setMedia(Media.PRINT));
+
+        JsonObject clip = new JsonObject();
+        clip.addProperty("x", 0);
+        clip.addProperty("y", 0);
+        clip.addProperty("width", width);
+        clip.addProperty("height", height);
+        clip.addProperty("scale", dpi / 96.0);
+
+        JsonObject params = new JsonObject();
+        params.addProperty("format", "png");
+        params.add("clip", clip);
+
+        // Page.screenshot cannot scale, so capture through the DevTools protocol
+        CDPSession session = page.context().newCDPSession(page);
+        try {
+            JsonObject result = session.send("Page.captureScreenshot", params);
+            return Base64.getDecoder().decode(result.get("data").getAsString());
+        } finally {
+            session.detach();
+        }
+    }
+
+    // Same page setup as pdfOptions, expressed as DevTools parameters
+    static JsonObject printParams(String headerContent, String footerContent) {
+        JsonObject params = new JsonObject();
+        params.addProperty("paperWidth", A4_WIDTH_INCHES);
+        params.addProperty("paperHeight", A4_HEIGHT_INCHES);
+        params.addProperty("marginTop", 0);
+        params.addProperty("marginBottom", 0);
+        params.addProperty("marginLeft", 0);
+        params.addProperty("marginRight", 0);
+        params.addProperty("printBackground", true);
+        params.addProperty("displayHeaderFooter", headerContent != null || footerContent != null);
+        params.addProperty("headerTemplate", headerContent != null ? headerContent : "");
+        params.addProperty("footerTemplate", footerContent != null ? footerContent : "");
+        params.addProperty("transferMode", "ReturnAsStream");
+        return params;
+    }
+
+    private Page.PdfOptions pdfOptions(String headerContent, String footerContent) {
+        Page.PdfOptions pdfOptions = new Page.PdfOptions()
+                .setFormat("A4")
+                .setPrintBackground(true);
+
+        if (headerContent != null) {
+            pdfOptions.setHeaderTemplate(headerContent);
+            pdfOptions.setDisplayHeaderFooter(true);
+        }
+
+        if (footerContent != null) {
+            pdfOptions.setFooterTemplate(footerContent);
+            pdfOptions.setDisplayHeaderFooter(true);
+        }
+
+        return pdfOptions;
+    }
+}
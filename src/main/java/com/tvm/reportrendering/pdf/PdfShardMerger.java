@@ -0,0 +1,83 @@
+package com.tvm.reportrendering.pdf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.multipdf.LayerUtility;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Joins PDF segments rendered in parallel into one document.
+ *
+ * Segments are rendered without header and footer, since Chromium would number each one
+ * from 1. The header and footer come from a separate overlay document with one blank page
+ * per page of the merged document, rendered with the real templates so that page numbers
+ * and totals are continuous. Each overlay page is stamped onto the matching merged page.
+ */
+@Slf4j
+public final class PdfShardMerger {
+
+    private PdfShardMerger() {
+    }
+
+    /**
+     * Merges the segments in order, stamps the overlay over them and writes the result.
+     *
+     * {@code overlayRenderer} receives the total page count once the segments are merged and
+     * returns the overlay PDF, or null to skip stamping. Intermediate data is buffered in
+     * temporary files, not on the heap.
+     */
+    public static void merge(List<Path> segments, IntFunction<Path> overlayRenderer, OutputStream out) throws IOException {
+        List<PDDocument> sources = new ArrayList<>();
+        try (PDDocument merged = new PDDocument(IOUtils.createTempFileOnlyStreamCache())) {
+            PDFMergerUtility merger = new PDFMergerUtility();
+            for (Path segment : segments) {
+                // Sources must stay open until the merged document is saved
+                PDDocument source = Loader.loadPDF(segment.toFile());
+                sources.add(source);
+                merger.appendDocument(merged, source);
+            }
+
+            Path overlay = overlayRenderer.apply(merged.getNumberOfPages());
+            if (overlay != null) {
+                PDDocument overlayDocument = Loader.loadPDF(overlay.toFile());
+                sources.add(overlayDocument);
+                stamp(merged, overlayDocument);
+            }
+
+            merged.save(out);
+        } finally {
+            for (PDDocument source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    private static void stamp(PDDocument target, PDDocument overlay) throws IOException {
+        int pages = target.getNumberOfPages();
+        if (overlay.getNumberOfPages() != pages) {
+            log.warn("Header/footer overlay has {} pages for a {} page document", overlay.getNumberOfPages(), pages);
+        }
+
+        LayerUtility layers = new LayerUtility(target);
+        for (int i = 0; i < Math.min(pages, overlay.getNumberOfPages()); i++) {
+            PDFormXObject form = layers.importPageAsForm(overlay, i);
+            PDPage page = target.getPage(i);
+            try (PDPageContentStream content = new PDPageContentStream(target, page,
+                    PDPageContentStream.AppendMode.APPEND, true, true)) {
+                content.drawForm(form);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.tvm.reportrendering.pdf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reads resident memory of process trees from {@code /proc}.
+ */
+public final class ProcessMemory {
+
+    private static final Path PROC = Path.of("/proc");
+    private static final String RSS_FIELD = "VmRSS:";
+
+    private ProcessMemory() {
+    }
+
+    /**
+     * Returns the summed resident set size of the process and all its descendants in bytes,
+     * or -1 if {@code /proc} is not available on this platform.
+     */
+    public static long residentSetBytes(ProcessHandle root) {
+        if (!Files.isDirectory(PROC)) {
+            return -1;
+        }
+        long total = residentSetBytes(root.pid());
+        for (ProcessHandle descendant : root.descendants().toList()) {
+            total += residentSetBytes(descendant.pid());
+        }
+        return total;
+    }
+
+    private static long residentSetBytes(long pid) {
+        try {
+            List<String> lines = Files.readAllLines(PROC.resolve(Long.toString(pid)).resolve("status"));
+            for (String line : lines) {
+                if (line.startsWith(RSS_FIELD)) {
+                    // Format: "VmRSS:     123456 kB"
+                    String value = line.substring(RSS_FIELD.length()).trim();
+                    int space = value.indexOf(' ');
+                    return Long.parseLong(space < 0 ? value : value.substring(0, space)) * 1024;
+                }
+            }
+            return 0;
+        } catch (IOException | NumberFormatException e) {
+            // The process exited while we were reading it
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.tvm.reportrendering.pdf;
+
+/**
+ * A rendered HTML document split into its static shell and its data-bearing body.
+ *
+ * The shell is the document with an empty {@code <body>} element: everything up to and
+ * including the opening body tag, followed by everything from the closing body tag. It
+ * carries the styles and fonts and is identical for every render of a template, so it can
+ * stay loaded in a browser page while only the body is swapped per request.
+ *
+ * @param shellHtml the document with an empty body, used as the key of the pre-warmed page
+ * @param bodyHtml  the inner HTML of the body element
+ */
+public record TemplateShell(String shellHtml, String bodyHtml) {
+
+    private static final String BODY_OPEN = "<body";
+    private static final String BODY_CLOSE = "</body>";
+
+    /**
+     * Splits a rendered document, or returns null if it has no well-formed body element.
+     */
+    public static TemplateShell split(String html) {
+        int bodyStart = indexOfTag(html, BODY_OPEN);
+        if (bodyStart < 0) {
+            return null;
+        }
+
+        int contentStart = html.indexOf('>', bodyStart) + 1;
+        int contentEnd = lastIndexOfIgnoreCase(html, BODY_CLOSE);
+        if (contentStart == 0 || contentEnd < contentStart) {
+            return null;
+        }
+
+        String shellHtml = html.substring(0, contentStart) + html.substring(contentEnd);
+        return new TemplateShell(shellHtml, html.substring(contentStart, contentEnd));
+    }
+
+    /**
+     * Returns the shell with the given inner HTML placed in its body.
+     */
+    public String withBody(String bodyHtml) {
+        int contentStart = shellHtml.indexOf('>', indexOfTag(shellHtml, BODY_OPEN)) + 1;
+        return shellHtml.substring(0, contentStart) + bodyHtml + shellHtml.substring(contentStart);
+    }
+
+    private static int indexOfTag(String html, String tag) {
+        int from = 0;
+        while (true) {
+            int index = indexOfIgnoreCase(html, tag, from);
+            if (index < 0 || index + tag.length() >= html.length()) {
+                return -1;
+            }
+            char next = html.charAt(index + tag.length());
+            if (next == '>' || Character.isWhitespace(next)) {
+                return index;
+            }
+            from = index + tag.length();
+        }
+    }
+
+    private static int indexOfIgnoreCase(String html, String token, int from) {
+        for (int i = from; i <= html.length() - token.length(); i++) {
+            if (html.regionMatches(true, i, token, 0, token.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOfIgnoreCase(String html, String token) {
+        for (int i = html.length() - token.length(); i >= 0; i--) {
+            if (html.regionMatches(true, i, token, 0, token.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
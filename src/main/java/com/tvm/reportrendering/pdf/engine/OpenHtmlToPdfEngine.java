@@ -0,0 +1,148 @@
+package com.tvm.reportrendering.pdf.engine;
+
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
+import com.openhtmltopdf.outputdevice.helper.ExternalResourceControlPriority;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.pdf.AssetRegistry;
+import com.tvm.reportrendering.pdf.FontRegistry;
+import com.tvm.reportrendering.pdf.OfflineResourceRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.helper.W3CDom;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static com.tvm.reportrendering.util.SecurityUtils.sanitizeForLogging;
+
+/**
+ * Pure-JVM PDF engine based on openhtmltopdf (CSS 2.1 plus paged media, rendered with PDFBox).
+ *
+ * Suited to templates built from plain blocks and tables: there is no browser process, so
+ * a render costs only CPU on the calling thread. Modern layout (flexbox, grid) and scripts
+ * are not supported.
+ *
+ * Chromium header and footer templates are converted to CSS running elements placed in the
+ * top and bottom page margin boxes, with the {@code pageNumber} and {@code totalPages} spans
+ * filled from the page counters. Template resources are served from the {@link AssetRegistry}
+ * and any other URL is refused, as with the browser engine. Fonts from the {@link FontRegistry}
+ * are registered with the renderer and embedded as subsets.
+ */
+@Slf4j
+@Component
+public class OpenHtmlToPdfEngine implements PdfEngine {
+
+    public static final String NAME = "openhtmltopdf";
+
+    // Base for relative URLs, so they resolve to something the stream factory recognizes
+    private static final String BASE_URI = "https://report.local/";
+
+    private static final String PAGE_MARGIN_STYLE = """
+            @page {
+                @top-center { content: element(report-header); }
+                @bottom-center { content: element(report-footer); }
+            }
+            #report-header { position: running(report-header); }
+            #report-footer { position: running(report-footer); }
+            .pageNumber::after { content: counter(page); }
+            .totalPages::after { content: counter(pages); }
+            """;
+
+    private final AssetRegistry assetRegistry;
+    private final FontRegistry fontRegistry;
+    private final boolean blockExternal;
+
+    public OpenHtmlToPdfEngine(AssetRegistry assetRegistry, FontRegistry fontRegistry, PdfProperties properties) {
+        this.assetRegistry = assetRegistry;
+        this.fontRegistry = fontRegistry;
+        this.blockExternal = properties.getAssets().isBlockExternal();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] generatePdf(String htmlContent, String headerContent, String footerContent) {
+        log.debug("Generating PDF with {}", NAME);
+
+        try {
+            Document document = Jsoup.parse(htmlContent, BASE_URI);
+            addPageMargins(document, headerContent, footerContent);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PdfRendererBuilder builder = new PdfRendererBuilder()
+                    .useFastMode()
+                    .withW3cDocument(W3CDom.convert(document), BASE_URI)
+                    .useProtocolsStreamImplementation(new AssetStreamFactory(), "http", "https", "file")
+                    .toStream(out);
+            for (FontRegistry.Font font : fontRegistry.getFonts()) {
+                builder.useFont(() -> new ByteArrayInputStream(font.body()), font.family(), font.weight(),
+                        BaseRendererBuilder.FontStyle.valueOf(font.style().toUpperCase(Locale.ROOT)), true);
+            }
+            if (blockExternal) {
+                builder.useExternalResourceAccessControl(
+                        (uri, type) -> OfflineResourceRouter.resourcePath(uri) != null,
+                        ExternalResourceControlPriority.RUN_AFTER_RESOLVING_URI);
+            }
+            builder.run();
+
+            log.debug("PDF generated successfully, size: {} bytes", out.size());
+            return out.toByteArray();
+        } catch (Exception e) {
+            log.error("Error generating PDF: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to generate PDF", e);
+        }
+    }
+
+    static void addPageMargins(Document document, String headerContent, String footerContent) {
+        if (headerContent == null && footerContent == null) {
+            return;
+        }
+        document.head().appendElement("style").appendText(PAGE_MARGIN_STYLE);
+        // Running elements must precede the content of the first page
+        if (footerContent != null) {
+            document.body().prependElement("div").id("report-footer").html(footerContent);
+        }
+        if (headerContent != null) {
+            document.body().prependElement("div").id("report-header").html(headerContent);
+        }
+    }
+
+    private class AssetStreamFactory implements FSStreamFactory {
+
+        @Override
+        public FSStream getUrl(String url) {
+            String resourcePath = OfflineResourceRouter.resourcePath(url);
+            AssetRegistry.Asset asset = resourcePath != null ? assetRegistry.get(resourcePath) : null;
+            if (asset == null) {
+                log.warn("Resource not available to {}: {}", NAME, sanitizeForLogging(url));
+            }
+            return new AssetStream(asset == null ? null : asset.body());
+        }
+    }
+
+    private record AssetStream(byte[] body) implements FSStream {
+
+        @Override
+        public InputStream getStream() {
+            return body == null ? null : new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public Reader getReader() {
+            return body == null ? null : new InputStreamReader(getStream(), StandardCharsets.UTF_8);
+        }
+    }
+}
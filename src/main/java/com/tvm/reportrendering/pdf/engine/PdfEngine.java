@@ -0,0 +1,43 @@
+package com.tvm.reportrendering.pdf.engine;
+
+import com.tvm.reportrendering.model.SpooledContent;
+
+import java.util.List;
+
+/**
+ * Turns a rendered HTML document into a PDF.
+ *
+ * {@link com.tvm.reportrendering.service.Report} picks an engine per template or per request through the
+ * {@link PdfEngineRegistry}. Every engine must render a complete document with optional
+ * header and footer templates; streaming and sharded rendering are optional capabilities
+ * an engine advertises through {@link #isStreamingEnabled()} and {@link #isShardingEnabled(int)}.
+ */
+public interface PdfEngine {
+
+    /**
+     * Name used to select the engine in configuration and requests.
+     */
+    String getName();
+
+    byte[] generatePdf(String htmlContent, String headerContent, String footerContent);
+
+    default boolean isStreamingEnabled() {
+        return false;
+    }
+
+    default SpooledContent generatePdfSpooled(String htmlContent, String headerContent, String footerContent) {
+        throw new UnsupportedOperationException("PDF engine " + getName() + " does not support streaming");
+    }
+
+    default boolean isShardingEnabled(int sectionCount) {
+        return false;
+    }
+
+    default byte[] generateShardedPdf(List<String> shardHtml, String headerContent, String footerContent) {
+        throw new UnsupportedOperationException("PDF engine " + getName() + " does not support sharding");
+    }
+
+    default SpooledContent generateShardedPdfSpooled(List<String> shardHtml, String headerContent, String footerContent) {
+        throw new UnsupportedOperationException("PDF engine " + getName() + " does not support sharding");
+    }
+}
@@ -0,0 +1,66 @@
+package com.tvm.reportrendering.pdf.engine;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.tvm.reportrendering.util.SecurityUtils.sanitizeForLogging;
+
+/**
+ * Chooses the PDF engine for a render.
+ *
+ * An engine requested explicitly wins; otherwise the template's entry in
+ * {@code report.pdf.engine.templates} applies, and finally {@code report.pdf.engine.default}.
+ */
+@Slf4j
+@Component
+public class PdfEngineRegistry {
+
+    private final Map<String, PdfEngine> engines = new LinkedHashMap<>();
+    private final PdfProperties.Engine config;
+
+    public PdfEngineRegistry(List<PdfEngine> engines, PdfProperties properties) {
+        for (PdfEngine engine : engines) {
+            this.engines.put(engine.getName(), engine);
+        }
+        this.config = properties.getEngine();
+
+        // Fail at startup rather than on the first render of a misconfigured template
+        requireEngine(config.getDefaultEngine());
+        config.getTemplates().values().forEach(this::requireEngine);
+        log.info("PDF engines: {}, default: {}, per template: {}", this.engines.keySet(),
+                config.getDefaultEngine(), config.getTemplates());
+    }
+
+    public Set<String> getEngineNames() {
+        return engines.keySet();
+    }
+
+    /**
+     * Returns the engine for the template, honouring an explicitly requested engine if given.
+     *
+     * @throws IllegalArgumentException if the requested engine does not exist
+     */
+    public PdfEngine select(String templateName, String requestedEngine) {
+        if (requestedEngine != null && !requestedEngine.isBlank()) {
+            PdfEngine engine = engines.get(requestedEngine);
+            if (engine == null) {
+                log.error("Unknown PDF engine requested: {}", sanitizeForLogging(requestedEngine));
+                throw new IllegalArgumentException("Unknown PDF engine: " + requestedEngine);
+            }
+            return engine;
+        }
+        return engines.get(config.getTemplates().getOrDefault(templateName, config.getDefaultEngine()));
+    }
+
+    private void requireEngine(String name) {
+        if (!engines.containsKey(name)) {
+            throw new IllegalStateException("Unknown PDF engine '" + name + "', available: " + engines.keySet());
+        }
+    }
+}
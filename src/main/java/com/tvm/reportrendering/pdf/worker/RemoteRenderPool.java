@@ -0,0 +1,193 @@
+package com.tvm.reportrendering.pdf.worker;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.pdf.FontRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+
+/**
+ * Pool of local render worker processes, used instead of the in-process browser pool when
+ * {@code report.pdf.workers.enabled} is set.
+ *
+ * Each worker is a separate JVM running {@link RenderWorkerMain} with its own browser, so
+ * Chromium crashes, memory growth and native threads stay out of the API process. Workers
+ * are reached over Unix domain sockets and restarted transparently when they die or stop
+ * responding.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "report.pdf.workers", name = "enabled", havingValue = "true")
+public class RemoteRenderPool {
+
+    private static final String BOOT_LAUNCHER = "org.springframework.boot.loader.launch.PropertiesLauncher";
+    private static final String DRIVER_DIR_PROPERTY = "playwright.cli.dir";
+
+    private final PdfProperties.Workers config;
+    private final PdfProperties.Fonts fonts;
+    private final Duration leaseTimeout;
+    private final ScheduledExecutorService watchdog;
+    private final ExecutorService restarter;
+
+    private final BlockingQueue<RemoteWorker> idleWorkers = new LinkedBlockingQueue<>();
+    private final List<RemoteWorker> workers = new CopyOnWriteArrayList<>();
+
+    public RemoteRenderPool(PdfProperties properties) {
+        this.config = properties.getWorkers();
+        this.fonts = properties.getFonts();
+        this.leaseTimeout = properties.getPool().getLeaseTimeout();
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "render-worker-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.restarter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "render-worker-restart");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path socketDir = Path.of(config.getSocketDir());
+        Files.createDirectories(socketDir);
+        List<String> jvmOptions = new ArrayList<>(config.getJvmOptions());
+        if (fonts.isEnabled() && !fonts.getFaces().isEmpty()) {
+            jvmOptions.add("-D" + FontRegistry.FACES_PROPERTY + "=" + FontRegistry.encodeFaces(fonts.getFaces()));
+        }
+        // Workers use the same provisioned driver as this process; browsers follow PLAYWRIGHT_BROWSERS_PATH
+        String driverDir = System.getProperty(DRIVER_DIR_PROPERTY);
+        if (driverDir != null) {
+            jvmOptions.add("-D" + DRIVER_DIR_PROPERTY + "=" + driverDir);
+        }
+        List<String> command = workerCommand(jvmOptions);
+        log.info("Starting {} render worker processes in {}", config.getCount(), socketDir);
+
+        for (int i = 0; i < config.getCount(); i++) {
+            RemoteWorker worker = new RemoteWorker(i, socketDir.resolve("render-worker-" + i + ".sock"),
+                    command, config.getStartupTimeout(), config.getRenderTimeout(), watchdog);
+            workers.add(worker);
+            try {
+                worker.start();
+            } catch (IOException e) {
+                // The worker is restarted on its first request
+                log.warn("Render worker {} failed to start: {}", i, e.getMessage());
+            }
+            idleWorkers.offer(worker);
+        }
+    }
+
+    public byte[] render(String htmlContent, String headerContent, String footerContent) {
+        RenderDeadline deadline = RenderDeadline.current();
+        RemoteWorker worker = acquire(deadline);
+        try {
+            return worker.render(htmlContent, headerContent, footerContent, deadline);
+        } finally {
+            release(worker);
+        }
+    }
+
+    /**
+     * Returns the worker to the pool, first restarting it in the background if the render
+     * left it stopped, so that the next request does not wait for a new process.
+     */
+    private void release(RemoteWorker worker) {
+        if (worker.isRunning()) {
+            idleWorkers.offer(worker);
+            return;
+        }
+        try {
+            restarter.execute(() -> {
+                try {
+                    worker.start();
+                } catch (IOException e) {
+                    // The worker is restarted on its next request
+                    log.warn("Render worker {} failed to restart: {}", worker.getId(), e.getMessage());
+                }
+                idleWorkers.offer(worker);
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private RemoteWorker acquire(RenderDeadline deadline) {
+        try {
+            RemoteWorker worker = idleWorkers.poll(deadline.cap(leaseTimeout).toNanos(), TimeUnit.NANOSECONDS);
+            if (worker == null) {
+                deadline.checkpoint("leasing a render worker");
+                throw new IllegalStateException("Timed out after " + leaseTimeout + " waiting for a render worker");
+            }
+            return worker;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a render worker", e);
+        }
+    }
+
+    /**
+     * Builds the command that launches a worker from the same classpath as this process,
+     * going through the Spring Boot launcher when running from an executable jar.
+     */
+    static List<String> workerCommand(List<String> jvmOptions) {
+        String javaBin = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = System.getProperty("java.class.path");
+
+        List<String> command = new ArrayList<>();
+        command.add(javaBin);
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(classPath);
+        if (isBootJar(classPath)) {
+            command.add("-Dloader.main=" + RenderWorkerMain.class.getName());
+            command.add(BOOT_LAUNCHER);
+        } else {
+            command.add(RenderWorkerMain.class.getName());
+        }
+        return command;
+    }
+
+    private static boolean isBootJar(String classPath) {
+        if (!classPath.endsWith(".jar") || classPath.contains(File.pathSeparator)) {
+            return false;
+        }
+        try (JarFile jar = new JarFile(classPath)) {
+            return jar.getEntry("BOOT-INF/classes/") != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Stopping {} render worker processes", workers.size());
+        restarter.shutdownNow();
+        watchdog.shutdownNow();
+        for (RemoteWorker worker : workers) {
+            worker.close();
+        }
+        workers.clear();
+        idleWorkers.clear();
+    }
+}
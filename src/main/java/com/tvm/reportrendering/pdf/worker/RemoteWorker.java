@@ -0,0 +1,198 @@
+package com.tvm.reportrendering.pdf.worker;
+
+import com.tvm.reportrendering.model.RenderDeadline;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handle to one render worker process and its socket connection.
+ *
+ * Not thread-safe: the {@link RemoteRenderPool} hands a worker to one caller at a time.
+ * If the process dies or the connection breaks, the worker is restarted and the request
+ * is retried once on the fresh process. A worker that is alive but does not answer within the
+ * render timeout or before the request deadline, such as one with a hung browser, is killed
+ * instead and the render fails.
+ */
+@Slf4j
+class RemoteWorker implements AutoCloseable {
+
+    private static final long CONNECT_RETRY_MILLIS = 100;
+
+    private final int id;
+    private final Path socketPath;
+    private final List<String> command;
+    private final Duration startupTimeout;
+    private final Duration renderTimeout;
+    private final ScheduledExecutorService watchdog;
+
+    private Process process;
+    private SocketChannel channel;
+
+    RemoteWorker(int id, Path socketPath, List<String> command, Duration startupTimeout,
+                 Duration renderTimeout, ScheduledExecutorService watchdog) {
+        this.id = id;
+        this.socketPath = socketPath;
+        this.command = command;
+        this.startupTimeout = startupTimeout;
+        this.renderTimeout = renderTimeout;
+        this.watchdog = watchdog;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Renders within the render timeout, capped at the deadline. The worker is sent the same
+     * budget for its page timeout, and is killed if it has not answered when the budget runs out.
+     */
+    byte[] render(String htmlContent, String headerContent, String footerContent, RenderDeadline deadline) {
+        IOException lastFailure = null;
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            Duration timeout = renderTimeout;
+            try {
+                ensureRunning();
+                deadline.checkpoint("sending the render to a worker");
+                timeout = deadline.cap(renderTimeout);
+                RenderProtocol.writeRequest(channel, new RenderProtocol.RenderRequest(
+                        htmlContent, headerContent, footerContent, Math.max(1, timeout.toMillis())));
+                return readResponse(timeout);
+            } catch (InterruptedByTimeoutException e) {
+                stop();
+                deadline.checkpoint("the render completed");
+                throw new IllegalStateException("Render worker " + id + " did not respond within " + timeout, e);
+            } catch (IOException e) {
+                lastFailure = e;
+                log.warn("Render worker {} failed on attempt {}: {}", id, attempt, e.getMessage());
+                stop();
+            }
+        }
+        throw new IllegalStateException("Render worker " + id + " failed", lastFailure);
+    }
+
+    /**
+     * Reads the response, closing the connection if it does not arrive in time so that the
+     * blocked read fails.
+     */
+    private byte[] readResponse(Duration timeout) throws IOException {
+        SocketChannel current = channel;
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> timer = watchdog.schedule(() -> {
+            timedOut.set(true);
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.debug("Error closing channel of render worker {}: {}", id, e.getMessage());
+            }
+        }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        try {
+            return RenderProtocol.readResponse(current);
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw (IOException) new InterruptedByTimeoutException().initCause(e);
+            }
+            throw e;
+        } finally {
+            timer.cancel(false);
+        }
+    }
+
+    boolean isRunning() {
+        return process != null && process.isAlive() && channel != null && channel.isOpen();
+    }
+
+    void start() throws IOException {
+        Files.deleteIfExists(socketPath);
+
+        List<String> fullCommand = new ArrayList<>(command);
+        fullCommand.add(socketPath.toString());
+        fullCommand.add(String.valueOf(ProcessHandle.current().pid()));
+
+        long startNanos = System.nanoTime();
+        process = new ProcessBuilder(fullCommand)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        channel = connect();
+        log.info("Started render worker {} (pid {}) in {} ms", id, process.pid(), (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    private void ensureRunning() throws IOException {
+        if (!isRunning()) {
+            if (process != null) {
+                log.warn("Render worker {} is not running, restarting", id);
+            }
+            stop();
+            start();
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        long deadline = System.nanoTime() + startupTimeout.toNanos();
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socketPath);
+
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IOException("Render worker " + id + " exited during startup with code " + process.exitValue());
+            }
+            if (Files.exists(socketPath)) {
+                SocketChannel candidate = SocketChannel.open(StandardProtocolFamily.UNIX);
+                try {
+                    candidate.connect(address);
+                    return candidate;
+                } catch (IOException e) {
+                    candidate.close();
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IOException("Render worker " + id + " did not start within " + startupTimeout);
+            }
+            try {
+                Thread.sleep(CONNECT_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while starting render worker " + id, e);
+            }
+        }
+    }
+
+    void stop() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.debug("Error closing channel of render worker {}: {}", id, e.getMessage());
+        }
+        if (process != null) {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+        channel = null;
+        process = null;
+    }
+
+    @Override
+    public void close() {
+        stop();
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            log.debug("Could not delete socket {}: {}", socketPath, e.getMessage());
+        }
+    }
+}
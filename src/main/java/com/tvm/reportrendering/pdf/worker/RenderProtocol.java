@@ -0,0 +1,160 @@
+package com.tvm.reportrendering.pdf.worker;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format between the API process and its render workers.
+ *
+ * A request is the render timeout in milliseconds (0 for none) followed by three
+ * length-prefixed UTF-8 strings (HTML, header, footer; length -1 for null). A response is a
+ * status byte, a length and the payload: the PDF bytes on success or a UTF-8 error message on
+ * failure. Payloads are written with gathering writes and read straight into a buffer of the
+ * exact size, so the PDF is copied once on each side.
+ */
+public final class RenderProtocol {
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    // Guards against allocating a huge buffer from a corrupt length prefix
+    private static final int MAX_FRAME_BYTES = 1 << 30;
+
+    private RenderProtocol() {
+    }
+
+    /**
+     * @param timeoutMillis time the worker has for the render, or 0 for its own default
+     */
+    public record RenderRequest(String htmlContent, String headerContent, String footerContent, long timeoutMillis) {
+    }
+
+    public static void writeRequest(GatheringByteChannel channel, RenderRequest request) throws IOException {
+        byte[] html = encode(request.htmlContent());
+        byte[] header = encode(request.headerContent());
+        byte[] footer = encode(request.footerContent());
+
+        ByteBuffer lengths = ByteBuffer.allocate(Long.BYTES + 3 * Integer.BYTES)
+                .putLong(request.timeoutMillis())
+                .putInt(length(html))
+                .putInt(length(header))
+                .putInt(length(footer))
+                .flip();
+
+        writeFully(channel, lengths, wrap(html), wrap(header), wrap(footer));
+    }
+
+    /**
+     * Reads the next request, or returns null if the peer closed the connection between requests.
+     */
+    public static RenderRequest readRequest(ReadableByteChannel channel) throws IOException {
+        ByteBuffer lengths = ByteBuffer.allocate(Long.BYTES + 3 * Integer.BYTES);
+        if (!readFully(channel, lengths, true)) {
+            return null;
+        }
+        lengths.flip();
+        long timeoutMillis = lengths.getLong();
+        int htmlLength = lengths.getInt();
+        int headerLength = lengths.getInt();
+        int footerLength = lengths.getInt();
+
+        return new RenderRequest(
+                readString(channel, htmlLength),
+                readString(channel, headerLength),
+                readString(channel, footerLength),
+                timeoutMillis);
+    }
+
+    public static void writeSuccess(GatheringByteChannel channel, byte[] pdf) throws IOException {
+        writeResponse(channel, STATUS_OK, pdf);
+    }
+
+    public static void writeError(GatheringByteChannel channel, String message) throws IOException {
+        writeResponse(channel, STATUS_ERROR, encode(message == null ? "Unknown error" : message));
+    }
+
+    /**
+     * Reads a response and returns the PDF bytes, or throws {@link IllegalStateException}
+     * with the worker's message if the render failed.
+     */
+    public static byte[] readResponse(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(1 + Integer.BYTES);
+        readFully(channel, header, false);
+        header.flip();
+        byte status = header.get();
+        int length = checkLength(header.getInt());
+
+        byte[] payload = new byte[length];
+        readFully(channel, ByteBuffer.wrap(payload), false);
+
+        if (status != STATUS_OK) {
+            throw new IllegalStateException("Render worker failed: " + new String(payload, StandardCharsets.UTF_8));
+        }
+        return payload;
+    }
+
+    private static void writeResponse(GatheringByteChannel channel, byte status, byte[] payload) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(1 + Integer.BYTES)
+                .put(status)
+                .putInt(payload.length)
+                .flip();
+        writeFully(channel, header, ByteBuffer.wrap(payload));
+    }
+
+    private static String readString(ReadableByteChannel channel, int length) throws IOException {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[checkLength(length)];
+        readFully(channel, ByteBuffer.wrap(bytes), false);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer, boolean eofAllowedAtStart)
+            throws IOException {
+        boolean started = false;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (!started && eofAllowedAtStart) {
+                    return false;
+                }
+                throw new EOFException("Connection closed mid-frame");
+            }
+            started = true;
+        }
+        return true;
+    }
+
+    private static void writeFully(GatheringByteChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private static int checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        return length;
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? -1 : bytes.length;
+    }
+
+    private static ByteBuffer wrap(byte[] bytes) {
+        return bytes == null ? ByteBuffer.allocate(0) : ByteBuffer.wrap(bytes);
+    }
+}
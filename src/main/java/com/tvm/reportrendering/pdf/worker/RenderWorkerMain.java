@@ -0,0 +1,102 @@
+package com.tvm.reportrendering.pdf.worker;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.pdf.AssetRegistry;
+import com.tvm.reportrendering.pdf.BrowserWorker;
+import com.tvm.reportrendering.pdf.FontRegistry;
+import com.tvm.reportrendering.pdf.OfflineResourceRouter;
+import com.tvm.reportrendering.pdf.PdfPageRenderer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Entry point of a standalone render worker process.
+ *
+ * The worker owns one browser, listens on a Unix domain socket and renders requests from
+ * the API process one at a time. It does not start Spring, and exits when its parent does.
+ *
+ * Usage: {@code RenderWorkerMain <socket-path> <parent-pid>}
+ */
+@Slf4j
+public final class RenderWorkerMain {
+
+    private RenderWorkerMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: RenderWorkerMain <socket-path> <parent-pid>");
+        }
+        Path socketPath = Path.of(args[0]);
+        long parentPid = Long.parseLong(args[1]);
+
+        ProcessHandle.of(parentPid).ifPresentOrElse(
+                parent -> parent.onExit().thenRun(() -> {
+                    log.info("Parent process {} exited, stopping render worker", parentPid);
+                    System.exit(0);
+                }),
+                () -> System.exit(0));
+
+        AssetRegistry assetRegistry = new AssetRegistry();
+        assetRegistry.loadAssets();
+        PdfProperties properties = new PdfProperties();
+        // The parent adds @font-face rules to the documents it sends; serve the fonts they reference
+        List<PdfProperties.Fonts.Face> faces = FontRegistry.decodeFaces(System.getProperty(FontRegistry.FACES_PROPERTY));
+        properties.getFonts().setEnabled(!faces.isEmpty());
+        properties.getFonts().setFaces(faces);
+        new FontRegistry(assetRegistry, properties).loadFonts();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PdfPageRenderer renderer = new PdfPageRenderer(
+                new OfflineResourceRouter(assetRegistry, properties, meterRegistry), properties, meterRegistry);
+
+        BrowserWorker browser = new BrowserWorker(0, 1);
+        browser.start().join();
+
+        Files.deleteIfExists(socketPath);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            log.info("Render worker {} listening on {}", ProcessHandle.current().pid(), socketPath);
+
+            while (true) {
+                try (SocketChannel channel = server.accept()) {
+                    serve(channel, browser, renderer);
+                } catch (IOException e) {
+                    log.warn("Render worker connection failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void serve(SocketChannel channel, BrowserWorker browser, PdfPageRenderer renderer) throws IOException {
+        RenderProtocol.RenderRequest request;
+        while ((request = RenderProtocol.readRequest(channel)) != null) {
+            RenderProtocol.RenderRequest current = request;
+            // Caps the page timeout, as for in-process renders, so the browser stops when the caller gives up
+            RenderDeadline deadline = current.timeoutMillis() > 0
+                    ? RenderDeadline.after(Duration.ofMillis(current.timeoutMillis()))
+                    : RenderDeadline.none();
+            byte[] pdf;
+            try (RenderDeadline.Scope ignored = deadline.bind()) {
+                pdf = browser.execute(page -> renderer.render(page,
+                        current.htmlContent(), current.headerContent(), current.footerContent()));
+            } catch (RuntimeException e) {
+                log.error("Render failed: {}", e.getMessage(), e);
+                RenderProtocol.writeError(channel, e.getMessage());
+                continue;
+            }
+            RenderProtocol.writeSuccess(channel, pdf);
+        }
+    }
+}
@@ -3,13 +3,21 @@ package com.tvm.reportrendering.reports.statement;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.tvm.reportrendering.annotation.ReportName;
+import com.tvm.reportrendering.model.OutputFormat;
+import com.tvm.reportrendering.model.RenderDeadline;
 import com.tvm.reportrendering.service.Report;
+import com.tvm.reportrendering.util.CsvWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 
 import static com.tvm.reportrendering.util.SecurityUtils.sanitizeForLogging;
 
@@ -65,6 +73,82 @@ public class StatementReport extends Report<StatementModel> {
         }
     }
 
+    /**
+     * One shard per account; each carries the statement period and totals so the first and
+     * last shard can render the statement header and the totals.
+     */
+    @Override
+    public List<StatementModel> shard(StatementModel statement) {
+        return statement.getAccounts().stream()
+                .map(account -> {
+                    StatementModel shard = new StatementModel();
+                    shard.setStartDate(statement.getStartDate());
+                    shard.setEndDate(statement.getEndDate());
+                    shard.setAccounts(List.of(account));
+                    shard.setTotalOpeningBalance(statement.getTotalOpeningBalance());
+                    shard.setTotalClosingBalance(statement.getTotalClosingBalance());
+                    return shard;
+                })
+                .toList();
+    }
+
+    @Override
+    public boolean rendersNatively(OutputFormat outputFormat) {
+        return outputFormat == OutputFormat.CSV;
+    }
+
+    /**
+     * One row per transaction, accounts in input order and transactions by date.
+     */
+    @Override
+    protected void writeCsv(StatementModel statement, Map<String, String> labels, CsvWriter csv) throws IOException {
+        csv.row(header(labels, "account_number", "Account Number"),
+                header(labels, "transit_number", "Transit Number"),
+                header(labels, "account_name", "Account Name"),
+                header(labels, "account_type", "Account Type"),
+                header(labels, "action_date", "Action Date"),
+                header(labels, "value_date", "Value Date"),
+                header(labels, "transaction_type", "Transaction Type"),
+                header(labels, "description", "Description"),
+                header(labels, "credit_amount", "Credit Amount"),
+                header(labels, "debit_amount", "Debit Amount"),
+                header(labels, "balance", "Balance"));
+
+        RenderDeadline deadline = RenderDeadline.current();
+        for (StatementModel.Account account : statement.getAccounts()) {
+            // The status has already been sent: the exception aborts the response
+            deadline.checkpoint("writing csv");
+            for (StatementModel.Transaction transaction : account.getTransactions()) {
+                csv.field(account.getAccountNumber())
+                        .field(account.getTransitNumber())
+                        .field(account.getAccountName())
+                        .field(account.getAccountType())
+                        .field(date(transaction.getActionDate()))
+                        .field(date(transaction.getValueDate()))
+                        .field(transaction.getTransactionType())
+                        .field(transaction.getDescription())
+                        .field(amount(transaction.getCreditAmount()))
+                        .field(amount(transaction.getDebitAmount()))
+                        .field(amount(transaction.getBalance()))
+                        .endRow();
+            }
+        }
+    }
+
+    // Labels double as form captions ("Account Number:"), which a column header does without
+    private static String header(Map<String, String> labels, String key, String defaultHeader) {
+        String label = labels.getOrDefault(key, defaultHeader);
+        return label.endsWith(":") ? label.substring(0, label.length() - 1).stripTrailing() : label;
+    }
+
+    private static String date(LocalDate date) {
+        return date != null ? date.toString() : null;
+    }
+
+    private static String amount(BigDecimal amount) {
+        return amount != null ? amount.setScale(2, RoundingMode.HALF_EVEN).toPlainString() : null;
+    }
+
     private void calculateAccountBalances(StatementModel.Account account) {
         if (account.getTransactions().isEmpty()) {
             account.setOpeningBalance(BigDecimal.ZERO);
@@ -0,0 +1,112 @@
+package com.tvm.reportrendering.service;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the application as out of service until a browser has completed a real PDF render.
+ *
+ * Once the application has started, a small document is rendered through {@link PdfService},
+ * which launches the pooled browser (or a render worker) if it is not running yet. Failed
+ * attempts are retried every {@code report.pdf.readiness.retry-interval}. The indicator is
+ * part of {@code /actuator/health} and of the readiness group, so a load balancer or
+ * orchestrator only routes traffic to an instance that can actually render.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "report.pdf.readiness", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class BrowserReadinessIndicator implements HealthIndicator {
+
+    static final String TEST_DOCUMENT = "<!DOCTYPE html><html><head><title>Readiness</title></head>"
+            + "<body><p>Readiness check</p></body></html>";
+
+    // Set to a directory holding a pre-extracted driver to skip extracting it from the jar
+    private static final String DRIVER_DIR_PROPERTY = "playwright.cli.dir";
+    private static final String BROWSERS_PATH_VARIABLE = "PLAYWRIGHT_BROWSERS_PATH";
+
+    private final PdfService pdfService;
+    private final Duration retryInterval;
+    private final ScheduledExecutorService executor;
+
+    private volatile Health health;
+    private int attempts;
+
+    public BrowserReadinessIndicator(PdfService pdfService, PdfProperties properties) {
+        this.pdfService = pdfService;
+        this.retryInterval = properties.getReadiness().getRetryInterval();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pdf-readiness");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.health = Health.outOfService().withDetails(runtimeDetails()).withDetail("status", "test render pending").build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        executor.execute(this::checkRender);
+    }
+
+    void checkRender() {
+        attempts++;
+        long start = System.nanoTime();
+        try {
+            String driverDir = System.getProperty(DRIVER_DIR_PROPERTY);
+            if (driverDir != null && !Files.exists(Path.of(driverDir, "package", "cli.js"))) {
+                throw new IllegalStateException("No Playwright driver in " + driverDir);
+            }
+
+            byte[] pdf = pdfService.generatePdf(TEST_DOCUMENT, null, null);
+            if (pdf.length < 5 || !"%PDF-".equals(new String(pdf, 0, 5, StandardCharsets.US_ASCII))) {
+                throw new IllegalStateException("Test render did not produce a PDF");
+            }
+
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            health = Health.up().withDetails(runtimeDetails()).withDetail("testRenderMillis", millis).build();
+            log.info("PDF rendering ready after {} attempt(s), test render took {} ms", attempts, millis);
+            executor.shutdown();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            health = Health.outOfService().withDetails(runtimeDetails())
+                    .withDetail("attempts", attempts)
+                    .withDetail("error", String.valueOf(cause.getMessage()))
+                    .build();
+            log.warn("Test render failed (attempt {}), retrying in {}: {}", attempts, retryInterval, cause.getMessage());
+            executor.schedule(this::checkRender, retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Map<String, Object> runtimeDetails() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("driverDir", System.getProperty(DRIVER_DIR_PROPERTY, "extracted from jar"));
+        details.put("browsersPath", System.getenv().getOrDefault(BROWSERS_PATH_VARIABLE, "default"));
+        return details;
+    }
+
+    @Override
+    public Health health() {
+        return health;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,197 @@
+package com.tvm.reportrendering.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tvm.reportrendering.config.TemplateProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.tvm.reportrendering.util.SecurityUtils.sanitizeForLogging;
+
+/**
+ * Labels of every report in every language, loaded once from the {@code language_<code>.json}
+ * files instead of on each request.
+ *
+ * Keys missing from a language are filled in when the bundles are loaded, from the language
+ * configured in {@code report.templates.label-fallbacks} and then from the default language, so a
+ * lookup is a plain map read. The bundles are immutable and replaced together when external
+ * templates change; a render in progress keeps the labels it started with.
+ */
+@Slf4j
+@Component
+public class LabelRegistry {
+
+    private static final String LABELS_PATTERN = "classpath*:templates/*/language_*.json";
+    private static final String TEMPLATES_SEGMENT = "/templates/";
+    private static final String LANGUAGE_PREFIX = "language_";
+    private static final String LANGUAGE_SUFFIX = ".json";
+
+    private static final TypeReference<Map<String, String>> LABELS_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path externalDirectory;
+    private final String defaultLanguage;
+    private final Map<String, String> fallbacks;
+
+    // Template name -> language -> labels, all immutable
+    private volatile Map<String, Map<String, Map<String, String>>> bundles = Map.of();
+
+    public LabelRegistry(TemplateProperties templateProperties) {
+        String directory = templateProperties.getDirectory();
+        this.externalDirectory = directory != null && !directory.isBlank() ? Path.of(directory) : null;
+        this.defaultLanguage = templateProperties.getDefaultLanguage();
+        this.fallbacks = Map.copyOf(templateProperties.getLabelFallbacks());
+    }
+
+    @PostConstruct
+    public void load() {
+        Map<String, Map<String, Map<String, String>>> files = new HashMap<>();
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LABELS_PATTERN)) {
+                String url = resource.getURL().toString();
+                int start = url.lastIndexOf(TEMPLATES_SEGMENT);
+                if (start < 0) {
+                    continue;
+                }
+                String[] path = url.substring(start + TEMPLATES_SEGMENT.length()).split("/");
+                if (path.length == 2) {
+                    try (InputStream inputStream = resource.getInputStream()) {
+                        add(files, path[0], path[1], inputStream);
+                    }
+                }
+            }
+            if (externalDirectory != null && Files.isDirectory(externalDirectory)) {
+                // Loaded after the packaged labels, so they replace them file by file
+                loadExternal(files);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load report labels", e);
+        }
+
+        Map<String, Map<String, Map<String, String>>> merged = new HashMap<>();
+        files.forEach((templateName, languages) -> {
+            Map<String, Map<String, String>> templateBundles = new HashMap<>();
+            for (String language : languages.keySet()) {
+                templateBundles.put(language, merge(templateName, language, languages));
+            }
+            merged.put(templateName, Map.copyOf(templateBundles));
+        });
+        bundles = Map.copyOf(merged);
+        log.info("Loaded labels: {}", summary());
+    }
+
+    @EventListener
+    public void onTemplatesChanged(TemplatesChangedEvent event) {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            // Keep serving the labels that were loaded last
+            log.error("Failed to reload report labels: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The labels of a template in a language, with missing keys taken from its fallback languages.
+     *
+     * @throws IllegalArgumentException if the template has no label file for the language
+     */
+    public Map<String, String> getLabels(String templateName, String language) {
+        Map<String, String> labels = bundles.getOrDefault(templateName, Map.of()).get(language);
+        if (labels == null) {
+            throw new IllegalArgumentException("Language file not found: templates/" + templateName + "/"
+                    + LANGUAGE_PREFIX + language + LANGUAGE_SUFFIX);
+        }
+        return labels;
+    }
+
+    public Set<String> getLanguages(String templateName) {
+        return bundles.getOrDefault(templateName, Map.of()).keySet();
+    }
+
+    /**
+     * The languages whose labels a language falls back to, most specific first, ending with the
+     * default language.
+     */
+    List<String> fallbackChain(String language) {
+        Set<String> chain = new LinkedHashSet<>();
+        String next = language;
+        // Stops at a language without a fallback, or at one already in the chain
+        while (next != null && chain.add(next)) {
+            next = fallbacks.get(next);
+        }
+        chain.add(defaultLanguage);
+        return new ArrayList<>(chain);
+    }
+
+    private Map<String, String> merge(String templateName, String language,
+                                      Map<String, Map<String, String>> languages) {
+        List<String> chain = fallbackChain(language);
+        Map<String, String> labels = new HashMap<>();
+        // Least specific first, so each language overrides the ones it falls back to
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            labels.putAll(languages.getOrDefault(chain.get(i), Map.of()));
+        }
+        labels.values().removeIf(Objects::isNull);
+        int filledIn = labels.size() - languages.get(language).size();
+        if (filledIn > 0) {
+            log.debug("Filled in {} labels for {}/{} from {}", filledIn, templateName, language, chain.subList(1, chain.size()));
+        }
+        return Map.copyOf(labels);
+    }
+
+    private void loadExternal(Map<String, Map<String, Map<String, String>>> files) throws IOException {
+        List<Path> labelFiles;
+        try (Stream<Path> paths = Files.find(externalDirectory, 2, (path, attributes) -> attributes.isRegularFile()
+                && path.getFileName().toString().startsWith(LANGUAGE_PREFIX)
+                && path.getFileName().toString().endsWith(LANGUAGE_SUFFIX))) {
+            labelFiles = paths.toList();
+        }
+        for (Path labelFile : labelFiles) {
+            Path relative = externalDirectory.relativize(labelFile);
+            if (relative.getNameCount() != 2) {
+                continue;
+            }
+            try (InputStream inputStream = Files.newInputStream(labelFile)) {
+                add(files, relative.getName(0).toString(), relative.getName(1).toString(), inputStream);
+            }
+        }
+    }
+
+    private void add(Map<String, Map<String, Map<String, String>>> files, String templateName, String fileName,
+                     InputStream inputStream) throws IOException {
+        if (!fileName.startsWith(LANGUAGE_PREFIX) || !fileName.endsWith(LANGUAGE_SUFFIX)) {
+            return;
+        }
+        String language = fileName.substring(LANGUAGE_PREFIX.length(), fileName.length() - LANGUAGE_SUFFIX.length());
+        try {
+            files.computeIfAbsent(templateName, name -> new HashMap<>())
+                    .put(language, objectMapper.readValue(inputStream, LABELS_TYPE));
+        } catch (IOException e) {
+            throw new IOException("Invalid label file for " + sanitizeForLogging(templateName) + "/" + fileName, e);
+        }
+    }
+
+    private Map<String, Set<String>> summary() {
+        Map<String, Set<String>> summary = new HashMap<>();
+        bundles.forEach((templateName, languages) -> summary.put(templateName, languages.keySet()));
+        return summary;
+    }
+}
@@ -1,105 +1,489 @@
 package com.tvm.reportrendering.service;
 
-import com.microsoft.playwright.Browser;
-import com.microsoft.playwright.Page;
-import com.microsoft.playwright.Playwright;
-import com.microsoft.playwright.Route;
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.model.RenderCancelledException;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.model.RenderMetrics;
+import com.tvm.reportrendering.model.SpooledContent;
+import com.tvm.reportrendering.pdf.AdaptiveConcurrencyLimiter;
+import com.tvm.reportrendering.pdf.BrowserPool;
+import com.tvm.reportrendering.pdf.FontRegistry;
+import com.tvm.reportrendering.pdf.PdfOptimizer;
+import com.tvm.reportrendering.pdf.PdfPageRenderer;
+import com.tvm.reportrendering.pdf.PdfShardMerger;
+import com.tvm.reportrendering.pdf.TemplateShell;
+import com.tvm.reportrendering.pdf.engine.PdfEngine;
+import com.tvm.reportrendering.pdf.worker.RemoteRenderPool;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ClassPathResource;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * The Chromium PDF engine: renders through the in-process browser pool or out-of-process
+ * workers, with optional streaming and sharded rendering.
+ *
+ * Chromium performance counters collected into the report's {@link RenderMetrics} are
+ * published after each render as {@code report.pdf.render.*} histograms, tagged by template
+ * and page count bucket.
+ */
 @Slf4j
 @Service
-public class PdfService {
+public class PdfService implements PdfEngine {
+
+    public static final String ENGINE_NAME = "chromium";
+
+    private final BrowserPool browserPool;
+    private final RemoteRenderPool remoteRenderPool;
+    private final PdfPageRenderer pageRenderer;
+    private final PdfProperties properties;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final PdfOptimizer optimizer;
+    private final FontRegistry fontRegistry;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService shardExecutor;
+
+    public PdfService(ObjectProvider<BrowserPool> browserPool, ObjectProvider<RemoteRenderPool> remoteRenderPool,
+                      PdfPageRenderer pageRenderer, PdfProperties properties,
+                      AdaptiveConcurrencyLimiter concurrencyLimiter, PdfOptimizer optimizer,
+                      FontRegistry fontRegistry, MeterRegistry meterRegistry) {
+        // Exactly one of the pools exists, depending on report.pdf.workers.enabled
+        this.browserPool = browserPool.getIfAvailable();
+        this.remoteRenderPool = remoteRenderPool.getIfAvailable();
+        this.pageRenderer = pageRenderer;
+        this.properties = properties;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.optimizer = optimizer;
+        this.fontRegistry = fontRegistry;
+        this.meterRegistry = meterRegistry;
 
+        AtomicInteger threadCount = new AtomicInteger();
+        this.shardExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getSharding().getParallelism()), runnable -> {
+            Thread thread = new Thread(runnable, "pdf-shard-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME;
+    }
+
+    @Override
     public byte[] generatePdf(String htmlContent, String headerContent, String footerContent) {
         log.debug("Generating PDF from HTML content");
 
-        try (Playwright playwright = Playwright.create()) {
-            Browser browser = playwright.chromium().launch();
-            Page page = browser.newPage();
-
-            // Set up resource routing for shared template resources
-            page.route("**", route -> {
-                String url = route.request().url();
-                log.debug("Playwright route request: {}", url);
-
-                if (url.contains("/resources/")) {
-                    try {
-                        String resourcePath = url.substring(url.indexOf("/resources/") + 1); // Keep "resources/..."
-                        log.debug("Attempting to serve resource: {}", resourcePath);
-
-                        // Map to templates/resources directory
-                        String fullPath = "templates/" + resourcePath;
-                        ClassPathResource resource = new ClassPathResource(fullPath);
-
-                        if (resource.exists()) {
-                            byte[] resourceData = resource.getInputStream().readAllBytes();
-                            String contentType = getContentType(resourcePath);
-
-                            route.fulfill(new Route.FulfillOptions()
-                                    .setStatus(200)
-                                    .setContentType(contentType)
-                                    .setBodyBytes(resourceData));
-
-                            log.info("Successfully served resource: {} (size: {} bytes)", fullPath, resourceData.length);
-                        } else {
-                            log.warn("Resource not found: {}", fullPath);
-                            route.fulfill(new Route.FulfillOptions().setStatus(404));
-                        }
-                    } catch (Exception e) {
-                        log.error("Error handling resource route: {}", e.getMessage(), e);
-                        route.fulfill(new Route.FulfillOptions().setStatus(500));
-                    }
-                } else {
-                    // Continue with normal request
-                    route.resume();
-                }
+        try {
+            // Optimize outside the render slot so the next render can use the browser meanwhile
+            byte[] rendered = concurrencyLimiter.execute(() -> render(htmlContent, headerContent, footerContent));
+            publishMetrics(() -> countPages(rendered));
+            RenderDeadline.current().checkpoint("optimizing");
+            byte[] pdfBytes = optimizer.optimize(rendered);
+
+            log.debug("PDF generated successfully, size: {} bytes", pdfBytes.length);
+            return pdfBytes;
+        } catch (RenderCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error generating PDF: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to generate PDF", e);
+        }
+    }
+
+    /**
+     * Renders the first page of a PDF template as a PNG thumbnail, sized by {@code report.pdf.preview}.
+     *
+     * The in-process pool captures a screenshot, which skips printing the whole document.
+     * Out-of-process workers only print PDFs, so there the PDF is rendered and its first page
+     * rasterized.
+     */
+    public byte[] generatePreview(String htmlContent) {
+        log.debug("Generating PNG preview from HTML content");
+
+        try {
+            byte[] png = concurrencyLimiter.execute(() -> renderPreview(htmlContent));
+            // Only the first page is laid out for print, so previews have no page count
+            publishMetrics(() -> -1);
+
+            log.debug("Preview generated successfully, size: {} bytes", png.length);
+            return png;
+        } catch (RenderCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error generating preview: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to generate preview", e);
+        }
+    }
+
+    private byte[] renderPreview(String html) {
+        String htmlContent = fontRegistry.apply(html);
+        int width = properties.getPreview().getWidth();
+        int dpi = properties.getPreview().getDpi();
+
+        if (remoteRenderPool != null) {
+            return rasterizeFirstPage(remoteRenderPool.render(htmlContent, null, null), dpi);
+        }
+
+        TemplateShell shell = properties.getShell().isEnabled() ? TemplateShell.split(htmlContent) : null;
+        if (shell != null) {
+            return browserPool.withShellPage(shell.shellHtml(),
+                    page -> pageRenderer.loadShell(page, shell.shellHtml()),
+                    page -> pageRenderer.previewOnShell(page, shell.bodyHtml(), width, dpi));
+        }
+        return browserPool.withPage(page -> pageRenderer.preview(page, htmlContent, width, dpi));
+    }
+
+    private static byte[] rasterizeFirstPage(byte[] pdf, int dpi) {
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            BufferedImage image = new PDFRenderer(document).renderImageWithDPI(0, dpi, ImageType.RGB);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rasterize PDF preview", e);
+        }
+    }
+
+    /**
+     * Whether PDFs should be requested through {@link #generatePdfSpooled(String, String, String)}.
+     * Out-of-process workers return the document over their socket, so streaming applies to the
+     * in-process pool only.
+     */
+    @Override
+    public boolean isStreamingEnabled() {
+        return properties.getStreaming().isEnabled() && remoteRenderPool == null;
+    }
+
+    /**
+     * Renders the PDF into a temporary file without materializing it on the heap.
+     */
+    @Override
+    public SpooledContent generatePdfSpooled(String htmlContent, String headerContent, String footerContent) {
+        log.debug("Generating spooled PDF from HTML content");
+
+        Path target = null;
+        try {
+            target = createSpoolFile();
+            Path file = target;
+            concurrencyLimiter.execute(() -> {
+                renderToFile(htmlContent, headerContent, footerContent, file);
+                return file;
             });
+            publishMetrics(() -> countPages(file));
+            RenderDeadline.current().checkpoint("optimizing");
+            optimizer.optimize(target);
+
+            SpooledContent content = new SpooledContent(target);
+            log.debug("PDF spooled successfully, size: {} bytes", content.getLength());
+            return content;
+        } catch (RenderCancelledException e) {
+            deleteQuietly(target);
+            throw e;
+        } catch (Exception e) {
+            log.error("Error generating PDF: {}", e.getMessage(), e);
+            deleteQuietly(target);
+            throw new RuntimeException("Failed to generate PDF", e);
+        }
+    }
 
-            page.setContent(htmlContent);
+    /**
+     * Whether a document with the given number of independent sections should be rendered in shards.
+     */
+    @Override
+    public boolean isShardingEnabled(int sectionCount) {
+        PdfProperties.Sharding sharding = properties.getSharding();
+        return sharding.isEnabled() && sectionCount >= Math.max(2, sharding.getMinShards());
+    }
 
-            Page.PdfOptions pdfOptions = new Page.PdfOptions()
-                    .setFormat("A4")
-                    .setPrintBackground(true);
+    /**
+     * Renders each shard as its own PDF in parallel and merges them in order, with header and
+     * footer applied across the whole document so page numbers are continuous.
+     *
+     * Every shard must be a complete document using the same page setup.
+     */
+    @Override
+    public byte[] generateShardedPdf(List<String> shardHtml, String headerContent, String footerContent) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderSharded(shardHtml, headerContent, footerContent, out);
+        RenderDeadline.current().checkpoint("optimizing");
+        return optimizer.optimize(out.toByteArray());
+    }
 
-            if (headerContent != null) {
-                pdfOptions.setHeaderTemplate(headerContent);
-                pdfOptions.setDisplayHeaderFooter(true);
+    /**
+     * Like {@link #generateShardedPdf(List, String, String)}, writing the merged document to a spool file.
+     */
+    @Override
+    public SpooledContent generateShardedPdfSpooled(List<String> shardHtml, String headerContent, String footerContent) {
+        Path target = null;
+        try {
+            target = createSpoolFile();
+            try (OutputStream out = Files.newOutputStream(target)) {
+                renderSharded(shardHtml, headerContent, footerContent, out);
             }
+            RenderDeadline.current().checkpoint("optimizing");
+            optimizer.optimize(target);
+            return new SpooledContent(target);
+        } catch (IOException e) {
+            deleteQuietly(target);
+            throw new RuntimeException("Failed to generate PDF", e);
+        } catch (RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        }
+    }
 
-            if (footerContent != null) {
-                pdfOptions.setFooterTemplate(footerContent);
-                pdfOptions.setDisplayHeaderFooter(true);
+    private void renderSharded(List<String> shardHtml, String headerContent, String footerContent, OutputStream out) {
+        log.debug("Generating PDF from {} shards", shardHtml.size());
+        long start = System.nanoTime();
+
+        RenderDeadline deadline = RenderDeadline.current();
+        RenderMetrics metrics = RenderMetrics.current();
+        AtomicInteger mergedPages = new AtomicInteger(-1);
+        List<Path> files = new ArrayList<>();
+        List<CompletableFuture<Path>> segments = new ArrayList<>();
+        try {
+            for (String html : shardHtml) {
+                Path segment = createSpoolFile();
+                files.add(segment);
+                segments.add(CompletableFuture.supplyAsync(() -> {
+                    try (RenderDeadline.Scope ignored = deadline.bind();
+                         RenderDeadline.Scope measured = RenderMetrics.bindIfPresent(metrics)) {
+                        return concurrencyLimiter.execute(() -> {
+                            renderToFile(html, null, null, segment);
+                            return segment;
+                        });
+                    }
+                }, shardExecutor));
+            }
+            CompletableFuture<Void> allSegments = CompletableFuture.allOf(segments.toArray(CompletableFuture[]::new));
+            if (!deadline.await(allSegments)) {
+                deadline.checkpoint("merging shards");
             }
+            allSegments.join();
 
-            byte[] pdfBytes = page.pdf(pdfOptions);
-            browser.close();
+            TemplateShell shell = TemplateShell.split(shardHtml.get(0));
+            boolean hasHeaderFooter = headerContent != null || footerContent != null;
+            PdfShardMerger.merge(files, pageCount -> {
+                mergedPages.set(pageCount);
+                if (!hasHeaderFooter || shell == null) {
+                    return null;
+                }
+                try {
+                    Path overlay = createSpoolFile();
+                    files.add(overlay);
+                    String overlayHtml = shell.withBody(blankPages(pageCount));
+                    concurrencyLimiter.execute(() -> {
+                        renderToFile(overlayHtml, headerContent, footerContent, overlay);
+                        return overlay;
+                    });
+                    return overlay;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, out);
 
-            log.debug("PDF generated successfully, size: {} bytes", pdfBytes.length);
-            return pdfBytes;
+            publishMetrics(mergedPages::get);
+            log.debug("Sharded PDF with {} shards generated in {} ms", shardHtml.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rendering shards", e);
         } catch (Exception e) {
-            log.error("Error generating PDF: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to generate PDF", e);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RenderCancelledException cancelled) {
+                throw cancelled;
+            }
+            log.error("Error generating sharded PDF: {}", cause.getMessage(), cause);
+            throw new RuntimeException("Failed to generate PDF", cause);
+        } finally {
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                if (i < segments.size() && !segments.get(i).isDone()) {
+                    // Abandoned at the deadline; the shard deletes its file once it stops
+                    segments.get(i).whenComplete((segment, error) -> deleteQuietly(file));
+                } else {
+                    deleteQuietly(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the Chromium counters collected for the current report, if any. The page count
+     * is only computed when there is something to publish.
+     */
+    private void publishMetrics(IntSupplier pageCount) {
+        RenderMetrics metrics = RenderMetrics.current();
+        if (metrics == null || !metrics.hasSamples()) {
+            return;
+        }
+        int pages = pageCount.getAsInt();
+        metrics.setPageCount(pages);
+
+        Tags tags = Tags.of("template", String.valueOf(metrics.getTemplate()), "pages", pageBucket(pages));
+        recordDuration("report.pdf.render.layout", "Chromium layout time per report", tags, metrics.getLayoutSeconds());
+        recordDuration("report.pdf.render.style", "Chromium style recalculation time per report", tags, metrics.getRecalcStyleSeconds());
+        recordDuration("report.pdf.render.script", "Chromium script time per report", tags, metrics.getScriptSeconds());
+        DistributionSummary.builder("report.pdf.render.js.heap")
+                .description("JavaScript heap in use after rendering a report")
+                .baseUnit("bytes")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(metrics.getJsHeapUsedBytes());
+        DistributionSummary.builder("report.pdf.render.nodes")
+                .description("DOM nodes of a rendered report")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(metrics.getNodes());
+    }
+
+    private void recordDuration(String name, String description, Tags tags, double seconds) {
+        Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record((long) (seconds * 1_000_000_000L), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Coarse page count tag, keeping the number of time series small.
+     */
+    static String pageBucket(int pages) {
+        if (pages < 1) {
+            return "unknown";
+        } else if (pages == 1) {
+            return "1";
+        } else if (pages <= 5) {
+            return "2-5";
+        } else if (pages <= 20) {
+            return "6-20";
+        } else if (pages <= 100) {
+            return "21-100";
+        }
+        return "100+";
+    }
+
+    private static int countPages(byte[] pdf) {
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            return document.getNumberOfPages();
+        } catch (IOException e) {
+            log.debug("Could not count PDF pages: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    private static int countPages(Path pdf) {
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            return document.getNumberOfPages();
+        } catch (IOException e) {
+            log.debug("Could not count PDF pages: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    // Transparent pages that only carry the header and footer templates
+    private static String blankPages(int pageCount) {
+        StringBuilder body = new StringBuilder("<style>html, body { background: transparent !important; }</style>");
+        for (int i = 0; i < pageCount; i++) {
+            body.append(i < pageCount - 1
+                    ? "<div style=\"height: 1px; break-after: page;\"></div>"
+                    : "<div style=\"height: 1px;\"></div>");
+        }
+        return body.toString();
+    }
+
+    private Path createSpoolFile() throws IOException {
+        Path spoolDir = Files.createDirectories(Path.of(properties.getStreaming().getSpoolDir()));
+        return Files.createTempFile(spoolDir, "report-", ".pdf");
+    }
+
+    private void renderToFile(String html, String headerContent, String footerContent, Path target) {
+        String htmlContent = fontRegistry.apply(html);
+        if (remoteRenderPool != null) {
+            try {
+                Files.write(target, remoteRenderPool.render(htmlContent, headerContent, footerContent));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to write PDF to " + target, e);
+            }
+            return;
+        }
+
+        TemplateShell shell = properties.getShell().isEnabled() ? TemplateShell.split(htmlContent) : null;
+        if (shell != null) {
+            browserPool.withShellPage(shell.shellHtml(),
+                    page -> pageRenderer.loadShell(page, shell.shellHtml()),
+                    page -> {
+                        pageRenderer.renderOnShellToFile(page, shell.bodyHtml(), headerContent, footerContent, target);
+                        return target;
+                    });
+            return;
+        }
+        browserPool.withPage(page -> {
+            pageRenderer.renderToFile(page, htmlContent, headerContent, footerContent, target);
+            return target;
+        });
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
         }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private byte[] render(String html, String headerContent, String footerContent) {
+        String htmlContent = fontRegistry.apply(html);
+        if (remoteRenderPool != null) {
+            return remoteRenderPool.render(htmlContent, headerContent, footerContent);
+        }
+        return renderInProcess(htmlContent, headerContent, footerContent);
     }
 
-    private String getContentType(String resourcePath) {
-        String lowercasePath = resourcePath.toLowerCase();
-        if (lowercasePath.endsWith(".png")) {
-            return "image/png";
-        } else if (lowercasePath.endsWith(".jpg") || lowercasePath.endsWith(".jpeg")) {
-            return "image/jpeg";
-        } else if (lowercasePath.endsWith(".gif")) {
-            return "image/gif";
-        } else if (lowercasePath.endsWith(".svg")) {
-            return "image/svg+xml";
-        } else if (lowercasePath.endsWith(".css")) {
-            return "text/css";
-        } else if (lowercasePath.endsWith(".js")) {
-            return "application/javascript";
-        } else {
-            return "application/octet-stream";
+    private byte[] renderInProcess(String htmlContent, String headerContent, String footerContent) {
+        TemplateShell shell = properties.getShell().isEnabled() ? TemplateShell.split(htmlContent) : null;
+        if (shell != null) {
+            return browserPool.withShellPage(shell.shellHtml(),
+                    page -> pageRenderer.loadShell(page, shell.shellHtml()),
+                    page -> pageRenderer.renderOnShell(page, shell.bodyHtml(), headerContent, footerContent));
         }
+        return browserPool.withPage(page -> pageRenderer.render(page, htmlContent, headerContent, footerContent));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shardExecutor.shutdownNow();
     }
-}
\ No newline at end of file
+}
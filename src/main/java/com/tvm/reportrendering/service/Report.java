@@ -1,16 +1,38 @@
 package com.tvm.reportrendering.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tvm.reportrendering.model.OutputFormat;
+import com.tvm.reportrendering.model.RenderCancelledException;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.model.RenderMetrics;
+import com.tvm.reportrendering.model.RenderOptions;
 import com.tvm.reportrendering.model.ReportOutput;
+import com.tvm.reportrendering.model.StreamedContent;
+import com.tvm.reportrendering.pdf.engine.PdfEngine;
+import com.tvm.reportrendering.pdf.engine.PdfEngineRegistry;
+import com.tvm.reportrendering.template.CompiledTemplate;
+import com.tvm.reportrendering.template.CompiledTemplates;
+import com.tvm.reportrendering.util.CsvWriter;
+import com.tvm.reportrendering.util.RenderBuffers;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.event.EventListener;
+import org.thymeleaf.IThrottledTemplateProcessor;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.tvm.reportrendering.util.SecurityUtils.sanitizeForLogging;
 
@@ -23,52 +45,117 @@ public abstract class Report<T> {
     @Autowired
     protected PdfService pdfService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    protected PdfEngineRegistry pdfEngines;
+
+    @Autowired
+    protected TemplateIndex templateIndex;
+
+    @Autowired
+    protected LabelRegistry labelRegistry;
+
+    @Autowired
+    protected CompiledTemplates compiledTemplates;
+
+    private static final DateTimeFormatter GENERATED_ON_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    // Output produced per step of throttled HTML processing
+    private static final int HTML_CHUNK_BYTES = 64 * 1024;
+
+    // Rendered into cached headers and footers in place of the time, which differs per request
+    private static final String GENERATED_ON_PLACEHOLDER = "@@generatedOn@@";
+
+    // Rendered PDF header and footer per template and language
+    private final Map<String, HeaderFooter> headerFooterCache = new ConcurrentHashMap<>();
+
+    private record HeaderFooter(String header, String footer) {
+    }
+
+    @EventListener
+    public void onTemplatesChanged(TemplatesChangedEvent event) {
+        headerFooterCache.clear();
+    }
 
 
     public ReportOutput process(InputStream inputStream, String templateName, OutputFormat outputFormat, String language) {
+        return process(inputStream, templateName, outputFormat, language, new RenderOptions());
+    }
+
+    public ReportOutput process(InputStream inputStream, String templateName, OutputFormat outputFormat, String language,
+                                RenderOptions options) {
         log.info("Processing report with template: {}, format: {} and language: {}", sanitizeForLogging(templateName), outputFormat, sanitizeForLogging(language));
 
-        try {
+        // Bound for the whole request so the PDF engines and the browser pool see it too
+        RenderDeadline deadline = options.getDeadline();
+        RenderMetrics metrics = new RenderMetrics(templateName);
+        try (RenderDeadline.Scope ignored = deadline.bind();
+             RenderDeadline.Scope measured = metrics.bind()) {
+            deadline.checkpoint("parsing");
             T model = parse(inputStream);
             log.debug("Parsed model successfully");
 
-            Map<String, String> labels = loadLanguageLabels(templateName, language);
+            deadline.checkpoint("loading labels");
+            Map<String, String> labels = labelRegistry.getLabels(templateName, language);
             log.debug("Loaded language labels for language: {}", sanitizeForLogging(language));
 
-            ReportOutput output = render(model, templateName, outputFormat, labels);
+            deadline.checkpoint("templating");
+            ReportOutput output = render(model, templateName, outputFormat, language, labels, options);
+            if (metrics.hasSamples()) {
+                output.setRenderMetrics(metrics);
+            }
             log.info("Report processed successfully");
             return output;
+        } catch (RenderCancelledException e) {
+            log.info("Report processing abandoned: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Error processing report: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to process report: " + e.getMessage(), e);
         }
     }
 
-    private Map<String, String> loadLanguageLabels(String templateName, String language) {
-        String languageFileName = String.format("language_%s.json", language);
-        String languageFilePath = String.format("templates/%s/%s", templateName, languageFileName);
+    protected abstract T parse(InputStream inputStream);
 
-        try {
-            ClassPathResource resource = new ClassPathResource(languageFilePath);
-            if (!resource.exists()) {
-                throw new IllegalArgumentException("Language file not found: " + languageFilePath);
-            }
+    /**
+     * Splits the model into parts whose PDFs can be rendered independently and concatenated,
+     * such as one part per account. Each part is rendered with the {@code pdf} template, with
+     * {@code firstShard} and {@code lastShard} telling it which part it is.
+     *
+     * The default returns an empty list, meaning the report is always rendered as one document.
+     */
+    protected List<T> shard(T model) {
+        return List.of();
+    }
 
-            log.debug("Loading language file: {}", sanitizeForLogging(languageFilePath));
-            return objectMapper.readValue(resource.getInputStream(), Map.class);
-        } catch (Exception e) {
-            log.error("Error loading language file {}: {}", sanitizeForLogging(languageFilePath), sanitizeForLogging(e.getMessage()));
-            throw new RuntimeException("Failed to load language file: " + languageFilePath, e);
-        }
+    /**
+     * Whether the report produces the format itself instead of from its template, as
+     * {@link #writeCsv} does for CSV.
+     */
+    public boolean rendersNatively(OutputFormat outputFormat) {
+        return false;
     }
 
-    protected abstract T parse(InputStream inputStream);
+    /**
+     * Writes the model as CSV rows, with column headers from the labels. Called while the response
+     * is being written, once per request, for reports that render CSV natively. Large reports
+     * should call {@code RenderDeadline.current().checkpoint(...)} now and then, such as once per
+     * account, so that an expired request stops writing.
+     */
+    protected void writeCsv(T model, Map<String, String> labels, CsvWriter csv) throws IOException {
+        throw new UnsupportedOperationException("CSV is rendered from the csv template");
+    }
+
+    protected ReportOutput render(T model, String templateName, OutputFormat outputFormat, String language,
+                                  Map<String, String> labels, RenderOptions options) {
+        String generatedOn = LocalDateTime.now().format(GENERATED_ON_FORMAT);
 
-    protected ReportOutput render(T model, String templateName, OutputFormat outputFormat, Map<String, String> labels) {
-        Context context = new Context();
+        // The locale selects number conventions in #fmt
+        Context context = new Context(Locale.forLanguageTag(language));
         context.setVariable("model", model);
         context.setVariable("labels", labels);
+        context.setVariable("generatedOn", generatedOn);
+        context.setVariable("firstShard", true);
+        context.setVariable("lastShard", true);
 
         String templatePath = String.format("%s/%s", templateName, outputFormat.name().toLowerCase());
 
@@ -76,17 +163,67 @@ public abstract class Report<T> {
             case HTML:
                 return renderHtml(context, templatePath);
             case CSV:
+                if (rendersNatively(OutputFormat.CSV)) {
+                    return new ReportOutput(OutputFormat.CSV.getMimeType(),
+                            streamed(writer -> writeCsv(model, labels, new CsvWriter(writer))));
+                }
                 return renderCsv(context, templatePath);
             case PDF:
-                return renderPdf(context, templateName);
+                return renderPdf(model, context, templateName, language, labels, generatedOn,
+                        selectPdfEngine(templateName, options));
+            case PNG:
+                return renderPreview(model, context, templateName, labels, generatedOn);
             default:
                 throw new IllegalArgumentException("Unsupported output format: " + outputFormat);
         }
     }
 
+    /**
+     * Renders HTML while it is written to the response, a chunk at a time, so that neither the time
+     * to the first byte nor the memory held depends on the number of transactions. The template is
+     * resolved here, so a missing template still fails the request before anything is sent.
+     * A compiled template is written straight to the response, checking the deadline before each
+     * loop item.
+     */
     private ReportOutput renderHtml(Context context, String templatePath) {
-        String content = templateEngine.process(templatePath, context);
-        return new ReportOutput(OutputFormat.HTML.getMimeType(), content);
+        CompiledTemplate compiled = compiled(templatePath);
+        if (compiled != null) {
+            Map<String, Object> variables = variables(context);
+            return new ReportOutput(OutputFormat.HTML.getMimeType(),
+                    streamed(writer -> compiled.render(variables, context.getLocale(), writer)));
+        }
+
+        IThrottledTemplateProcessor processor = templateEngine.processThrottled(templatePath, context);
+        RenderDeadline deadline = RenderDeadline.current();
+        return new ReportOutput(OutputFormat.HTML.getMimeType(), (StreamedContent) outputStream -> {
+            while (!processor.isFinished()) {
+                // The status has already been sent: the exception aborts the response, and the container
+                // closes the connection without ending the chunked body, so it cannot pass for a whole report
+                deadline.checkpoint("streaming html");
+                processor.process(HTML_CHUNK_BYTES, outputStream, StandardCharsets.UTF_8);
+            }
+        });
+    }
+
+    /**
+     * Content written through a pooled UTF-8 buffer when the response is sent, with the request
+     * deadline bound again, since that happens after {@link #process} has returned. The deadline
+     * is also checked each time the buffer is written out, which covers large stretches of output
+     * with no checkpoint of their own, such as a fragment written from the cache.
+     */
+    private static StreamedContent streamed(RenderBuffers.WriterTask task) {
+        RenderDeadline deadline = RenderDeadline.current();
+        return outputStream -> {
+            try (RenderDeadline.Scope ignored = deadline.bind()) {
+                RenderBuffers.stream(new FilterOutputStream(outputStream) {
+                    @Override
+                    public void write(byte[] bytes, int offset, int length) throws IOException {
+                        deadline.checkpoint("streaming");
+                        out.write(bytes, offset, length);
+                    }
+                }, task);
+            }
+        };
     }
 
     private ReportOutput renderCsv(Context context, String templatePath) {
@@ -94,26 +231,127 @@ public abstract class Report<T> {
         return new ReportOutput(OutputFormat.CSV.getMimeType(), content);
     }
 
-    private ReportOutput renderPdf(Context context, String templateName) {
-        String htmlContent = templateEngine.process(templateName + "/pdf", context);
+    private ReportOutput renderPreview(T model, Context context, String templateName, Map<String, String> labels,
+                                       String generatedOn) {
+        // Only the first page is captured, so a sharded report only needs its first shard
+        List<T> shards = shard(model);
+        if (shards.size() > 1) {
+            context = new Context(context.getLocale());
+            context.setVariable("model", shards.get(0));
+            context.setVariable("labels", labels);
+            context.setVariable("generatedOn", generatedOn);
+            context.setVariable("firstShard", true);
+            context.setVariable("lastShard", false);
+        }
 
-        // Check for header and footer templates
-        String headerContent = null;
-        String footerContent = null;
+        String htmlContent = process(templateName + "/pdf", context);
+        RenderDeadline.current().checkpoint("preview");
+        return new ReportOutput(OutputFormat.PNG.getMimeType(), pdfService.generatePreview(htmlContent));
+    }
 
+    /**
+     * Renders the template with its compiled form when there is one, otherwise with Thymeleaf,
+     * into a pooled buffer.
+     */
+    private String process(String templatePath, Context context) {
+        CompiledTemplate compiled = compiled(templatePath);
         try {
-            headerContent = templateEngine.process(templateName + "/pdf_header", context);
-        } catch (Exception e) {
-            log.debug("No header template found for {}", sanitizeForLogging(templateName));
+            if (compiled == null) {
+                return RenderBuffers.render(writer -> templateEngine.process(templatePath, context, writer));
+            }
+            Map<String, Object> variables = variables(context);
+            return RenderBuffers.render(writer -> compiled.render(variables, context.getLocale(), writer));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        try {
-            footerContent = templateEngine.process(templateName + "/pdf_footer", context);
-        } catch (Exception e) {
-            log.debug("No footer template found for {}", sanitizeForLogging(templateName));
+    private CompiledTemplate compiled(String templatePath) {
+        // Absent outside the application context, where templates are always interpreted
+        return compiledTemplates != null ? compiledTemplates.get(templatePath) : null;
+    }
+
+    private static Map<String, Object> variables(Context context) {
+        Map<String, Object> variables = new HashMap<>();
+        for (String name : context.getVariableNames()) {
+            variables.put(name, context.getVariable(name));
+        }
+        return variables;
+    }
+
+    private PdfEngine selectPdfEngine(String templateName, RenderOptions options) {
+        // The registry is absent only when a report is used outside the application context
+        return pdfEngines != null ? pdfEngines.select(templateName, options.getPdfEngine()) : pdfService;
+    }
+
+    /**
+     * Renders the optional {@code pdf_header} and {@code pdf_footer} templates once per template and
+     * language. They only see {@code labels} and {@code generatedOn}, not the model: page numbers are
+     * filled in by the PDF engine, and the time is substituted into the cached copy per request.
+     */
+    private HeaderFooter headerFooter(String templateName, String language, Map<String, String> labels,
+                                      String generatedOn) {
+        HeaderFooter cached = headerFooterCache.computeIfAbsent(templateName + "/" + language, key -> {
+            Context context = new Context(Locale.forLanguageTag(language));
+            context.setVariable("labels", labels);
+            context.setVariable("generatedOn", GENERATED_ON_PLACEHOLDER);
+            return new HeaderFooter(processOptional(templateName, "pdf_header", context),
+                    processOptional(templateName, "pdf_footer", context));
+        });
+        return new HeaderFooter(withGeneratedOn(cached.header(), generatedOn), withGeneratedOn(cached.footer(), generatedOn));
+    }
+
+    private String processOptional(String templateName, String part, Context context) {
+        // Without an index, outside the application context, every part is assumed to exist
+        if (templateIndex != null && !templateIndex.exists(templateName, part)) {
+            log.debug("No {} template found for {}", part, sanitizeForLogging(templateName));
+            return null;
+        }
+        return templateEngine.process(templateName + "/" + part, context);
+    }
+
+    private static String withGeneratedOn(String content, String generatedOn) {
+        return content == null ? null : content.replace(GENERATED_ON_PLACEHOLDER, generatedOn);
+    }
+
+    private ReportOutput renderPdf(T model, Context context, String templateName, String language,
+                                   Map<String, String> labels, String generatedOn, PdfEngine pdfEngine) {
+        HeaderFooter headerFooter = headerFooter(templateName, language, labels, generatedOn);
+        String headerContent = headerFooter.header();
+        String footerContent = headerFooter.footer();
+
+        List<T> shards = shard(model);
+        if (pdfEngine.isShardingEnabled(shards.size())) {
+            List<String> shardHtml = new ArrayList<>(shards.size());
+            // One context for all shards, with the per-shard variables replaced
+            Context shardContext = new Context(context.getLocale());
+            shardContext.setVariable("labels", labels);
+            shardContext.setVariable("generatedOn", generatedOn);
+            for (int i = 0; i < shards.size(); i++) {
+                RenderDeadline.current().checkpoint("templating shard " + (i + 1));
+                shardContext.setVariable("model", shards.get(i));
+                shardContext.setVariable("firstShard", i == 0);
+                shardContext.setVariable("lastShard", i == shards.size() - 1);
+                shardHtml.add(process(templateName + "/pdf", shardContext));
+            }
+            log.debug("Rendering PDF for {} in {} shards", sanitizeForLogging(templateName), shards.size());
+            RenderDeadline.current().checkpoint("PDF rendering");
+
+            Object pdfContent = pdfEngine.isStreamingEnabled()
+                    ? pdfEngine.generateShardedPdfSpooled(shardHtml, headerContent, footerContent)
+                    : pdfEngine.generateShardedPdf(shardHtml, headerContent, footerContent);
+            return new ReportOutput(OutputFormat.PDF.getMimeType(), pdfContent);
+        }
+
+        String htmlContent = process(templateName + "/pdf", context);
+        RenderDeadline.current().checkpoint("PDF rendering");
+
+        if (pdfEngine.isStreamingEnabled()) {
+            return new ReportOutput(OutputFormat.PDF.getMimeType(),
+                    pdfEngine.generatePdfSpooled(htmlContent, headerContent, footerContent));
         }
 
-        byte[] pdfContent = pdfService.generatePdf(htmlContent, headerContent, footerContent);
+        byte[] pdfContent = pdfEngine.generatePdf(htmlContent, headerContent, footerContent);
         return new ReportOutput(OutputFormat.PDF.getMimeType(), pdfContent);
     }
 }
\ No newline at end of file
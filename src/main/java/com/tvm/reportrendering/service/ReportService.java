@@ -1,19 +1,33 @@
 package com.tvm.reportrendering.service;
 
 import com.tvm.reportrendering.annotation.ReportName;
+import com.tvm.reportrendering.config.PdfProperties;
 import com.tvm.reportrendering.model.OutputFormat;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.model.RenderOptions;
 import com.tvm.reportrendering.model.ReportOutput;
+import com.tvm.reportrendering.model.TemplateCapabilities;
+import com.tvm.reportrendering.pdf.engine.PdfEngineRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.io.InputStream;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.tvm.reportrendering.util.SecurityUtils.sanitizeForLogging;
 
@@ -24,8 +38,25 @@ public class ReportService {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private PdfEngineRegistry pdfEngineRegistry;
+
+    @Autowired
+    private PdfProperties pdfProperties;
+
+    @Autowired
+    private TemplateIndex templateIndex;
+
+    // Previews from an earlier deployment, or from before external templates changed, are never reused
+    private final String deploymentId = Instant.now().toString();
+    private final AtomicLong templateGeneration = new AtomicLong();
+
     private Map<String, Report<?>> reportHandlers = new HashMap<>();
 
+    // Immutable, replaced as a whole when external templates change
+    private volatile Map<String, TemplateCapabilities> capabilities = Map.of();
+    private volatile Map<String, List<OutputFormat>> availableTemplates = Map.of();
+
 
     @PostConstruct
     public void initializeReportHandlers() {
@@ -43,9 +74,61 @@ public class ReportService {
         }
 
         log.info("Initialized {} report handlers", reportHandlers.size());
+        buildCapabilities();
+    }
+
+    @EventListener
+    public void onTemplatesChanged(TemplatesChangedEvent event) {
+        templateGeneration.incrementAndGet();
+        buildCapabilities();
+    }
+
+    /**
+     * Records, for each registered report, the output formats it renders natively or has a template
+     * part for, and the languages that have a label file.
+     */
+    private void buildCapabilities() {
+        TemplateIndex index = templateIndex;
+        if (index == null) {
+            // Outside the application context, index the packaged templates here
+            index = new TemplateIndex();
+            index.buildIndex();
+        }
+
+        Map<String, TemplateCapabilities> built = new HashMap<>();
+        for (Map.Entry<String, Report<?>> handler : reportHandlers.entrySet()) {
+            String templateName = handler.getKey();
+            List<OutputFormat> formats = new ArrayList<>();
+            for (OutputFormat format : OutputFormat.values()) {
+                if (handler.getValue().rendersNatively(format) || index.exists(templateName, templatePart(format))) {
+                    formats.add(format);
+                }
+            }
+            List<String> languages = index.getLanguages(templateName).stream().sorted().toList();
+            built.put(templateName, new TemplateCapabilities(formats, languages));
+        }
+
+        Map<String, List<OutputFormat>> templates = new HashMap<>();
+        built.forEach((templateName, templateCapabilities) -> templates.put(templateName, templateCapabilities.formats()));
+
+        capabilities = Map.copyOf(built);
+        availableTemplates = Map.copyOf(templates);
+        log.info("Template capabilities: {}", capabilities);
+    }
+
+    /**
+     * The template part an output format is rendered from; PNG previews render the PDF template.
+     */
+    private static String templatePart(OutputFormat format) {
+        return format == OutputFormat.PNG ? "pdf" : format.name().toLowerCase();
     }
 
     public ReportOutput generateReport(InputStream inputStream, String templateName, OutputFormat outputFormat, String language) {
+        return generateReport(inputStream, templateName, outputFormat, language, new RenderOptions());
+    }
+
+    public ReportOutput generateReport(InputStream inputStream, String templateName, OutputFormat outputFormat, String language,
+                                       RenderOptions options) {
         log.info("Generating report for template: {} with format: {} and language: {}", sanitizeForLogging(templateName), outputFormat, sanitizeForLogging(language));
 
         Report<?> handler = reportHandlers.get(templateName);
@@ -54,19 +137,77 @@ public class ReportService {
             throw new IllegalArgumentException("No report handler found for template: " + templateName);
         }
 
-        return handler.process(inputStream, templateName, outputFormat, language);
+        return handler.process(inputStream, templateName, outputFormat, language, options);
+    }
+
+    /**
+     * Returns the deadline for a request starting now: the timeout the caller asked for, capped at
+     * {@code report.pdf.deadline.max}, or the configured default for the output format.
+     *
+     * @param requestedMillis timeout from the {@code X-Request-Timeout} header, or null
+     * @throws IllegalArgumentException if the requested timeout is not positive
+     */
+    public RenderDeadline requestDeadline(OutputFormat outputFormat, Long requestedMillis) {
+        PdfProperties.Deadline config = pdfProperties.getDeadline();
+        Duration timeout;
+        if (requestedMillis != null) {
+            if (requestedMillis <= 0) {
+                throw new IllegalArgumentException("Request timeout must be a positive number of milliseconds");
+            }
+            timeout = Duration.ofMillis(requestedMillis);
+            if (!config.getMax().isZero() && timeout.compareTo(config.getMax()) > 0) {
+                timeout = config.getMax();
+            }
+        } else {
+            timeout = config.getDefaults().get(outputFormat);
+        }
+        return timeout == null || timeout.isZero() ? RenderDeadline.none() : RenderDeadline.after(timeout);
     }
 
+    /**
+     * Formats each registered template can be rendered in, computed at startup.
+     */
     public Map<String, List<OutputFormat>> getAvailableTemplates() {
-        Map<String, List<OutputFormat>> templates = new HashMap<>();
+        return availableTemplates;
+    }
 
-        for (String templateName : reportHandlers.keySet()) {
-            // For now, all templates support all formats
-            // This could be enhanced to check actual template availability
-            templates.put(templateName, Arrays.asList(OutputFormat.values()));
+    /**
+     * Formats and languages the template supports, or null if no report is registered under the name.
+     */
+    public TemplateCapabilities getTemplateCapabilities(String templateName) {
+        return templateName != null ? capabilities.get(templateName) : null;
+    }
+
+    /**
+     * Returns a strong ETag for the PNG preview of the given input, so that clients and caches can
+     * revalidate a preview without it being rendered again.
+     */
+    public String previewETag(byte[] input, String templateName, String language) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            PdfProperties.Preview preview = pdfProperties.getPreview();
+            String variant = String.join("|", deploymentId, String.valueOf(templateGeneration.get()), templateName, language,
+                    String.valueOf(preview.getWidth()), String.valueOf(preview.getDpi()));
+            digest.update(variant.getBytes(StandardCharsets.UTF_8));
+            digest.update(input);
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
+    }
+
+    public Duration getPreviewCacheMaxAge() {
+        return pdfProperties.getPreview().getCacheMaxAge();
+    }
+
+    /**
+     * Whether Chromium render metrics are returned to the caller in a {@code Server-Timing} header.
+     */
+    public boolean isRenderMetricsHeaderEnabled() {
+        return pdfProperties.getMetrics().isDebugHeaders();
+    }
 
-        log.debug("Available templates: {}", templates);
-        return templates;
+    public Set<String> getAvailablePdfEngines() {
+        return pdfEngineRegistry.getEngineNames();
     }
-}
\ No newline at end of file
+}
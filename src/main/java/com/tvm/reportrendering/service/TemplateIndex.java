@@ -0,0 +1,166 @@
+package com.tvm.reportrendering.service;
+
+import com.tvm.reportrendering.config.TemplateProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the template parts ({@code pdf}, {@code pdf_header}, {@code html}, ...) and label
+ * languages that exist for each report, built at startup from {@code templates/<report>/<part>.html},
+ * {@code templates/<report>/language_<code>.json} and the external template directory, and rebuilt
+ * when the external templates change.
+ *
+ * Lets optional parts be skipped with a lookup instead of a failed template resolution.
+ */
+@Slf4j
+@Component
+public class TemplateIndex {
+
+    private static final String TEMPLATES_PATTERN = "classpath*:templates/*/*.html";
+    private static final String LANGUAGES_PATTERN = "classpath*:templates/*/language_*.json";
+    private static final String TEMPLATES_SEGMENT = "/templates/";
+    private static final String TEMPLATE_SUFFIX = ".html";
+    private static final String LANGUAGE_PREFIX = "language_";
+    private static final String LANGUAGE_SUFFIX = ".json";
+
+    // Shared assets, not a report
+    private static final String RESOURCES_DIRECTORY = "resources";
+
+    private final Path externalDirectory;
+
+    private volatile Map<String, Set<String>> parts = Map.of();
+    private volatile Map<String, Set<String>> languages = Map.of();
+
+    public TemplateIndex() {
+        this.externalDirectory = null;
+    }
+
+    @Autowired
+    public TemplateIndex(TemplateProperties templateProperties) {
+        String directory = templateProperties.getDirectory();
+        this.externalDirectory = directory != null && !directory.isBlank() ? Path.of(directory) : null;
+    }
+
+    @PostConstruct
+    public void buildIndex() {
+        Map<String, Set<String>> index = new HashMap<>();
+
+        Map<String, Set<String>> languageIndex = new HashMap<>();
+
+        try {
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+            indexClasspath(resolver.getResources(TEMPLATES_PATTERN), "", TEMPLATE_SUFFIX, index);
+            indexClasspath(resolver.getResources(LANGUAGES_PATTERN), LANGUAGE_PREFIX, LANGUAGE_SUFFIX, languageIndex);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to index report templates", e);
+        }
+        if (externalDirectory != null) {
+            indexExternalDirectory(index, languageIndex);
+        }
+
+        parts = freeze(index);
+        languages = freeze(languageIndex);
+        log.info("Indexed templates: {}, languages: {}", parts, languages);
+    }
+
+    /**
+     * Adds {@code templates/<report>/<prefix><name><suffix>} resources to the index as {@code name}.
+     */
+    private static void indexClasspath(Resource[] resources, String prefix, String suffix,
+                                       Map<String, Set<String>> index) throws IOException {
+        for (Resource resource : resources) {
+            String url = resource.getURL().toString();
+            int start = url.lastIndexOf(TEMPLATES_SEGMENT);
+            if (start < 0 || !url.endsWith(suffix)) {
+                continue;
+            }
+            String[] path = url.substring(start + TEMPLATES_SEGMENT.length(), url.length() - suffix.length()).split("/");
+            if (path.length != 2 || RESOURCES_DIRECTORY.equals(path[0]) || !path[1].startsWith(prefix)) {
+                continue;
+            }
+            index.computeIfAbsent(path[0], template -> new HashSet<>()).add(path[1].substring(prefix.length()));
+        }
+    }
+
+    private static Map<String, Set<String>> freeze(Map<String, Set<String>> index) {
+        index.replaceAll((template, names) -> Set.copyOf(names));
+        return Map.copyOf(index);
+    }
+
+    // Before listeners that read the index
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onTemplatesChanged(TemplatesChangedEvent event) {
+        buildIndex();
+    }
+
+    private void indexExternalDirectory(Map<String, Set<String>> index, Map<String, Set<String>> languageIndex) {
+        if (!Files.isDirectory(externalDirectory)) {
+            log.warn("Template directory {} does not exist", externalDirectory);
+            return;
+        }
+        try (Stream<Path> reports = Files.list(externalDirectory)) {
+            for (Path report : reports.filter(Files::isDirectory).toList()) {
+                String templateName = report.getFileName().toString();
+                if (RESOURCES_DIRECTORY.equals(templateName)) {
+                    continue;
+                }
+                List<Path> templates;
+                try (Stream<Path> files = Files.list(report)) {
+                    templates = files.filter(Files::isRegularFile).toList();
+                }
+                for (Path template : templates) {
+                    String fileName = template.getFileName().toString();
+                    if (fileName.endsWith(TEMPLATE_SUFFIX)) {
+                        index.computeIfAbsent(templateName, name -> new HashSet<>())
+                                .add(fileName.substring(0, fileName.length() - TEMPLATE_SUFFIX.length()));
+                    } else if (fileName.startsWith(LANGUAGE_PREFIX) && fileName.endsWith(LANGUAGE_SUFFIX)) {
+                        languageIndex.computeIfAbsent(templateName, name -> new HashSet<>())
+                                .add(fileName.substring(LANGUAGE_PREFIX.length(), fileName.length() - LANGUAGE_SUFFIX.length()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to index templates in " + externalDirectory, e);
+        }
+    }
+
+    /**
+     * Whether {@code templates/<templateName>/<part>.html} exists.
+     */
+    public boolean exists(String templateName, String part) {
+        return parts.getOrDefault(templateName, Set.of()).contains(part);
+    }
+
+    public Set<String> getTemplateNames() {
+        return parts.keySet();
+    }
+
+    public Set<String> getParts(String templateName) {
+        return parts.getOrDefault(templateName, Set.of());
+    }
+
+    /**
+     * Language codes with a {@code templates/<templateName>/language_<code>.json} label file.
+     */
+    public Set<String> getLanguages(String templateName) {
+        return languages.getOrDefault(templateName, Set.of());
+    }
+}
@@ -0,0 +1,150 @@
+package com.tvm.reportrendering.service;
+
+import com.tvm.reportrendering.config.TemplateProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Drops cached templates when files in {@code report.templates.directory} change.
+ *
+ * Templates stay parsed in the Thymeleaf cache between requests; this watches the directory and
+ * each report directory in it, waits for changes to settle, then clears the cache and publishes a
+ * {@link TemplatesChangedEvent} so derived state (the template index, rendered headers and
+ * footers) is rebuilt. The next request parses the new templates once.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "report.templates", name = "directory")
+public class TemplateWatcher {
+
+    private final TemplateEngine templateEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TemplateProperties properties;
+
+    private WatchService watchService;
+    private Thread thread;
+
+    public TemplateWatcher(TemplateEngine templateEngine, ApplicationEventPublisher eventPublisher,
+                           TemplateProperties properties) {
+        this.templateEngine = templateEngine;
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path directory = Path.of(properties.getDirectory());
+        if (!properties.isWatch()) {
+            log.info("Templates in {} are cached until restart", directory);
+            return;
+        }
+        if (!Files.isDirectory(directory)) {
+            log.warn("Template directory {} does not exist, not watching it", directory);
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        register(directory);
+        try (Stream<Path> reports = Files.list(directory)) {
+            for (Path report : reports.filter(Files::isDirectory).toList()) {
+                register(report);
+            }
+        }
+
+        thread = new Thread(() -> watch(directory), "template-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Watching {} for template changes", directory);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    }
+
+    private void watch(Path directory) {
+        long debounceMillis = properties.getDebounce().toMillis();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<String> changed = new HashSet<>();
+                WatchKey key = watchService.take();
+                // Collect further changes until the directory has been quiet for the debounce period
+                while (key != null) {
+                    collect(directory, key, changed);
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+                reload(changed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private void collect(Path directory, WatchKey key, Set<String> changed) {
+        Path watched = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                continue;
+            }
+            Path path = watched.resolve((Path) event.context());
+            if (watched.equals(directory)) {
+                // A report directory was added, replaced or removed
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                    try {
+                        register(path);
+                    } catch (IOException e) {
+                        log.warn("Failed to watch template directory {}: {}", path, e.getMessage());
+                    }
+                }
+                changed.add(path.getFileName().toString());
+            } else {
+                changed.add(watched.getFileName().toString());
+            }
+        }
+        key.reset();
+    }
+
+    void reload(Set<String> changed) {
+        try {
+            templateEngine.clearTemplateCache();
+            eventPublisher.publishEvent(new TemplatesChangedEvent(this, changed));
+            log.info("Reloaded templates after changes to {}", changed);
+        } catch (RuntimeException e) {
+            log.error("Failed to reload templates after changes to {}", changed, e);
+        }
+    }
+}
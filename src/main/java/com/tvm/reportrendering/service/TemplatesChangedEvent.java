@@ -0,0 +1,26 @@
+package com.tvm.reportrendering.service;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Set;
+
+/**
+ * Published after templates in the external template directory changed and the template
+ * cache was cleared, so that anything derived from templates can be rebuilt.
+ */
+public class TemplatesChangedEvent extends ApplicationEvent {
+
+    private final Set<String> templateNames;
+
+    public TemplatesChangedEvent(Object source, Set<String> templateNames) {
+        super(source);
+        this.templateNames = Set.copyOf(templateNames);
+    }
+
+    /**
+     * Reports whose directory changed; empty if only files outside a report directory changed.
+     */
+    public Set<String> getTemplateNames() {
+        return templateNames;
+    }
+}
@@ -0,0 +1,19 @@
+package com.tvm.reportrendering.template;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A template compiled by {@link TemplateCompiler}: rendering writes its static markup and
+ * evaluated expressions straight to the writer, without interpreting the template.
+ */
+@FunctionalInterface
+public interface CompiledTemplate {
+
+    /**
+     * Renders the template with the given context variables; {@code #fmt} uses the locale.
+     */
+    void render(Map<String, ?> variables, Locale locale, Writer writer) throws IOException;
+}
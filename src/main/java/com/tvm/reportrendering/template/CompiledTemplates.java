@@ -0,0 +1,127 @@
+package com.tvm.reportrendering.template;
+
+import com.tvm.reportrendering.config.TemplateProperties;
+import com.tvm.reportrendering.service.TemplateIndex;
+import com.tvm.reportrendering.service.TemplatesChangedEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.tvm.reportrendering.util.SecurityUtils.sanitizeForLogging;
+
+/**
+ * The {@code html} and {@code pdf} template parts compiled by {@link TemplateCompiler}, from the
+ * external template directory or the classpath, as Thymeleaf resolves them. Compiled at startup
+ * and again when the external templates change; parts that cannot be compiled are left to Thymeleaf.
+ */
+@Slf4j
+@Component
+public class CompiledTemplates {
+
+    // The parts rendered per request; headers and footers are cached after their first rendering
+    private static final List<String> COMPILED_PARTS = List.of("html", "pdf");
+
+    private static final String CLASSPATH_PREFIX = "templates/";
+    private static final String TEMPLATE_SUFFIX = ".html";
+
+    private final boolean enabled;
+    private final Path externalDirectory;
+    private final TemplateIndex templateIndex;
+    private final FragmentCache fragmentCache;
+
+    // Empty for parts rendered by Thymeleaf
+    private final Map<String, Optional<CompiledTemplate>> compiled = new ConcurrentHashMap<>();
+
+    public CompiledTemplates() {
+        this(new TemplateProperties(), null, null);
+    }
+
+    @Autowired
+    public CompiledTemplates(TemplateProperties templateProperties, TemplateIndex templateIndex,
+                             FragmentCache fragmentCache) {
+        String directory = templateProperties.getDirectory();
+        this.enabled = templateProperties.isCompile();
+        this.externalDirectory = directory != null && !directory.isBlank() ? Path.of(directory) : null;
+        this.templateIndex = templateIndex;
+        this.fragmentCache = fragmentCache;
+    }
+
+    @PostConstruct
+    public void compileAll() {
+        if (!enabled || templateIndex == null) {
+            return;
+        }
+        for (String templateName : templateIndex.getTemplateNames()) {
+            for (String part : COMPILED_PARTS) {
+                if (templateIndex.exists(templateName, part)) {
+                    get(templateName + "/" + part);
+                }
+            }
+        }
+    }
+
+    @EventListener
+    public void onTemplatesChanged(TemplatesChangedEvent event) {
+        compiled.clear();
+        compileAll();
+    }
+
+    /**
+     * The compiled template for {@code <report>/<part>}, or null if it is rendered by Thymeleaf.
+     */
+    public CompiledTemplate get(String templatePath) {
+        if (!enabled) {
+            return null;
+        }
+        return compiled.computeIfAbsent(templatePath, this::compile).orElse(null);
+    }
+
+    private Optional<CompiledTemplate> compile(String templatePath) {
+        String source = load(templatePath);
+        if (source == null) {
+            // Thymeleaf reports the missing template
+            return Optional.empty();
+        }
+        try {
+            CompiledTemplate template = TemplateCompiler.compile(source, templatePath, fragmentCache);
+            log.info("Compiled template {}", sanitizeForLogging(templatePath));
+            return Optional.of(template);
+        } catch (UnsupportedTemplateException e) {
+            log.info("Template {} is rendered by Thymeleaf: {}", sanitizeForLogging(templatePath), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private String load(String templatePath) {
+        try {
+            if (externalDirectory != null) {
+                Path file = externalDirectory.resolve(templatePath + TEMPLATE_SUFFIX).normalize();
+                if (file.startsWith(externalDirectory) && Files.isRegularFile(file)) {
+                    return Files.readString(file, StandardCharsets.UTF_8);
+                }
+            }
+            ClassPathResource resource = new ClassPathResource(CLASSPATH_PREFIX + templatePath + TEMPLATE_SUFFIX);
+            if (!resource.exists()) {
+                return null;
+            }
+            try (InputStream inputStream = resource.getInputStream()) {
+                return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read template " + templatePath, e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.tvm.reportrendering.template;
+
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.dialect.AbstractDialect;
+import org.thymeleaf.dialect.IExpressionObjectDialect;
+import org.thymeleaf.expression.IExpressionObjectFactory;
+
+import java.util.Set;
+
+/**
+ * Adds the {@code #fmt} expression object ({@link Formats}) to templates, for the locale of the
+ * template context: {@code ${#fmt.amount(transaction.balance)}}, {@code ${#fmt.date(transaction.actionDate)}}.
+ *
+ * Replaces {@code #numbers.formatDecimal} and {@code #temporals.format} in per-transaction cells,
+ * which build a new formatter on every call. Spring Boot registers dialect beans with the
+ * template engine.
+ */
+@Component
+public class FormatDialect extends AbstractDialect implements IExpressionObjectDialect {
+
+    public static final String EXPRESSION_OBJECT_NAME = "fmt";
+
+    private static final IExpressionObjectFactory FACTORY = new IExpressionObjectFactory() {
+
+        @Override
+        public Set<String> getAllExpressionObjectNames() {
+            return Set.of(EXPRESSION_OBJECT_NAME);
+        }
+
+        @Override
+        public Object buildObject(IExpressionContext context, String expressionObjectName) {
+            return EXPRESSION_OBJECT_NAME.equals(expressionObjectName) ? Formats.forLocale(context.getLocale()) : null;
+        }
+
+        @Override
+        public boolean isCacheable(String expressionObjectName) {
+            return true;
+        }
+    };
+
+    public FormatDialect() {
+        super("Report formats");
+    }
+
+    @Override
+    public IExpressionObjectFactory getExpressionObjectFactory() {
+        return FACTORY;
+    }
+}
@@ -0,0 +1,91 @@
+package com.tvm.reportrendering.template;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Amount and date formatting for templates, available as {@code #fmt} through {@link FormatDialect}.
+ *
+ * One instance per locale is created and shared by every template execution, so no formatter
+ * is built per call. Amounts use the grouping and decimal separators of the locale (1,234.56 in
+ * English, 1 234,56 in French, 1.234,56 in Croatian and Serbian).
+ */
+public final class Formats {
+
+    // Narrow no-break space, the French grouping separator in CLDR, is missing from many fonts
+    private static final char NARROW_NO_BREAK_SPACE = '\u202F';
+    private static final char NO_BREAK_SPACE = '\u00A0';
+
+    private static final Map<Locale, Formats> BY_LOCALE = new ConcurrentHashMap<>();
+
+    private final Locale locale;
+    private final char groupingSeparator;
+    private final char decimalSeparator;
+    private final Map<String, DateTimeFormatter> datePatterns = new ConcurrentHashMap<>();
+
+    private Formats(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.locale = locale;
+        this.groupingSeparator = symbols.getGroupingSeparator() == NARROW_NO_BREAK_SPACE
+                ? NO_BREAK_SPACE : symbols.getGroupingSeparator();
+        this.decimalSeparator = symbols.getDecimalSeparator();
+    }
+
+    public static Formats forLocale(Locale locale) {
+        return BY_LOCALE.computeIfAbsent(locale != null ? locale : Locale.ENGLISH, Formats::new);
+    }
+
+    /**
+     * The amount rounded half-even to two decimals, with thousands grouped, e.g. {@code 1,234.56};
+     * an empty string for null. Negative amounts start with an ASCII hyphen-minus in every locale.
+     */
+    public String amount(BigDecimal value) {
+        if (value == null) {
+            return "";
+        }
+        BigDecimal scaled = value.setScale(2, RoundingMode.HALF_EVEN);
+        String digits = scaled.unscaledValue().abs().toString();
+        if (digits.length() < 3) {
+            // Below 1.00, e.g. "5" for 0.05
+            digits = "00".substring(digits.length() - 1) + digits;
+        }
+        int integerDigits = digits.length() - 2;
+
+        StringBuilder formatted = new StringBuilder(digits.length() + integerDigits / 3 + 2);
+        if (scaled.signum() < 0) {
+            formatted.append('-');
+        }
+        for (int i = 0; i < integerDigits; i++) {
+            if (i > 0 && (integerDigits - i) % 3 == 0) {
+                formatted.append(groupingSeparator);
+            }
+            formatted.append(digits.charAt(i));
+        }
+        formatted.append(decimalSeparator).append(digits, integerDigits, digits.length());
+        return formatted.toString();
+    }
+
+    /**
+     * The date as {@code yyyy-MM-dd}, as statements show it in every language; an empty string for null.
+     */
+    public String date(LocalDate date) {
+        return date != null ? date.toString() : "";
+    }
+
+    /**
+     * The date in the given {@link DateTimeFormatter} pattern, with month and day names in the
+     * template's language; an empty string for null. The formatter is built once per pattern.
+     */
+    public String date(LocalDate date, String pattern) {
+        if (date == null) {
+            return "";
+        }
+        return datePatterns.computeIfAbsent(pattern, key -> DateTimeFormatter.ofPattern(key, locale)).format(date);
+    }
+}
@@ -0,0 +1,215 @@
+package com.tvm.reportrendering.template;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tvm.reportrendering.config.TemplateProperties;
+import com.tvm.reportrendering.service.TemplatesChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rendered output of the items of selected {@code th:each} loops in compiled templates, such as
+ * one account of a statement, so that a document downloaded again with only some accounts changed
+ * renders only those.
+ *
+ * An item is looked up by template, locale and a SHA-256 digest of the item and of the values of
+ * the variables its markup reads besides the item (usually {@code labels}), taken over their JSON
+ * form. Keys hold only the digest, so cached fragments do not keep the customer data they were
+ * rendered from. Items of classes without their own {@code equals}, or that cannot be written as
+ * JSON, are not cached. The least recently used fragments are evicted once their total size,
+ * counting the keys, exceeds the configured maximum.
+ */
+@Component
+public class FragmentCache {
+
+    // Whether instances compare by content rather than identity
+    private static final ClassValue<Boolean> COMPARES_CONTENT = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class
+                        && type.getMethod("hashCode").getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    // Estimated size of a key and its map entry; the template path and locale are shared
+    private static final long KEY_BYTES = 160;
+
+    // Map entries in key order, so that equal maps give the same digest
+    private static final ObjectMapper DIGEST_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    /**
+     * Identifies a rendered fragment by the digest of its item and of the other values it depends on.
+     */
+    public record Key(String templatePath, Locale locale, String digest) {
+    }
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final Set<String> iterables;
+
+    // Access order, so iteration starts at the least recently used fragment
+    private final LinkedHashMap<Key, String> fragments = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public FragmentCache(TemplateProperties templateProperties, MeterRegistry meterRegistry) {
+        TemplateProperties.Fragments config = templateProperties.getFragments();
+        this.enabled = config.isEnabled() && config.getMaxSize().toBytes() > 0;
+        this.maxBytes = config.getMaxSize().toBytes();
+        this.iterables = Set.copyOf(config.getIterables());
+
+        this.hits = Counter.builder("report.template.fragments.gets")
+                .description("Lookups of rendered template fragments")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("report.template.fragments.gets")
+                .description("Lookups of rendered template fragments")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("report.template.fragments.evictions")
+                .description("Rendered fragments evicted to stay within the maximum size")
+                .register(meterRegistry);
+        Gauge.builder("report.template.fragments.size", this, FragmentCache::getSizeBytes)
+                .description("Estimated size of the cached fragments")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("report.template.fragments.hit.ratio", this, FragmentCache::getHitRatio)
+                .description("Share of fragment lookups served from the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether the items of {@code th:each="item : ${iterable}"} are cached, for a loop outside any other.
+     */
+    public boolean caches(String iterable) {
+        return enabled && iterables.contains(iterable);
+    }
+
+    /**
+     * Whether fragments rendered for the item can be found again in a later request.
+     */
+    public boolean isCacheable(Object content) {
+        return content != null && COMPARES_CONTENT.get(content.getClass());
+    }
+
+    /**
+     * Digest of the values a fragment depends on besides its item, taken once per loop and passed
+     * to {@link #key}, or null if they cannot be written as JSON.
+     */
+    public byte[] contextDigest(List<Object> values) {
+        MessageDigest digest = newDigest();
+        return update(digest, values) ? digest.digest() : null;
+    }
+
+    /**
+     * The key of the fragment rendered for the item, or null if it cannot be written as JSON and
+     * so is not cached.
+     */
+    public Key key(String templatePath, Locale locale, byte[] contextDigest, Object content) {
+        MessageDigest digest = newDigest();
+        digest.update(contextDigest);
+        if (!update(digest, content)) {
+            return null;
+        }
+        return new Key(templatePath, locale, HexFormat.of().formatHex(digest.digest(), 0, 16));
+    }
+
+    public String get(Key key) {
+        String fragment;
+        synchronized (this) {
+            fragment = fragments.get(key);
+        }
+        (fragment != null ? hits : misses).increment();
+        return fragment;
+    }
+
+    public void put(Key key, String fragment) {
+        long weight = weight(fragment);
+        if (weight > maxBytes) {
+            return;
+        }
+        int evicted = 0;
+        synchronized (this) {
+            String previous = fragments.put(key, fragment);
+            bytes += weight - (previous != null ? weight(previous) : 0);
+            Iterator<Map.Entry<Key, String>> iterator = fragments.entrySet().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                bytes -= weight(iterator.next().getValue());
+                iterator.remove();
+                evicted++;
+            }
+        }
+        evictions.increment(evicted);
+    }
+
+    @EventListener
+    public synchronized void onTemplatesChanged(TemplatesChangedEvent event) {
+        fragments.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getSizeBytes() {
+        return bytes;
+    }
+
+    public double getHitRatio() {
+        double lookups = hits.count() + misses.count();
+        return lookups > 0 ? hits.count() / lookups : 0;
+    }
+
+    // Two bytes per char, and the key
+    private static long weight(String fragment) {
+        return KEY_BYTES + 2L * fragment.length();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Written straight into the digest, without holding the JSON
+    private static boolean update(MessageDigest digest, Object value) {
+        if (value != null) {
+            digest.update(value.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        }
+        try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            DIGEST_MAPPER.writeValue(out, value);
+            return true;
+        } catch (JsonProcessingException e) {
+            return false;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to digest a template fragment item", e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.tvm.reportrendering.template;
+
+/**
+ * Status variable of a compiled {@code th:each}, with the properties of Thymeleaf's own
+ * ({@code accountStat.index}, {@code accountStat.last}, ...).
+ */
+public final class IterationStatus {
+
+    private final int index;
+    private final int size;
+
+    IterationStatus(int index, int size) {
+        this.index = index;
+        this.size = size;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return index + 1;
+    }
+
+    /**
+     * Number of elements iterated, or -1 if the iterated object is not a collection or array.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isFirst() {
+        return index == 0;
+    }
+
+    public boolean isLast() {
+        return index == size - 1;
+    }
+
+    public boolean isEven() {
+        return (index + 1) % 2 == 0;
+    }
+
+    public boolean isOdd() {
+        return !isEven();
+    }
+}
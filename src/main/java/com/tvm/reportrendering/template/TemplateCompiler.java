@@ -0,0 +1,918 @@
+package com.tvm.reportrendering.template;
+
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.util.RenderBuffers;
+import org.unbescape.html.HtmlEscape;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles HTML templates into a tree of writer calls: the markup between expressions becomes
+ * constant strings, and expressions become property reads resolved once per class, so rendering
+ * does no template parsing, event processing or SpEL evaluation.
+ *
+ * Covers the subset of Thymeleaf the report templates use, with the same output:
+ * <ul>
+ *   <li>{@code th:text} with {@code ${path.to.property}}, {@code ${#fmt.method(args)}} and
+ *       concatenation with string literals, {@code 'Total: ' + ${...}}</li>
+ *   <li>{@code th:each="item : ${...}"} and {@code th:each="item, itemStat : ${...}"}</li>
+ *   <li>{@code th:if} / {@code th:unless} with a path, or a path compared to {@code null} or a number</li>
+ * </ul>
+ * Anything else, including text inlining ({@code [[...]]}), throws {@link UnsupportedTemplateException},
+ * and the template is left to Thymeleaf.
+ *
+ * Items of the loops the {@link FragmentCache} selects are rendered once and then written from the cache.
+ */
+public final class TemplateCompiler {
+
+    private static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "br", "col", "embed", "hr", "img",
+            "input", "link", "meta", "param", "source", "track", "wbr");
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style");
+
+    private static final String TH_PREFIX = "th:";
+    private static final String TH_NAMESPACE = "xmlns:th";
+
+    private static final Pattern PATH = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(?:\\.[A-Za-z_][A-Za-z0-9_]*)*");
+    private static final Pattern EACH = Pattern.compile("\\s*([A-Za-z_][A-Za-z0-9_]*)\\s*(?:,\\s*([A-Za-z_][A-Za-z0-9_]*)\\s*)?:\\s*(.+)");
+    private static final Pattern FMT_CALL = Pattern.compile("#" + FormatDialect.EXPRESSION_OBJECT_NAME + "\\.([A-Za-z_][A-Za-z0-9_]*)\\((.*)\\)");
+    private static final Pattern COMPARISON = Pattern.compile("(.+?)\\s*(==|!=|>=|<=|>|<)\\s*(.+)");
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(?:\\.\\d+)?");
+
+    // Passed to getters instead of a new empty varargs array per call
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private TemplateCompiler() {
+    }
+
+    /**
+     * Compiles the template source.
+     *
+     * @throws UnsupportedTemplateException if the template uses markup or expressions outside the compiled subset
+     */
+    public static CompiledTemplate compile(String source, String templateName) {
+        return compile(source, templateName, null);
+    }
+
+    /**
+     * Compiles the template source, caching rendered loop items in the fragment cache if there is one.
+     *
+     * @throws UnsupportedTemplateException if the template uses markup or expressions outside the compiled subset
+     */
+    public static CompiledTemplate compile(String source, String templateName, FragmentCache fragmentCache) {
+        List<Node> nodes = new Parser(source).parse();
+        Compilation compilation = new Compilation(templateName, fragmentCache);
+        Emitter emitter = new Emitter();
+        compilation.children(nodes, emitter);
+        Op root = emitter.finish();
+        int slots = compilation.maxSlots;
+        return (variables, locale, writer) -> {
+            Frame frame = new Frame(variables, locale, Formats.forLocale(locale), new Object[slots],
+                    RenderDeadline.current());
+            try {
+                root.render(frame, writer);
+            } catch (RenderException e) {
+                throw new IllegalStateException("Failed to render template " + templateName + ": " + e.getMessage(), e);
+            }
+        };
+    }
+
+    // Parsing
+
+    private sealed interface Node permits Text, Element {
+    }
+
+    private record Text(String raw) implements Node {
+    }
+
+    private record Attribute(String raw, String name, String value) {
+    }
+
+    private static final class Element implements Node {
+        private final String name;
+        private final List<Attribute> attributes;
+        // Whitespace and ">" or "/>" after the last attribute
+        private final String tail;
+        private final List<Node> children = new ArrayList<>();
+        private String endTag = "";
+
+        private Element(String name, List<Attribute> attributes, String tail) {
+            this.name = name;
+            this.attributes = attributes;
+            this.tail = tail;
+        }
+    }
+
+    private static final class Parser {
+
+        private final String source;
+        private int pos;
+
+        private Parser(String source) {
+            this.source = source;
+        }
+
+        private List<Node> parse() {
+            List<Node> root = new ArrayList<>();
+            Deque<Element> open = new ArrayDeque<>();
+            while (pos < source.length()) {
+                List<Node> siblings = open.isEmpty() ? root : open.peek().children;
+                if (source.startsWith("<!--", pos)) {
+                    if (source.startsWith("<!--/*", pos)) {
+                        throw new UnsupportedTemplateException("Parser-level comments are not compiled");
+                    }
+                    siblings.add(new Text(until("-->")));
+                } else if (source.startsWith("<![CDATA[", pos)) {
+                    throw new UnsupportedTemplateException("CDATA sections are not compiled");
+                } else if (source.startsWith("<!", pos) || source.startsWith("<?", pos)) {
+                    siblings.add(new Text(until(">")));
+                } else if (source.startsWith("</", pos)) {
+                    String endTag = until(">");
+                    String name = endTag.substring(2, endTag.length() - 1).trim();
+                    if (open.isEmpty() || !open.peek().name.equalsIgnoreCase(name)) {
+                        throw new UnsupportedTemplateException("Unbalanced end tag " + endTag);
+                    }
+                    open.pop().endTag = endTag;
+                } else if (startsTag()) {
+                    Element element = startTag();
+                    siblings.add(element);
+                    String name = element.name.toLowerCase(Locale.ROOT);
+                    if (element.tail.endsWith("/>") || VOID_ELEMENTS.contains(name)) {
+                        continue;
+                    }
+                    if (RAW_TEXT_ELEMENTS.contains(name)) {
+                        int end = indexOfIgnoreCase("</" + name, pos);
+                        if (end < 0) {
+                            throw new UnsupportedTemplateException("Unclosed <" + element.name + ">");
+                        }
+                        element.children.add(new Text(checkedText(source.substring(pos, end))));
+                        pos = end;
+                    }
+                    open.push(element);
+                } else {
+                    int next = source.indexOf('<', pos + 1);
+                    int end = next < 0 ? source.length() : next;
+                    siblings.add(new Text(checkedText(source.substring(pos, end))));
+                    pos = end;
+                }
+            }
+            if (!open.isEmpty()) {
+                throw new UnsupportedTemplateException("Unclosed <" + open.peek().name + ">");
+            }
+            return root;
+        }
+
+        private boolean startsTag() {
+            return source.charAt(pos) == '<' && pos + 1 < source.length() && Character.isLetter(source.charAt(pos + 1));
+        }
+
+        private Element startTag() {
+            pos++;
+            String name = token();
+            List<Attribute> attributes = new ArrayList<>();
+            while (true) {
+                int start = pos;
+                skipWhitespace();
+                if (pos >= source.length()) {
+                    throw new UnsupportedTemplateException("Unclosed tag <" + name);
+                }
+                if (source.startsWith("/>", pos) || source.charAt(pos) == '>') {
+                    pos += source.charAt(pos) == '>' ? 1 : 2;
+                    return new Element(name, attributes, source.substring(start, pos));
+                }
+                String attributeName = token();
+                if (attributeName.isEmpty()) {
+                    throw new UnsupportedTemplateException("Malformed tag <" + name);
+                }
+                String value = null;
+                int beforeValue = pos;
+                skipWhitespace();
+                if (pos < source.length() && source.charAt(pos) == '=') {
+                    pos++;
+                    skipWhitespace();
+                    value = attributeValue();
+                } else {
+                    pos = beforeValue;
+                }
+                attributes.add(new Attribute(source.substring(start, pos), attributeName, value));
+            }
+        }
+
+        private String attributeValue() {
+            char quote = pos < source.length() ? source.charAt(pos) : 0;
+            if (quote == '"' || quote == '\'') {
+                int end = source.indexOf(quote, pos + 1);
+                if (end < 0) {
+                    throw new UnsupportedTemplateException("Unclosed attribute value");
+                }
+                String value = source.substring(pos + 1, end);
+                pos = end + 1;
+                return value;
+            }
+            return token();
+        }
+
+        private String token() {
+            int start = pos;
+            while (pos < source.length()) {
+                char c = source.charAt(pos);
+                if (Character.isWhitespace(c) || c == '>' || c == '=' || (c == '/' && source.startsWith("/>", pos))) {
+                    break;
+                }
+                pos++;
+            }
+            return source.substring(start, pos);
+        }
+
+        private void skipWhitespace() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private String until(String terminator) {
+            int end = source.indexOf(terminator, pos);
+            if (end < 0) {
+                throw new UnsupportedTemplateException("Missing " + terminator);
+            }
+            String raw = source.substring(pos, end + terminator.length());
+            pos = end + terminator.length();
+            return raw;
+        }
+
+        private int indexOfIgnoreCase(String target, int from) {
+            for (int i = from; i <= source.length() - target.length(); i++) {
+                if (source.regionMatches(true, i, target, 0, target.length())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static String checkedText(String text) {
+            if (text.contains("[[") || text.contains("[(")) {
+                throw new UnsupportedTemplateException("Inlined expressions are not compiled");
+            }
+            return text;
+        }
+    }
+
+    // Compilation
+
+    private static final class Compilation {
+
+        private final String templateName;
+        private final FragmentCache fragmentCache;
+
+        // Names of the th:each variables in scope, innermost last; the index is the frame slot
+        private final List<String> locals = new ArrayList<>();
+        private int maxSlots;
+
+        // Variables read by the expressions compiled so far, which a cached fragment depends on
+        private Set<String> variablesRead = new HashSet<>();
+        private Set<Integer> slotsRead = new HashSet<>();
+
+        private Compilation(String templateName, FragmentCache fragmentCache) {
+            this.templateName = templateName;
+            this.fragmentCache = fragmentCache;
+        }
+
+        private void children(List<Node> nodes, Emitter emitter) {
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                if (node instanceof Text text) {
+                    emitter.text(text.raw());
+                } else {
+                    String precedingWhitespace = i > 0 && nodes.get(i - 1) instanceof Text text
+                            && text.raw().isBlank() ? text.raw() : "";
+                    element((Element) node, precedingWhitespace, emitter);
+                }
+            }
+        }
+
+        private void element(Element element, String precedingWhitespace, Emitter emitter) {
+            if (element.name.toLowerCase(Locale.ROOT).startsWith(TH_PREFIX)) {
+                throw new UnsupportedTemplateException("<" + element.name + "> is not compiled");
+            }
+            String text = null;
+            String each = null;
+            String condition = null;
+            String negatedCondition = null;
+            StringBuilder startTag = new StringBuilder("<").append(element.name);
+            for (Attribute attribute : element.attributes) {
+                String name = attribute.name().toLowerCase(Locale.ROOT);
+                if (name.startsWith(TH_PREFIX) || name.startsWith("data-th-")) {
+                    if (attribute.value() == null) {
+                        throw new UnsupportedTemplateException(attribute.name() + " without a value");
+                    }
+                    switch (name) {
+                        case "th:text" -> text = attribute.value();
+                        case "th:each" -> each = attribute.value();
+                        case "th:if" -> condition = attribute.value();
+                        case "th:unless" -> negatedCondition = attribute.value();
+                        default -> throw new UnsupportedTemplateException(attribute.name() + " is not compiled");
+                    }
+                } else if (!name.equals(TH_NAMESPACE)) {
+                    startTag.append(attribute.raw());
+                }
+            }
+            startTag.append(element.tail);
+
+            // Thymeleaf order: th:each, then th:if and th:unless per item, then th:text
+            int scopeSize = locals.size();
+            Value iterable = null;
+            int itemSlot = -1;
+            int statusSlot = -1;
+            boolean cached = false;
+            Set<String> outerVariablesRead = variablesRead;
+            Set<Integer> outerSlotsRead = slotsRead;
+            if (each != null) {
+                Matcher matcher = EACH.matcher(each);
+                if (!matcher.matches()) {
+                    throw new UnsupportedTemplateException("th:each=\"" + each + "\" is not compiled");
+                }
+                String iterated = matcher.group(3).trim();
+                iterable = value(iterated);
+                itemSlot = declare(matcher.group(1));
+                statusSlot = matcher.group(2) != null ? declare(matcher.group(2)) : -1;
+                cached = fragmentCache != null && scopeSize == 0 && iterated.startsWith("${") && iterated.endsWith("}")
+                        && fragmentCache.caches(iterated.substring(2, iterated.length() - 1).trim());
+                if (cached) {
+                    variablesRead = new HashSet<>();
+                    slotsRead = new HashSet<>();
+                }
+            }
+            Value test = condition != null ? value(condition) : null;
+            Value negatedTest = negatedCondition != null ? value(negatedCondition) : null;
+
+            boolean wrapped = each != null || test != null || negatedTest != null;
+            Emitter body = wrapped ? new Emitter() : emitter;
+            body.text(startTag.toString());
+            if (text != null) {
+                text(text, body);
+            } else {
+                children(element.children, body);
+            }
+            body.text(element.endTag);
+            locals.subList(scopeSize, locals.size()).clear();
+
+            FragmentKeys keys = null;
+            if (cached) {
+                keys = new FragmentKeys(fragmentCache, templateName, variablesRead.toArray(String[]::new),
+                        statusSlot >= 0 && slotsRead.contains(statusSlot));
+                outerVariablesRead.addAll(variablesRead);
+                variablesRead = outerVariablesRead;
+                slotsRead = outerSlotsRead;
+            }
+
+            if (!wrapped) {
+                return;
+            }
+            Op op = body.finish();
+            if (negatedTest != null) {
+                Op inner = op;
+                op = (frame, out) -> {
+                    if (!isTrue(negatedTest.evaluate(frame))) {
+                        inner.render(frame, out);
+                    }
+                };
+            }
+            if (test != null) {
+                Op inner = op;
+                op = (frame, out) -> {
+                    if (isTrue(test.evaluate(frame))) {
+                        inner.render(frame, out);
+                    }
+                };
+            }
+            if (iterable != null) {
+                op = new EachOp(iterable, itemSlot, statusSlot, precedingWhitespace, op, keys);
+            }
+            emitter.op(op);
+        }
+
+        private int declare(String name) {
+            locals.add(name);
+            maxSlots = Math.max(maxSlots, locals.size());
+            return locals.size() - 1;
+        }
+
+        /**
+         * {@code th:text}: escaping is per character, so each part of a concatenation is written
+         * escaped on its own, with literals escaped here, instead of building the string first.
+         */
+        private void text(String attribute, Emitter emitter) {
+            List<Object> parts = parts(attribute);
+            if (parts.size() == 1) {
+                Object part = parts.get(0);
+                if (part instanceof Value value) {
+                    emitter.op((frame, out) -> HtmlEscape.escapeHtml4Xml(asText(value.evaluate(frame)), out));
+                } else {
+                    emitter.text(HtmlEscape.escapeHtml4Xml((String) part));
+                }
+                return;
+            }
+            for (Object part : parts) {
+                if (part instanceof Value value) {
+                    // null is concatenated as "null"
+                    emitter.op((frame, out) -> HtmlEscape.escapeHtml4Xml(String.valueOf(value.evaluate(frame)), out));
+                } else {
+                    emitter.text(HtmlEscape.escapeHtml4Xml((String) part));
+                }
+            }
+        }
+
+        /**
+         * A {@code th:*} attribute value: {@code ${...}}, optionally concatenated with {@code '...'} literals.
+         */
+        private Value value(String attribute) {
+            List<Object> parts = parts(attribute);
+            List<Value> values = new ArrayList<>(parts.size());
+            for (Object part : parts) {
+                if (part instanceof Value value) {
+                    values.add(value);
+                } else {
+                    values.add(frame -> part);
+                }
+            }
+            if (values.size() == 1) {
+                return values.get(0);
+            }
+            Value[] concatenated = values.toArray(Value[]::new);
+            return frame -> {
+                StringBuilder result = new StringBuilder();
+                for (Value value : concatenated) {
+                    result.append(value.evaluate(frame));
+                }
+                return result.toString();
+            };
+        }
+
+        /**
+         * The parts of a concatenation: literal Strings and {@link Value}s.
+         */
+        private List<Object> parts(String attribute) {
+            List<String> parts = splitTopLevel(attribute.trim(), '+');
+            List<Object> values = new ArrayList<>(parts.size());
+            boolean literalFirst = false;
+            for (int i = 0; i < parts.size(); i++) {
+                String part = parts.get(i).trim();
+                if (isLiteral(part)) {
+                    values.add(literal(part));
+                    literalFirst |= i < 2;
+                } else if (part.startsWith("${") && part.endsWith("}")) {
+                    values.add(expression(part.substring(2, part.length() - 1).trim()));
+                } else {
+                    throw new UnsupportedTemplateException("Expression " + attribute + " is not compiled");
+                }
+            }
+            if (values.size() > 1 && !literalFirst) {
+                // Would be numeric addition in Thymeleaf
+                throw new UnsupportedTemplateException("Expression " + attribute + " is not compiled");
+            }
+            return values;
+        }
+
+        /**
+         * The inside of {@code ${...}}: a path, a {@code #fmt} call, or a path compared to a literal.
+         */
+        private Value expression(String expression) {
+            Matcher call = FMT_CALL.matcher(expression);
+            if (call.matches()) {
+                return formatCall(call.group(1), call.group(2), expression);
+            }
+            if (PATH.matcher(expression).matches()) {
+                return path(expression);
+            }
+            Matcher comparison = COMPARISON.matcher(expression);
+            if (comparison.matches() && PATH.matcher(comparison.group(1)).matches()) {
+                return comparison(path(comparison.group(1)), comparison.group(2), comparison.group(3).trim(), expression);
+            }
+            throw new UnsupportedTemplateException("Expression ${" + expression + "} is not compiled");
+        }
+
+        private Value formatCall(String methodName, String arguments, String expression) {
+            List<Value> args = new ArrayList<>();
+            if (!arguments.isBlank()) {
+                for (String argument : splitTopLevel(arguments, ',')) {
+                    String trimmed = argument.trim();
+                    if (isLiteral(trimmed)) {
+                        String literal = literal(trimmed);
+                        args.add(frame -> literal);
+                    } else if (PATH.matcher(trimmed).matches()) {
+                        args.add(path(trimmed));
+                    } else {
+                        throw new UnsupportedTemplateException("Expression ${" + expression + "} is not compiled");
+                    }
+                }
+            }
+            Method method = null;
+            for (Method candidate : Formats.class.getMethods()) {
+                if (candidate.getName().equals(methodName) && candidate.getParameterCount() == args.size()
+                        && !Modifier.isStatic(candidate.getModifiers())) {
+                    if (method != null) {
+                        throw new UnsupportedTemplateException("Overloaded #fmt." + methodName + " is not compiled");
+                    }
+                    method = candidate;
+                }
+            }
+            if (method == null) {
+                throw new UnsupportedTemplateException("No #fmt." + methodName + " with " + args.size() + " arguments");
+            }
+            Method target = method;
+            Value[] argumentValues = args.toArray(Value[]::new);
+            return frame -> {
+                Object[] values = new Object[argumentValues.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = argumentValues[i].evaluate(frame);
+                }
+                return invoke(target, frame.formats, values);
+            };
+        }
+
+        private Value comparison(Value left, String operator, String right, String expression) {
+            if (right.equals("null")) {
+                return switch (operator) {
+                    case "==" -> frame -> left.evaluate(frame) == null;
+                    case "!=" -> frame -> left.evaluate(frame) != null;
+                    default -> throw new UnsupportedTemplateException("Expression ${" + expression + "} is not compiled");
+                };
+            }
+            if (!NUMBER.matcher(right).matches()) {
+                throw new UnsupportedTemplateException("Expression ${" + expression + "} is not compiled");
+            }
+            double number = Double.parseDouble(right);
+            return frame -> {
+                Object value = left.evaluate(frame);
+                if (!(value instanceof Number n)) {
+                    throw new RenderException("${" + expression + "} compares " + value + " to a number");
+                }
+                int result = Double.compare(n.doubleValue(), number);
+                return switch (operator) {
+                    case "==" -> result == 0;
+                    case "!=" -> result != 0;
+                    case ">" -> result > 0;
+                    case ">=" -> result >= 0;
+                    case "<" -> result < 0;
+                    default -> result <= 0;
+                };
+            };
+        }
+
+        private Value path(String path) {
+            String[] segments = path.split("\\.");
+            int slot = locals.lastIndexOf(segments[0]);
+            Value value;
+            if (slot >= 0) {
+                slotsRead.add(slot);
+                value = frame -> frame.slots[slot];
+            } else {
+                String name = segments[0];
+                variablesRead.add(name);
+                value = frame -> frame.variables.get(name);
+            }
+            for (int i = 1; i < segments.length; i++) {
+                value = new PropertyValue(value, segments[i], String.join(".", List.of(segments).subList(0, i)));
+            }
+            return value;
+        }
+
+        private static boolean isLiteral(String part) {
+            return part.length() >= 2 && part.startsWith("'") && part.endsWith("'")
+                    && part.indexOf('\'', 1) == part.length() - 1;
+        }
+
+        private static String literal(String part) {
+            return part.substring(1, part.length() - 1);
+        }
+
+        /**
+         * Splits on the separator outside {@code '...'} literals, {@code ${...}} and parentheses.
+         */
+        private static List<String> splitTopLevel(String text, char separator) {
+            List<String> parts = new ArrayList<>();
+            int depth = 0;
+            boolean quoted = false;
+            int start = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\'') {
+                    quoted = !quoted;
+                } else if (!quoted && (c == '{' || c == '(')) {
+                    depth++;
+                } else if (!quoted && (c == '}' || c == ')')) {
+                    depth--;
+                } else if (!quoted && depth == 0 && c == separator) {
+                    parts.add(text.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            if (quoted || depth != 0) {
+                throw new UnsupportedTemplateException("Expression " + text + " is not compiled");
+            }
+            parts.add(text.substring(start));
+            return parts;
+        }
+    }
+
+    /**
+     * Collects output, merging adjacent markup into one constant write.
+     */
+    private static final class Emitter {
+
+        private final List<Op> ops = new ArrayList<>();
+        private final StringBuilder pending = new StringBuilder();
+
+        private void text(String text) {
+            pending.append(text);
+        }
+
+        private void op(Op op) {
+            flushText();
+            ops.add(op);
+        }
+
+        private Op finish() {
+            flushText();
+            if (ops.size() == 1) {
+                return ops.get(0);
+            }
+            Op[] sequence = ops.toArray(Op[]::new);
+            return (frame, out) -> {
+                for (Op op : sequence) {
+                    op.render(frame, out);
+                }
+            };
+        }
+
+        private void flushText() {
+            if (!pending.isEmpty()) {
+                String text = pending.toString();
+                ops.add((frame, out) -> out.write(text));
+                pending.setLength(0);
+            }
+        }
+    }
+
+    // Rendering
+
+    private record Frame(Map<String, ?> variables, Locale locale, Formats formats, Object[] slots,
+                         RenderDeadline deadline) {
+    }
+
+    @FunctionalInterface
+    private interface Op {
+        void render(Frame frame, Writer out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Value {
+        Object evaluate(Frame frame);
+    }
+
+    private static final class RenderException extends RuntimeException {
+        private RenderException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * What the items of a cached loop are looked up by: the template, the locale, the variables
+     * the loop body reads and, if the body reads it, the position of the item.
+     */
+    private record FragmentKeys(FragmentCache cache, String templateName, String[] variables, boolean byPosition) {
+
+        private byte[] context(Frame frame) {
+            List<Object> context = new ArrayList<>(variables.length);
+            for (String variable : variables) {
+                context.add(frame.variables.get(variable));
+            }
+            return cache.contextDigest(context);
+        }
+
+        private FragmentCache.Key key(Frame frame, byte[] context, Object item, int index, int size) {
+            return cache.key(templateName, frame.locale, context, byPosition ? List.of(item, index, size) : item);
+        }
+    }
+
+    /**
+     * Repeats the element per item, with the whitespace before it between items as Thymeleaf does.
+     * The deadline is checked before each item, so a streamed render stops partway through a
+     * long loop instead of writing the rest of the report after the deadline has passed.
+     */
+    private record EachOp(Value iterable, int itemSlot, int statusSlot, String precedingWhitespace, Op body,
+                          FragmentKeys keys) implements Op {
+
+        @Override
+        public void render(Frame frame, Writer out) throws IOException {
+            Object items = iterable.evaluate(frame);
+            if (items == null) {
+                return;
+            }
+            // Read once per loop, the same for every item
+            byte[] context = keys != null ? keys.context(frame) : null;
+            if (items instanceof Iterable<?> iterable) {
+                int size = items instanceof Collection<?> collection ? collection.size() : -1;
+                int index = 0;
+                for (Object item : iterable) {
+                    renderItem(frame, out, context, item, index++, size);
+                }
+            } else if (items.getClass().isArray()) {
+                int size = Array.getLength(items);
+                for (int index = 0; index < size; index++) {
+                    renderItem(frame, out, context, Array.get(items, index), index, size);
+                }
+            } else {
+                renderItem(frame, out, context, items, 0, 1);
+            }
+        }
+
+        private void renderItem(Frame frame, Writer out, byte[] context, Object item, int index, int size)
+                throws IOException {
+            frame.deadline.checkpoint("templating");
+            if (index > 0) {
+                out.write(precedingWhitespace);
+            }
+            frame.slots[itemSlot] = item;
+            if (statusSlot >= 0) {
+                frame.slots[statusSlot] = new IterationStatus(index, size);
+            }
+            FragmentCache.Key key = context != null && keys.cache().isCacheable(item)
+                    ? keys.key(frame, context, item, index, size) : null;
+            if (key == null) {
+                body.render(frame, out);
+                return;
+            }
+            String fragment = keys.cache().get(key);
+            if (fragment != null) {
+                out.write(fragment);
+                return;
+            }
+            // Written out as it renders, and kept from a pooled buffer
+            fragment = RenderBuffers.render(buffer -> body.render(frame, new CapturingWriter(out, buffer)));
+            keys.cache().put(key, fragment);
+        }
+    }
+
+    /**
+     * Writes to the output and to the buffer a fragment is kept from.
+     */
+    private static final class CapturingWriter extends Writer {
+
+        private final Writer out;
+        private final Writer capture;
+
+        private CapturingWriter(Writer out, Writer capture) {
+            this.out = out;
+            this.capture = capture;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            capture.write(c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            out.write(chars, offset, length);
+            capture.write(chars, offset, length);
+        }
+
+        @Override
+        public void write(String string, int offset, int length) throws IOException {
+            out.write(string, offset, length);
+            capture.write(string, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Reads a property of a map or bean, remembering the accessor for the last class seen.
+     */
+    private static final class PropertyValue implements Value {
+
+        private final Value target;
+        private final String name;
+        private final String targetPath;
+        private volatile Accessor cached;
+
+        private record Accessor(Class<?> type, Member member) {
+        }
+
+        private PropertyValue(Value target, String name, String targetPath) {
+            this.target = target;
+            this.name = name;
+            this.targetPath = targetPath;
+        }
+
+        @Override
+        public Object evaluate(Frame frame) {
+            Object object = target.evaluate(frame);
+            if (object == null) {
+                throw new RenderException("Property " + name + " of " + targetPath + ", which is null");
+            }
+            if (object instanceof Map<?, ?> map) {
+                if (!map.containsKey(name)) {
+                    throw new RenderException("No entry " + name + " in " + targetPath);
+                }
+                return map.get(name);
+            }
+            Accessor accessor = cached;
+            if (accessor == null || accessor.type() != object.getClass()) {
+                accessor = new Accessor(object.getClass(), accessor(object.getClass()));
+                cached = accessor;
+            }
+            try {
+                return accessor.member() instanceof Method method ? method.invoke(object, NO_ARGUMENTS) : ((Field) accessor.member()).get(object);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Failed to read " + targetPath + "." + name, e);
+            }
+        }
+
+        private Member accessor(Class<?> type) {
+            String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for (String methodName : List.of("get" + capitalized, "is" + capitalized, name)) {
+                try {
+                    Method method = type.getMethod(methodName);
+                    if (!Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class
+                            && method.trySetAccessible()) {
+                        return method;
+                    }
+                } catch (NoSuchMethodException e) {
+                    // Try the next naming convention
+                }
+            }
+            try {
+                Field field = type.getField(name);
+                if (field.trySetAccessible()) {
+                    return field;
+                }
+            } catch (NoSuchFieldException e) {
+                // Reported below
+            }
+            throw new RenderException("No property " + name + " on " + type.getName());
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object[] arguments) {
+        try {
+            return method.invoke(target, arguments);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            throw new RenderException("Cannot call #fmt." + method.getName() + ": " + e.getMessage());
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("#fmt." + method.getName() + " failed", e.getCause());
+        }
+    }
+
+    private static String asText(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    /**
+     * Thymeleaf's truth value of a condition.
+     */
+    private static boolean isTrue(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        if (value instanceof Number number) {
+            return number.doubleValue() != 0;
+        }
+        if (value instanceof Character character) {
+            return character != 0;
+        }
+        if (value instanceof String string) {
+            return !string.equalsIgnoreCase("false") && !string.equalsIgnoreCase("off") && !string.equalsIgnoreCase("no");
+        }
+        return true;
+    }
+}
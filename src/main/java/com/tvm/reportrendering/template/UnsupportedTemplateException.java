@@ -0,0 +1,12 @@
+package com.tvm.reportrendering.template;
+
+/**
+ * Thrown by {@link TemplateCompiler} for markup or expressions outside the subset it compiles;
+ * such templates are rendered by Thymeleaf.
+ */
+public class UnsupportedTemplateException extends RuntimeException {
+
+    public UnsupportedTemplateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,92 @@
+package com.tvm.reportrendering.util;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes RFC 4180 CSV: comma separated fields, CRLF line endings, and fields containing a comma,
+ * a double quote or a line break enclosed in double quotes with embedded quotes doubled.
+ *
+ * Output is UTF-8 and buffered; nothing is held beyond the buffer, so rows can be written to a
+ * response as they are produced.
+ */
+public final class CsvWriter implements Flushable {
+
+    private static final String LINE_END = "\r\n";
+
+    private final Writer writer;
+    private boolean rowStarted;
+
+    public CsvWriter(OutputStream outputStream) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes to a writer that is already buffered, such as one from {@link RenderBuffers#stream}.
+     */
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Appends a field to the current row; null is written as an empty field.
+     */
+    public CsvWriter field(String value) throws IOException {
+        if (rowStarted) {
+            writer.write(',');
+        }
+        rowStarted = true;
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return this;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+        return this;
+    }
+
+    public void endRow() throws IOException {
+        writer.write(LINE_END);
+        rowStarted = false;
+    }
+
+    /**
+     * Writes the given fields as one row.
+     */
+    public void row(String... fields) throws IOException {
+        for (String field : fields) {
+            field(field);
+        }
+        endRow();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
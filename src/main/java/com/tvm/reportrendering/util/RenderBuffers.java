@@ -0,0 +1,213 @@
+package com.tvm.reportrendering.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reusable buffers for rendering templates, so that steady-state renders do not allocate and
+ * regrow a buffer per request.
+ *
+ * {@link #render} collects the output in a pooled character buffer and copies it into one
+ * exactly-sized String, instead of a {@code StringWriter} that doubles its way up to the size of
+ * the document. {@link #stream} encodes UTF-8 straight into a pooled byte buffer that is written
+ * to the stream whenever it fills, instead of an {@code OutputStreamWriter} and a
+ * {@code BufferedWriter} per response.
+ *
+ * Buffers are taken from a small bounded pool rather than held per thread, so they are reused
+ * by virtual threads too. When the pool is empty a new buffer is created, and buffers grown by an
+ * unusually large report are dropped on return rather than kept.
+ */
+public final class RenderBuffers {
+
+    private static final int INITIAL_CHARS = 64 * 1024;
+    private static final int MAX_RETAINED_CHARS = 4 * 1024 * 1024;
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+    private static final int POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final Queue<CharBufferWriter> CHAR_WRITERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final Queue<Utf8StreamWriter> STREAM_WRITERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    @FunctionalInterface
+    public interface WriterTask {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    private RenderBuffers() {
+    }
+
+    /**
+     * Runs the task with a pooled writer and returns what it wrote.
+     */
+    public static String render(WriterTask task) throws IOException {
+        CharBufferWriter writer = CHAR_WRITERS.poll();
+        if (writer == null) {
+            writer = new CharBufferWriter();
+        }
+        try {
+            task.writeTo(writer);
+            return writer.buffer.toString();
+        } finally {
+            writer.buffer.setLength(0);
+            if (writer.buffer.capacity() <= MAX_RETAINED_CHARS) {
+                CHAR_WRITERS.offer(writer);
+            }
+        }
+    }
+
+    /**
+     * Runs the task with a pooled writer that encodes UTF-8 into the stream, and writes out what
+     * is left in the buffer at the end. The stream is not closed.
+     */
+    public static void stream(OutputStream outputStream, WriterTask task) throws IOException {
+        Utf8StreamWriter writer = STREAM_WRITERS.poll();
+        if (writer == null) {
+            writer = new Utf8StreamWriter();
+        }
+        writer.outputStream = outputStream;
+        try {
+            task.writeTo(writer);
+            writer.finish();
+        } finally {
+            writer.outputStream = null;
+            writer.position = 0;
+            writer.highSurrogate = 0;
+            STREAM_WRITERS.offer(writer);
+        }
+    }
+
+    private static final class CharBufferWriter extends Writer {
+
+        private final StringBuilder buffer = new StringBuilder(INITIAL_CHARS);
+
+        @Override
+        public void write(int c) {
+            buffer.append((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            buffer.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            buffer.append(string, offset, offset + length);
+        }
+
+        @Override
+        public Writer append(CharSequence chars) {
+            buffer.append(chars);
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Encodes like {@code OutputStreamWriter} with UTF-8, including '?' for unpaired surrogates,
+     * without the intermediate char buffer and encoder.
+     */
+    private static final class Utf8StreamWriter extends Writer {
+
+        private final byte[] buffer = new byte[STREAM_BUFFER_BYTES];
+        private int position;
+        private OutputStream outputStream;
+        // A high surrogate waiting for the low surrogate in the next write
+        private char highSurrogate;
+
+        @Override
+        public void write(int c) throws IOException {
+            encode((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                encode(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String string, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                char c = string.charAt(i);
+                if (c < 0x80 && highSurrogate == 0 && position < buffer.length) {
+                    buffer[position++] = (byte) c;
+                } else {
+                    encode(c);
+                }
+            }
+        }
+
+        private void encode(char c) throws IOException {
+            if (position > buffer.length - 4) {
+                drain();
+            }
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int codePoint = Character.toCodePoint(high, c);
+                    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                    return;
+                }
+                buffer[position++] = '?';
+                encode(c);
+                return;
+            }
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        private void drain() throws IOException {
+            if (position > 0) {
+                outputStream.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            outputStream.flush();
+        }
+
+        private void finish() throws IOException {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                encode('?');
+            }
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The stream belongs to the caller of stream()
+            drain();
+        }
+    }
+}
@@ -240,10 +240,11 @@ class ReportRenderingApiIntegrationTest {
         // Verify statement template exists and supports all formats
         assertTrue(templates.containsKey("statement"));
         List<OutputFormat> statementFormats = templates.get("statement");
-        assertEquals(3, statementFormats.size());
+        assertEquals(4, statementFormats.size());
         assertTrue(statementFormats.contains(OutputFormat.HTML));
         assertTrue(statementFormats.contains(OutputFormat.CSV));
         assertTrue(statementFormats.contains(OutputFormat.PDF));
+        assertTrue(statementFormats.contains(OutputFormat.PNG));
 
         // Verify no other templates are registered (based on current implementation)
         assertEquals(1, templates.size());
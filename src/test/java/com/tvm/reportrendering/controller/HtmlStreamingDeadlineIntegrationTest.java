@@ -0,0 +1,111 @@
+package com.tvm.reportrendering.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streams a large HTML report, rendered by the compiled template, to a client that stops reading
+ * until the request deadline has passed.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class HtmlStreamingDeadlineIntegrationTest {
+
+    private static final String BOUNDARY = "----report-boundary";
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void testDeadlinePassingMidStreamAbortsTheResponse() throws Exception {
+        byte[] body = multipart(statement(40_000));
+
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /reports HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "X-Request-Timeout: 10000\r\n"
+                    + "Content-Type: multipart/form-data; boundary=" + BOUNDARY + "\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            String headers = readHeaders(in);
+            assertTrue(headers.startsWith("HTTP/1.1 200"), headers);
+            assertTrue(headers.toLowerCase().contains("transfer-encoding: chunked"), headers);
+
+            // The server fills the socket buffers and blocks until the deadline has passed. The deadline
+            // leaves room for parsing and for the first render of a 40,000 transaction account under load
+            Thread.sleep(12000);
+
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            try {
+                in.transferTo(received);
+            } catch (IOException e) {
+                // Connection reset
+            }
+            String tail = received.toString(StandardCharsets.ISO_8859_1);
+            assertTrue(received.size() > 0);
+            assertFalse(tail.endsWith("\r\n0\r\n\r\n"), "response was ended as if complete");
+            assertFalse(tail.contains("</html>"));
+        }
+    }
+
+    private static String readHeaders(InputStream in) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            headers.append((char) c);
+            if (headers.length() >= 4 && headers.substring(headers.length() - 4).equals("\r\n\r\n")) {
+                break;
+            }
+        }
+        return headers.toString();
+    }
+
+    private static byte[] multipart(String json) {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"statement.json\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + json + "\r\n"
+                + part("template", "statement")
+                + part("output", "HTML")
+                + part("language", "en")
+                + "--" + BOUNDARY + "--\r\n";
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String part(String name, String value) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+                + value + "\r\n";
+    }
+
+    private static String statement(int transactions) {
+        StringBuilder json = new StringBuilder("{\"startDate\":\"2023-01-01\",\"endDate\":\"2023-12-31\",\"accounts\":[{"
+                + "\"accountName\":\"Chequing\",\"transitNumber\":\"00001\",\"accountNumber\":\"1234567890\","
+                + "\"accountType\":\"Chequing\",\"transactions\":[");
+        for (int i = 0; i < transactions; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"actionDate\":\"2023-01-02\",\"valueDate\":\"2023-01-02\",\"transactionType\":\"Payment\","
+                    + "\"description\":\"Transaction ").append(i)
+                    .append("\",\"creditAmount\":1.00,\"debitAmount\":null,\"balance\":1000.00}");
+        }
+        return json.append("]}]}").toString();
+    }
+}
@@ -30,8 +30,8 @@ class ReportControllerIntegrationTest {
                 .andExpect(content().contentType("application/json"))
                 .andExpect(jsonPath("$.statement").exists())
                 .andExpect(jsonPath("$.statement").isArray())
-                .andExpect(jsonPath("$.statement", hasSize(3)))
-                .andExpect(jsonPath("$.statement", containsInAnyOrder("HTML", "CSV", "PDF")));
+                .andExpect(jsonPath("$.statement", hasSize(4)))
+                .andExpect(jsonPath("$.statement", containsInAnyOrder("HTML", "CSV", "PDF", "PNG")));
     }
 
     @Test
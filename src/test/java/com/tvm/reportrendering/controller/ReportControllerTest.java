@@ -1,10 +1,17 @@
 package com.tvm.reportrendering.controller;
 
 import com.tvm.reportrendering.model.OutputFormat;
+import com.tvm.reportrendering.model.RenderCancelledException;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.model.RenderMetrics;
+import com.tvm.reportrendering.model.RenderOptions;
 import com.tvm.reportrendering.model.ReportOutput;
+import com.tvm.reportrendering.model.SpooledContent;
+import com.tvm.reportrendering.model.TemplateCapabilities;
 import com.tvm.reportrendering.service.ReportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -12,12 +19,21 @@ import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
@@ -34,10 +50,9 @@ class ReportControllerTest {
 
     @BeforeEach
     void setUp() {
-        // Mock available templates for validation
-        Map<String, List<OutputFormat>> availableTemplates = new HashMap<>();
-        availableTemplates.put("statement", List.of(OutputFormat.HTML, OutputFormat.CSV, OutputFormat.PDF));
-        when(reportService.getAvailableTemplates()).thenReturn(availableTemplates);
+        // Mock the template registry for validation
+        when(reportService.getTemplateCapabilities("statement")).thenReturn(new TemplateCapabilities(
+                List.of(OutputFormat.values()), List.of("en", "fr", "hr", "sr")));
     }
 
     @Test
@@ -45,7 +60,7 @@ class ReportControllerTest {
         MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
         ReportOutput reportOutput = new ReportOutput("text/html", "<html>Test Report</html>");
 
-        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.HTML), eq("en")))
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.HTML), eq("en"), any(RenderOptions.class)))
                 .thenReturn(reportOutput);
 
         mockMvc.perform(multipart("/reports")
@@ -64,7 +79,7 @@ class ReportControllerTest {
         byte[] pdfContent = "PDF content".getBytes();
         ReportOutput reportOutput = new ReportOutput("application/pdf", pdfContent);
 
-        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.PDF), eq("en")))
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.PDF), eq("en"), any(RenderOptions.class)))
                 .thenReturn(reportOutput);
 
         mockMvc.perform(multipart("/reports")
@@ -77,12 +92,66 @@ class ReportControllerTest {
                 .andExpect(header().string("Content-Disposition", "attachment; filename=\"statement-report.pdf\""));
     }
 
+    @Test
+    void testGenerateReportPdfSpooled(@TempDir Path tempDir) throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
+        Path spoolFile = Files.write(tempDir.resolve("report.pdf"), "PDF content".getBytes());
+        ReportOutput reportOutput = new ReportOutput("application/pdf", new SpooledContent(spoolFile));
+
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.PDF), eq("en"), any(RenderOptions.class)))
+                .thenReturn(reportOutput);
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "PDF")
+                        .param("language", "en"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/pdf"))
+                .andExpect(header().longValue("Content-Length", 11))
+                .andExpect(content().bytes("PDF content".getBytes()));
+
+        assertFalse(Files.exists(spoolFile));
+    }
+
+    @Test
+    void testGenerateReportPngPreviewIsCacheable() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
+        byte[] pngContent = "PNG content".getBytes();
+
+        when(reportService.previewETag(any(), eq("statement"), eq("en"))).thenReturn("\"abc123\"");
+        when(reportService.getPreviewCacheMaxAge()).thenReturn(Duration.ofHours(1));
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.PNG), eq("en"), any(RenderOptions.class)))
+                .thenReturn(new ReportOutput("image/png", pngContent));
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "PNG")
+                        .param("language", "en"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(header().string("Cache-Control", "max-age=3600, private"))
+                .andExpect(content().bytes(pngContent));
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "PNG")
+                        .param("language", "en")
+                        .header("If-None-Match", "\"abc123\""))
+                .andExpect(status().isNotModified());
+
+        verify(reportService, times(1)).generateReport(any(), any(), any(), any(), any(RenderOptions.class));
+    }
+
     @Test
     void testGenerateReportCsv() throws Exception {
         MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
         ReportOutput reportOutput = new ReportOutput("text/csv", "header1,header2\nvalue1,value2");
 
-        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.CSV), eq("en")))
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.CSV), eq("en"), any(RenderOptions.class)))
                 .thenReturn(reportOutput);
 
         mockMvc.perform(multipart("/reports")
@@ -100,7 +169,7 @@ class ReportControllerTest {
     void testGenerateReportWithInvalidTemplate() throws Exception {
         MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
 
-        when(reportService.generateReport(any(), eq("invalid"), eq(OutputFormat.HTML), eq("en")))
+        when(reportService.generateReport(any(), eq("invalid"), eq(OutputFormat.HTML), eq("en"), any(RenderOptions.class)))
                 .thenThrow(new IllegalArgumentException("No report handler found for template: invalid"));
 
         mockMvc.perform(multipart("/reports")
@@ -113,6 +182,112 @@ class ReportControllerTest {
                 .andExpect(jsonPath("$.error").value("Template not allowed: invalid"));
     }
 
+    @Test
+    void testGenerateReportWithRequestedPdfEngine() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
+        ReportOutput reportOutput = new ReportOutput("application/pdf", "PDF content".getBytes());
+
+        when(reportService.getAvailablePdfEngines()).thenReturn(Set.of("chromium", "openhtmltopdf"));
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.PDF), eq("en"),
+                eq(new RenderOptions("openhtmltopdf"))))
+                .thenReturn(reportOutput);
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "PDF")
+                        .param("language", "en")
+                        .param("engine", "openhtmltopdf"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes("PDF content".getBytes()));
+    }
+
+    @Test
+    void testGenerateReportWithRenderMetricsHeader() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
+        ReportOutput reportOutput = new ReportOutput("application/pdf", "PDF content".getBytes());
+        RenderMetrics metrics = new RenderMetrics("statement");
+        metrics.record(0.0125, 0.004, 0.0005, 1048576, 1520);
+        metrics.setPageCount(2);
+        reportOutput.setRenderMetrics(metrics);
+
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.PDF), eq("en"), any(RenderOptions.class)))
+                .thenReturn(reportOutput);
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "PDF")
+                        .param("language", "en"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Server-Timing"));
+
+        when(reportService.isRenderMetricsHeaderEnabled()).thenReturn(true);
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "PDF")
+                        .param("language", "en"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", metrics.toServerTiming()));
+    }
+
+    @Test
+    void testGenerateReportPassesRequestDeadline() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
+        RenderDeadline deadline = RenderDeadline.after(Duration.ofSeconds(5));
+
+        when(reportService.requestDeadline(OutputFormat.PDF, 5000L)).thenReturn(deadline);
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.PDF), eq("en"),
+                argThat(options -> options.getDeadline() == deadline)))
+                .thenThrow(new RenderCancelledException("printing", Duration.ofSeconds(5)));
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "PDF")
+                        .param("language", "en")
+                        .header("X-Request-Timeout", "5000"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value("Report generation abandoned"));
+    }
+
+    @Test
+    void testGenerateReportWithInvalidRequestTimeout() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
+
+        when(reportService.requestDeadline(OutputFormat.PDF, 0L))
+                .thenThrow(new IllegalArgumentException("Request timeout must be a positive number of milliseconds"));
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "PDF")
+                        .param("language", "en")
+                        .header("X-Request-Timeout", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Request timeout must be a positive number of milliseconds"));
+
+        verify(reportService, never()).generateReport(any(), any(), any(), any(), any(RenderOptions.class));
+    }
+
+    @Test
+    void testGenerateReportWithUnknownPdfEngine() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
+
+        when(reportService.getAvailablePdfEngines()).thenReturn(Set.of("chromium", "openhtmltopdf"));
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "PDF")
+                        .param("language", "en")
+                        .param("engine", "wkhtmltopdf"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Unknown PDF engine: wkhtmltopdf"));
+    }
+
     @Test
     void testGetAvailableTemplates() throws Exception {
         Map<String, List<OutputFormat>> templates = new HashMap<>();
@@ -127,6 +302,42 @@ class ReportControllerTest {
                 .andExpect(jsonPath("$.statement.length()").value(3));
     }
 
+    @Test
+    void testGetTemplate() throws Exception {
+        mockMvc.perform(get("/templates/statement"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.formats.length()").value(4))
+                .andExpect(jsonPath("$.languages[0]").value("en"));
+
+        mockMvc.perform(get("/templates/invoice"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGenerateReportWithUnsupportedFormatOrLanguage() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.json", "application/json", "{}".getBytes());
+        when(reportService.getTemplateCapabilities("statement")).thenReturn(new TemplateCapabilities(
+                List.of(OutputFormat.HTML), List.of("en")));
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "CSV")
+                        .param("language", "en"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Template statement does not support output format CSV"));
+
+        mockMvc.perform(multipart("/reports")
+                        .file(file)
+                        .param("template", "statement")
+                        .param("output", "HTML")
+                        .param("language", "de"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Template statement does not support language de"));
+
+        verify(reportService, never()).generateReport(any(), any(), any(), any(), any(RenderOptions.class));
+    }
+
     @Test
     void testGetAvailableTemplatesWithError() throws Exception {
         when(reportService.getAvailableTemplates()).thenThrow(new RuntimeException("Service error"));
@@ -166,7 +377,7 @@ class ReportControllerTest {
         ReportOutput reportOutput = new ReportOutput("text/html", "<html>Test Report</html>");
 
         // Test French
-        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.HTML), eq("fr")))
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.HTML), eq("fr"), any(RenderOptions.class)))
                 .thenReturn(reportOutput);
 
         mockMvc.perform(multipart("/reports")
@@ -178,7 +389,7 @@ class ReportControllerTest {
                 .andExpect(content().contentType("text/html"));
 
         // Test Serbian
-        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.HTML), eq("sr")))
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.HTML), eq("sr"), any(RenderOptions.class)))
                 .thenReturn(reportOutput);
 
         mockMvc.perform(multipart("/reports")
@@ -190,7 +401,7 @@ class ReportControllerTest {
                 .andExpect(content().contentType("text/html"));
 
         // Test Croatian
-        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.HTML), eq("hr")))
+        when(reportService.generateReport(any(), eq("statement"), eq(OutputFormat.HTML), eq("hr"), any(RenderOptions.class)))
                 .thenReturn(reportOutput);
 
         mockMvc.perform(multipart("/reports")
@@ -0,0 +1,11 @@
+package com.tvm.reportrendering.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * The same report rendered by Thymeleaf in chunks, with template compilation turned off.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "report.templates.compile=false")
+class ThymeleafHtmlStreamingDeadlineIntegrationTest extends HtmlStreamingDeadlineIntegrationTest {
+}
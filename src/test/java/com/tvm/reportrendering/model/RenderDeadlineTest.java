@@ -0,0 +1,57 @@
+package com.tvm.reportrendering.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderDeadlineTest {
+
+    @Test
+    void testNoneNeverExpires() throws Exception {
+        RenderDeadline deadline = RenderDeadline.none();
+
+        assertFalse(deadline.isBounded());
+        assertFalse(deadline.isExpired());
+        assertEquals(Duration.ofSeconds(30), deadline.cap(Duration.ofSeconds(30)));
+        deadline.checkpoint("rendering");
+        assertTrue(deadline.await(CompletableFuture.completedFuture("done")));
+    }
+
+    @Test
+    void testCheckpointFailsOnceExpired() throws Exception {
+        RenderDeadline deadline = RenderDeadline.after(Duration.ofMillis(20));
+        assertTrue(deadline.cap(Duration.ofSeconds(30)).compareTo(Duration.ofMillis(20)) <= 0);
+        assertEquals(Duration.ofMillis(5), deadline.cap(Duration.ofMillis(5)));
+
+        assertFalse(deadline.await(new CompletableFuture<>()));
+        assertTrue(deadline.isExpired());
+        assertEquals(Duration.ZERO, deadline.remaining());
+
+        RenderCancelledException exception = assertThrows(RenderCancelledException.class,
+                () -> deadline.checkpoint("printing"));
+        assertEquals("printing", exception.getStage());
+        assertTrue(exception.getMessage().contains("20 ms"));
+    }
+
+    @Test
+    void testBindRestoresPreviousDeadline() {
+        RenderDeadline outer = RenderDeadline.after(Duration.ofMinutes(1));
+        RenderDeadline inner = RenderDeadline.after(Duration.ofMinutes(2));
+
+        try (RenderDeadline.Scope ignored = outer.bind()) {
+            try (RenderDeadline.Scope nested = inner.bind()) {
+                assertSame(inner, RenderDeadline.current());
+            }
+            assertSame(outer, RenderDeadline.current());
+        }
+        assertSame(RenderDeadline.none(), RenderDeadline.current());
+    }
+
+    @Test
+    void testRejectsDeadlineInThePast() {
+        assertThrows(IllegalArgumentException.class, () -> RenderDeadline.after(Duration.ZERO));
+    }
+}
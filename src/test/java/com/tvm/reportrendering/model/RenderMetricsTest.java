@@ -0,0 +1,50 @@
+package com.tvm.reportrendering.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderMetricsTest {
+
+    @Test
+    void testAddsTimesAndKeepsLargestHeapAndNodeCount() {
+        RenderMetrics metrics = new RenderMetrics("statement");
+        assertFalse(metrics.hasSamples());
+
+        metrics.record(0.010, 0.004, 0.001, 2_000_000, 1500);
+        metrics.record(0.020, 0.006, 0.002, 1_000_000, 3000);
+
+        assertTrue(metrics.hasSamples());
+        assertEquals(0.030, metrics.getLayoutSeconds(), 1e-9);
+        assertEquals(0.010, metrics.getRecalcStyleSeconds(), 1e-9);
+        assertEquals(0.003, metrics.getScriptSeconds(), 1e-9);
+        assertEquals(2_000_000, metrics.getJsHeapUsedBytes());
+        assertEquals(3000, metrics.getNodes());
+        assertEquals(-1, metrics.getPageCount());
+    }
+
+    @Test
+    void testServerTiming() {
+        RenderMetrics metrics = new RenderMetrics("statement");
+        metrics.record(0.0125, 0.004, 0.0005, 1048576, 1520);
+
+        assertEquals("layout;dur=12.5, style;dur=4.0, script;dur=0.5, jsheap;desc=\"1048576\", nodes;desc=\"1520\"",
+                metrics.toServerTiming());
+
+        metrics.setPageCount(3);
+        assertTrue(metrics.toServerTiming().endsWith(", pages;desc=\"3\""));
+    }
+
+    @Test
+    void testBindIsVisibleUntilScopeCloses() {
+        RenderMetrics metrics = new RenderMetrics("statement");
+
+        try (RenderDeadline.Scope ignored = metrics.bind()) {
+            assertSame(metrics, RenderMetrics.current());
+            try (RenderDeadline.Scope none = RenderMetrics.bindIfPresent(null)) {
+                assertSame(metrics, RenderMetrics.current());
+            }
+        }
+        assertNull(RenderMetrics.current());
+    }
+}
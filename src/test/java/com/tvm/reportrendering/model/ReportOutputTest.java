@@ -1,6 +1,11 @@
 package com.tvm.reportrendering.model;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -47,4 +52,20 @@ class ReportOutputTest {
             output.getContentAsByteArray();
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSpooledContentIsDeletedAfterReading(@TempDir Path tempDir) throws Exception {
+        Path file = Files.write(tempDir.resolve("report.pdf"), "Spooled content".getBytes());
+        ReportOutput output = new ReportOutput("application/pdf", new SpooledContent(file));
+
+        assertTrue(output.isBinary());
+        assertTrue(output.isSpooled());
+        assertEquals(15, output.getContentAsSpooled().getLength());
+        assertThrows(IllegalStateException.class, output::getContentAsByteArray);
+
+        try (InputStream in = output.getContentAsSpooled().openStream()) {
+            assertEquals("Spooled content", new String(in.readAllBytes()));
+        }
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,167 @@
+package com.tvm.reportrendering.pdf;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.model.RenderCancelledException;
+import com.tvm.reportrendering.model.RenderDeadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    private PdfProperties.Concurrency config() {
+        PdfProperties.Concurrency config = new PdfProperties.Concurrency();
+        config.setInitialLimit(4);
+        config.setMinLimit(1);
+        config.setMaxLimit(16);
+        config.setSmoothing(0.5);
+        config.setQueueTimeout(Duration.ofMillis(50));
+        return config;
+    }
+
+    @Test
+    void testLimitGrowsWhileLatencyIsStable() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(config(), 16);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(100 * MILLIS, limiter.getLimit());
+        }
+
+        assertEquals(16, limiter.getLimit());
+    }
+
+    @Test
+    void testLimitShrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(config(), 16);
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(100 * MILLIS, limiter.getLimit());
+        }
+
+        for (int i = 0; i < 20; i++) {
+            limiter.onSample(1000 * MILLIS, limiter.getLimit());
+        }
+
+        assertTrue(limiter.getLimit() < 8, "limit was " + limiter.getLimit());
+        assertTrue(limiter.getLimit() >= 1);
+    }
+
+    @Test
+    void testLimitDoesNotGrowWithoutLoad() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(config(), 16);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(100 * MILLIS, 1);
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void testDefaultConfigStartsBelowCeilingAndGrowsUnderLowLatency() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new PdfProperties(), new SimpleMeterRegistry());
+        assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(100 * MILLIS, limiter.getLimit());
+        }
+
+        // Pool size 2 times 4 renders per browser
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void testDefaultConfigBacksOffWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new PdfProperties(), new SimpleMeterRegistry());
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(100 * MILLIS, limiter.getLimit());
+        }
+
+        for (int i = 0; i < 20; i++) {
+            limiter.onSample(1000 * MILLIS, limiter.getLimit());
+        }
+
+        assertTrue(limiter.getLimit() < 8, "limit was " + limiter.getLimit());
+    }
+
+    @Test
+    void testWaitsForSlotAndTimesOut() throws Exception {
+        PdfProperties.Concurrency config = config();
+        config.setInitialLimit(1);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(config, 16);
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = executor.submit(() -> limiter.execute(() -> {
+                running.countDown();
+                await(finish);
+                return "first";
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            assertEquals(1, limiter.getInFlight());
+
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                    () -> limiter.execute(() -> "second"));
+            assertTrue(exception.getMessage().contains("waiting for a PDF render slot"));
+
+            finish.countDown();
+            assertEquals("first", first.get(5, TimeUnit.SECONDS));
+            assertEquals(0, limiter.getInFlight());
+            assertEquals(0, limiter.getQueued());
+            assertEquals("third", limiter.execute(() -> "third"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testStopsWaitingForSlotAtDeadline() throws Exception {
+        PdfProperties.Concurrency config = config();
+        config.setInitialLimit(1);
+        config.setQueueTimeout(Duration.ofSeconds(30));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(config, 16);
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> limiter.execute(() -> {
+                running.countDown();
+                await(finish);
+                return "first";
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+
+            long start = System.nanoTime();
+            try (RenderDeadline.Scope ignored = RenderDeadline.after(Duration.ofMillis(50)).bind()) {
+                RenderCancelledException exception = assertThrows(RenderCancelledException.class,
+                        () -> limiter.execute(() -> "second"));
+                assertEquals("acquiring a render slot", exception.getStage());
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertEquals(0, limiter.getQueued());
+        } finally {
+            finish.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.tvm.reportrendering.pdf;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AssetRegistryTest {
+
+    private AssetRegistry assetRegistry;
+
+    @BeforeEach
+    void setUp() {
+        assetRegistry = new AssetRegistry();
+        assetRegistry.loadAssets();
+    }
+
+    @Test
+    void testLoadsTemplateResourcesIntoMemory() {
+        AssetRegistry.Asset asset = assetRegistry.get("resources/css/test.css");
+
+        assertNotNull(asset);
+        assertEquals("text/css", asset.contentType());
+        assertTrue(new String(asset.body(), StandardCharsets.UTF_8).contains("font-family"));
+        assertTrue(asset.etag().startsWith("\"") && asset.etag().endsWith("\""));
+    }
+
+    @Test
+    void testUnknownResourceIsNotFound() {
+        assertNull(assetRegistry.get("resources/css/missing.css"));
+    }
+
+    @Test
+    void testContentTypes() {
+        assertEquals("image/png", AssetRegistry.contentTypeFor("resources/logo.PNG"));
+        assertEquals("image/jpeg", AssetRegistry.contentTypeFor("resources/photo.jpeg"));
+        assertEquals("image/svg+xml", AssetRegistry.contentTypeFor("resources/icon.svg"));
+        assertEquals("application/octet-stream", AssetRegistry.contentTypeFor("resources/data.bin"));
+    }
+}
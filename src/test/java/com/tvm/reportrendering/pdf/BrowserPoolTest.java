@@ -0,0 +1,28 @@
+package com.tvm.reportrendering.pdf;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrowserPoolTest {
+
+    @Test
+    void testLeaseTimesOutWhenNoBrowserAvailable() {
+        PdfProperties properties = new PdfProperties();
+        properties.getPool().setSize(0);
+        properties.getPool().setWarmMinimum(0);
+        properties.getPool().setLeaseTimeout(Duration.ofMillis(50));
+
+        BrowserPool pool = new BrowserPool(properties);
+        pool.warmUp();
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> pool.withPage(page -> "unused"));
+        assertTrue(exception.getMessage().contains("waiting for a browser"));
+
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,65 @@
+package com.tvm.reportrendering.pdf;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrowserRecyclePolicyTest {
+
+    private PdfProperties.Recycle config() {
+        PdfProperties.Recycle config = new PdfProperties.Recycle();
+        config.setMaxRenders(100);
+        config.setMaxAge(Duration.ofMinutes(30));
+        config.setMaxRss(DataSize.ofMegabytes(256));
+        return config;
+    }
+
+    @Test
+    void testKeepsBrowserWithinLimits() {
+        BrowserRecyclePolicy policy = new BrowserRecyclePolicy(config());
+
+        assertNull(policy.recycleReason(99, Duration.ofMinutes(29)));
+        assertNull(policy.rssReason(DataSize.ofMegabytes(200).toBytes()));
+        assertNull(policy.rssReason(-1));
+    }
+
+    @Test
+    void testRecyclesOnRenderCountAgeAndMemory() {
+        BrowserRecyclePolicy policy = new BrowserRecyclePolicy(config());
+
+        assertNotNull(policy.recycleReason(100, Duration.ofMinutes(1)));
+        assertNotNull(policy.recycleReason(1, Duration.ofMinutes(30)));
+        assertNotNull(policy.rssReason(DataSize.ofMegabytes(300).toBytes()));
+    }
+
+    @Test
+    void testDisabledLimits() {
+        PdfProperties.Recycle config = config();
+        config.setMaxRenders(0);
+        config.setMaxAge(null);
+        config.setMaxRss(null);
+        BrowserRecyclePolicy policy = new BrowserRecyclePolicy(config);
+
+        assertNull(policy.recycleReason(1_000_000, Duration.ofDays(1)));
+        assertNull(policy.rssReason(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testUnlaunchedBrowserIsNotRecycled() {
+        BrowserRecyclePolicy policy = new BrowserRecyclePolicy(config());
+
+        assertNull(policy.recycleReason(new BrowserWorker(0, 1)));
+    }
+
+    @Test
+    void testReadsResidentMemoryOfCurrentProcess() {
+        long rss = ProcessMemory.residentSetBytes(ProcessHandle.current());
+
+        // -1 on platforms without /proc
+        assertTrue(rss == -1 || rss > 0);
+    }
+}
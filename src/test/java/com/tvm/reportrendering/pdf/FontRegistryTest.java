@@ -0,0 +1,83 @@
+package com.tvm.reportrendering.pdf;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FontRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRegistersFontsAndDeclaresThemInDocumentHead() throws IOException {
+        Path fontFile = Files.write(tempDir.resolve("LiberationSans-Bold.ttf"), new byte[]{0, 1, 0, 0});
+        PdfProperties properties = new PdfProperties();
+        properties.getFonts().setEnabled(true);
+        properties.getFonts().setFaces(List.of(face("Arial", fontFile.toString(), 700)));
+
+        AssetRegistry assetRegistry = new AssetRegistry();
+        assetRegistry.loadAssets();
+        FontRegistry fontRegistry = new FontRegistry(assetRegistry, properties);
+        fontRegistry.loadFonts();
+
+        AssetRegistry.Asset asset = assetRegistry.get("resources/fonts/arial-700-normal.ttf");
+        assertNotNull(asset);
+        assertEquals("font/ttf", asset.contentType());
+        assertEquals(1, fontRegistry.getFonts().size());
+
+        String html = fontRegistry.apply("<html><head lang=\"en\"><style>body { font-family: Arial; }</style></head><body></body></html>");
+        int fontFace = html.indexOf("@font-face{font-family:\"Arial\"");
+        assertTrue(fontFace > html.indexOf("<head lang=\"en\">"));
+        assertTrue(fontFace < html.indexOf("body { font-family"));
+        assertTrue(html.contains("/resources/fonts/arial-700-normal.ttf"));
+        assertTrue(html.contains("font-weight:700"));
+    }
+
+    @Test
+    void testLeavesDocumentUnchangedWithoutFonts() {
+        AssetRegistry assetRegistry = new AssetRegistry();
+        FontRegistry fontRegistry = new FontRegistry(assetRegistry, new PdfProperties());
+        fontRegistry.loadFonts();
+
+        String html = "<html><head></head><body></body></html>";
+        assertSame(html, fontRegistry.apply(html));
+    }
+
+    @Test
+    void testFailsOnMissingFontFile() {
+        PdfProperties properties = new PdfProperties();
+        properties.getFonts().setEnabled(true);
+        properties.getFonts().setFaces(List.of(face("Arial", tempDir.resolve("missing.ttf").toString(), 400)));
+
+        FontRegistry fontRegistry = new FontRegistry(new AssetRegistry(), properties);
+        assertThrows(IllegalStateException.class, fontRegistry::loadFonts);
+    }
+
+    @Test
+    void testEncodesFacesForRenderWorkers() {
+        List<PdfProperties.Fonts.Face> faces = List.of(
+                face("Arial", "/fonts/Liberation Sans;Regular.ttf", 400),
+                face("Noto Sans", "classpath:fonts/noto|bold.ttf", 700));
+
+        List<PdfProperties.Fonts.Face> decoded = FontRegistry.decodeFaces(FontRegistry.encodeFaces(faces));
+
+        assertEquals(faces, decoded);
+        assertTrue(FontRegistry.decodeFaces(null).isEmpty());
+    }
+
+    private static PdfProperties.Fonts.Face face(String family, String file, int weight) {
+        PdfProperties.Fonts.Face face = new PdfProperties.Fonts.Face();
+        face.setFamily(family);
+        face.setFile(file);
+        face.setWeight(weight);
+        return face;
+    }
+}
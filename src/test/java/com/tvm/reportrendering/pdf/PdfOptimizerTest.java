@@ -0,0 +1,123 @@
+package com.tvm.reportrendering.pdf;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfOptimizerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PdfOptimizer optimizer;
+
+    @AfterEach
+    void tearDown() {
+        if (optimizer != null) {
+            optimizer.shutdown();
+        }
+    }
+
+    @Test
+    void testCollapsesDuplicateStreamsAndShrinksDocument() throws IOException {
+        optimizer = createOptimizer(true);
+        byte[] original = pdfWithDuplicateForms(3);
+
+        byte[] optimized = optimizer.optimize(original);
+
+        assertTrue(optimized.length < original.length,
+                "expected " + optimized.length + " < " + original.length);
+        try (PDDocument document = Loader.loadPDF(optimized)) {
+            assertEquals(3, document.getNumberOfPages());
+            COSStream first = formStream(document.getPage(0));
+            for (PDPage page : document.getPages()) {
+                assertSame(first, formStream(page));
+            }
+            assertEquals(COSName.FLATE_DECODE, first.getFilters());
+        }
+    }
+
+    @Test
+    void testOptimizesFileInPlace() throws IOException {
+        optimizer = createOptimizer(true);
+        Path file = tempDir.resolve("report.pdf");
+        Files.write(file, pdfWithDuplicateForms(2));
+        long before = Files.size(file);
+
+        optimizer.optimize(file);
+
+        assertTrue(Files.size(file) < before);
+        try (PDDocument document = Loader.loadPDF(file.toFile())) {
+            assertEquals(2, document.getNumberOfPages());
+        }
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testReturnsInputWhenDisabledOrUnreadable() {
+        optimizer = createOptimizer(false);
+        byte[] pdf = {1, 2, 3};
+        assertSame(pdf, optimizer.optimize(pdf));
+
+        optimizer.shutdown();
+        optimizer = createOptimizer(true);
+        byte[] garbage = "not a pdf".getBytes();
+        assertArrayEquals(garbage, optimizer.optimize(garbage));
+    }
+
+    private PdfOptimizer createOptimizer(boolean enabled) {
+        PdfProperties properties = new PdfProperties();
+        properties.getOptimizer().setEnabled(enabled);
+        return new PdfOptimizer(properties, new SimpleMeterRegistry());
+    }
+
+    // Every page draws its own, byte-identical, uncompressed form, as merged shards do with fonts and images
+    private static byte[] pdfWithDuplicateForms(int pages) throws IOException {
+        byte[] content = new byte[8192];
+        Arrays.fill(content, (byte) ' ');
+        System.arraycopy("0 0 m 10 10 l S".getBytes(), 0, content, 0, 15);
+
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+
+                PDFormXObject form = new PDFormXObject(document);
+                try (OutputStream out = form.getCOSObject().createOutputStream()) {
+                    out.write(content);
+                }
+                PDResources resources = new PDResources();
+                resources.put(COSName.getPDFName("Fm1"), form);
+                page.setResources(resources);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out, CompressParameters.NO_COMPRESSION);
+            return out.toByteArray();
+        }
+    }
+
+    private static COSStream formStream(PDPage page) throws IOException {
+        return ((PDFormXObject) page.getResources().getXObject(COSName.getPDFName("Fm1"))).getCOSObject();
+    }
+}
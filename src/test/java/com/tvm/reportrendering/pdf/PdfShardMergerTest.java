@@ -0,0 +1,69 @@
+package com.tvm.reportrendering.pdf;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfShardMergerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMergesSegmentsInOrderAndStampsEveryPage() throws IOException {
+        Path first = blankPdf("first.pdf", 2);
+        Path second = blankPdf("second.pdf", 3);
+        AtomicInteger requestedPages = new AtomicInteger();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PdfShardMerger.merge(List.of(first, second), pageCount -> {
+            requestedPages.set(pageCount);
+            try {
+                return blankPdf("overlay.pdf", pageCount);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, out);
+
+        assertEquals(5, requestedPages.get());
+        try (PDDocument merged = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(5, merged.getNumberOfPages());
+            for (PDPage page : merged.getPages()) {
+                // The overlay page is drawn as a form XObject
+                assertTrue(page.getResources().getXObjectNames().iterator().hasNext());
+            }
+        }
+    }
+
+    @Test
+    void testMergesWithoutOverlay() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PdfShardMerger.merge(List.of(blankPdf("only.pdf", 1), blankPdf("other.pdf", 1)), pageCount -> null, out);
+
+        try (PDDocument merged = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(2, merged.getNumberOfPages());
+        }
+    }
+
+    private Path blankPdf(String name, int pages) throws IOException {
+        Path file = tempDir.resolve(name);
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                document.addPage(new PDPage(PDRectangle.A4));
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+}
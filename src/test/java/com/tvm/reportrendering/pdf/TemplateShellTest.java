@@ -0,0 +1,56 @@
+package com.tvm.reportrendering.pdf;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateShellTest {
+
+    @Test
+    void testSplitSeparatesShellFromBody() {
+        String html = "<html><head><style>td { color: red; }</style></head>"
+                + "<body class=\"statement\"><h1>John Smith</h1></body></html>";
+
+        TemplateShell shell = TemplateShell.split(html);
+
+        assertNotNull(shell);
+        assertEquals("<html><head><style>td { color: red; }</style></head><body class=\"statement\"></body></html>",
+                shell.shellHtml());
+        assertEquals("<h1>John Smith</h1>", shell.bodyHtml());
+    }
+
+    @Test
+    void testSplitProducesSameShellForDifferentData() {
+        TemplateShell first = TemplateShell.split("<html><head></head><body><p>First</p></body></html>");
+        TemplateShell second = TemplateShell.split("<html><head></head><body><p>Second</p></body></html>");
+
+        assertEquals(first.shellHtml(), second.shellHtml());
+        assertNotEquals(first.bodyHtml(), second.bodyHtml());
+    }
+
+    @Test
+    void testSplitIgnoresElementsThatOnlyStartWithBody() {
+        String html = "<html><head><bodystyle></bodystyle></head><BODY>Content</BODY></html>";
+
+        TemplateShell shell = TemplateShell.split(html);
+
+        assertNotNull(shell);
+        assertEquals("Content", shell.bodyHtml());
+    }
+
+    @Test
+    void testSplitReturnsNullWithoutBody() {
+        assertNull(TemplateShell.split("<div>Fragment only</div>"));
+        assertNull(TemplateShell.split("<html><body>Unclosed"));
+    }
+
+    @Test
+    void testWithBodyRestoresDocument() {
+        String html = "<html><head></head><body class=\"statement\"><p>Content</p></body></html>";
+        TemplateShell shell = TemplateShell.split(html);
+
+        assertEquals(html, shell.withBody(shell.bodyHtml()));
+        assertEquals("<html><head></head><body class=\"statement\"><i>Other</i></body></html>",
+                shell.withBody("<i>Other</i>"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.tvm.reportrendering.pdf.engine;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.pdf.AssetRegistry;
+import com.tvm.reportrendering.pdf.FontRegistry;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenHtmlToPdfEngineTest {
+
+    private OpenHtmlToPdfEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        AssetRegistry assetRegistry = new AssetRegistry();
+        assetRegistry.loadAssets();
+        PdfProperties properties = new PdfProperties();
+        engine = new OpenHtmlToPdfEngine(assetRegistry, new FontRegistry(assetRegistry, properties), properties);
+    }
+
+    @Test
+    void testRendersDocumentWithNumberedFooter() throws IOException {
+        String html = """
+                <!DOCTYPE html>
+                <html><head><link rel="stylesheet" href="/resources/css/test.css"/>
+                <style>@page { size: A4; margin: 1in; } .page-break { page-break-before: always; }</style></head>
+                <body><h1>Account Statement</h1><table><tr><td>Deposit</td><td>5,000.00</td></tr></table>
+                <div class="page-break"></div><p>Second account</p></body></html>
+                """;
+        String footer = "<div>Page <span class=\"pageNumber\"></span> of <span class=\"totalPages\"></span></div>";
+
+        byte[] pdf = engine.generatePdf(html, "<div>Bank header</div>", footer);
+
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            assertEquals(2, document.getNumberOfPages());
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setSortByPosition(true);
+            String text = stripper.getText(document);
+            assertTrue(text.contains("Account Statement"));
+            assertTrue(text.contains("5,000.00"));
+            assertTrue(text.contains("Bank header"));
+            assertTrue(text.contains("Page 1 of 2"));
+            assertTrue(text.contains("Page 2 of 2"));
+        }
+    }
+
+    @Test
+    void testDoesNotFetchExternalResources() throws IOException {
+        String html = "<html><head></head><body><img src=\"https://example.com/logo.png\"/><p>Content</p></body></html>";
+
+        byte[] pdf = engine.generatePdf(html, null, null);
+
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            assertTrue(new PDFTextStripper().getText(document).contains("Content"));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.tvm.reportrendering.pdf.engine;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfEngineRegistryTest {
+
+    private final PdfEngine chromium = new NamedEngine("chromium");
+    private final PdfEngine jvm = new NamedEngine("openhtmltopdf");
+
+    @Test
+    void testSelectsRequestedThenTemplateThenDefault() {
+        PdfProperties properties = new PdfProperties();
+        properties.getEngine().getTemplates().put("simple", "openhtmltopdf");
+        PdfEngineRegistry registry = new PdfEngineRegistry(List.of(chromium, jvm), properties);
+
+        assertSame(chromium, registry.select("statement", null));
+        assertSame(jvm, registry.select("simple", null));
+        assertSame(chromium, registry.select("simple", "chromium"));
+        assertSame(jvm, registry.select("statement", "openhtmltopdf"));
+    }
+
+    @Test
+    void testRejectsUnknownEngines() {
+        PdfEngineRegistry registry = new PdfEngineRegistry(List.of(chromium, jvm), new PdfProperties());
+        assertThrows(IllegalArgumentException.class, () -> registry.select("statement", "wkhtmltopdf"));
+
+        PdfProperties misconfigured = new PdfProperties();
+        misconfigured.getEngine().setDefaultEngine("wkhtmltopdf");
+        assertThrows(IllegalStateException.class, () -> new PdfEngineRegistry(List.of(chromium), misconfigured));
+    }
+
+    private record NamedEngine(String name) implements PdfEngine {
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public byte[] generatePdf(String htmlContent, String headerContent, String footerContent) {
+            return new byte[0];
+        }
+    }
+}
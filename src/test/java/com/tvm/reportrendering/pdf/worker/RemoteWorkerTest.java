@@ -0,0 +1,96 @@
+package com.tvm.reportrendering.pdf.worker;
+
+import com.tvm.reportrendering.model.RenderCancelledException;
+import com.tvm.reportrendering.model.RenderDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemoteWorkerTest {
+
+    @TempDir
+    Path socketDir;
+
+    private ScheduledExecutorService watchdog;
+    private RemoteWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        watchdog = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (worker != null) {
+            worker.close();
+        }
+        watchdog.shutdownNow();
+    }
+
+    @Test
+    void testUnresponsiveWorkerIsKilledAfterRenderTimeout() throws Exception {
+        worker = hungWorker(Duration.ofMillis(500));
+        worker.start();
+        assertTrue(worker.isRunning());
+
+        long start = System.nanoTime();
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> worker.render("<html></html>", null, null, RenderDeadline.none()));
+
+        assertTrue(exception.getMessage().contains("did not respond within"));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(10)) < 0);
+        assertFalse(worker.isRunning());
+    }
+
+    @Test
+    void testUnresponsiveWorkerIsKilledAtRequestDeadline() throws Exception {
+        worker = hungWorker(Duration.ofMinutes(2));
+        worker.start();
+
+        long start = System.nanoTime();
+        try (RenderDeadline.Scope ignored = RenderDeadline.after(Duration.ofMillis(500)).bind()) {
+            RenderCancelledException exception = assertThrows(RenderCancelledException.class,
+                    () -> worker.render("<html></html>", null, null, RenderDeadline.current()));
+            assertEquals("the render completed", exception.getStage());
+        }
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(10)) < 0);
+        assertFalse(worker.isRunning());
+    }
+
+    private RemoteWorker hungWorker(Duration renderTimeout) {
+        List<String> command = RemoteRenderPool.workerCommand(List.of()).stream()
+                .map(arg -> arg.equals(RenderWorkerMain.class.getName()) ? HungWorker.class.getName() : arg)
+                .toList();
+        return new RemoteWorker(0, socketDir.resolve("hung.sock"), command, Duration.ofSeconds(30), renderTimeout, watchdog);
+    }
+
+    /**
+     * A worker whose browser hangs: it reads requests and never answers.
+     */
+    public static final class HungWorker {
+
+        public static void main(String[] args) throws Exception {
+            try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+                server.bind(UnixDomainSocketAddress.of(Path.of(args[0])));
+                try (SocketChannel channel = server.accept()) {
+                    RenderProtocol.readRequest(channel);
+                    Thread.sleep(Long.MAX_VALUE);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tvm.reportrendering.pdf.worker;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.nio.channels.Pipe;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderProtocolTest {
+
+    @Test
+    void testRequestRoundTrip() throws Exception {
+        Pipe pipe = Pipe.open();
+        RenderProtocol.RenderRequest request =
+                new RenderProtocol.RenderRequest("<html>Извештај о рачуну</html>", null, "<div>Footer</div>", 1500);
+
+        RenderProtocol.writeRequest(pipe.sink(), request);
+        pipe.sink().close();
+
+        assertEquals(request, RenderProtocol.readRequest(pipe.source()));
+        assertNull(RenderProtocol.readRequest(pipe.source()));
+    }
+
+    @Test
+    void testSuccessResponseRoundTrip() throws Exception {
+        Pipe pipe = Pipe.open();
+        byte[] pdf = "%PDF-1.4 content".getBytes();
+
+        RenderProtocol.writeSuccess(pipe.sink(), pdf);
+
+        assertArrayEquals(pdf, RenderProtocol.readResponse(pipe.source()));
+    }
+
+    @Test
+    void testErrorResponseIsRaised() throws Exception {
+        Pipe pipe = Pipe.open();
+
+        RenderProtocol.writeError(pipe.sink(), "Browser crashed");
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> RenderProtocol.readResponse(pipe.source()));
+        assertTrue(exception.getMessage().contains("Browser crashed"));
+    }
+
+    @Test
+    void testTruncatedResponseFails() throws Exception {
+        Pipe pipe = Pipe.open();
+        pipe.sink().write(java.nio.ByteBuffer.wrap(new byte[]{RenderProtocol.STATUS_OK, 0, 0}));
+        pipe.sink().close();
+
+        assertThrows(EOFException.class, () -> RenderProtocol.readResponse(pipe.source()));
+    }
+
+    @Test
+    void testWorkerCommandUsesCurrentClassPath() {
+        List<String> command = RemoteRenderPool.workerCommand(List.of("-Xmx64m"));
+
+        assertTrue(command.get(0).endsWith("java"));
+        assertEquals("-Xmx64m", command.get(1));
+        assertEquals(RenderWorkerMain.class.getName(), command.get(command.size() - 1));
+    }
+}
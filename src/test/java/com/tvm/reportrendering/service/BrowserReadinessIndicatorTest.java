@@ -0,0 +1,56 @@
+package com.tvm.reportrendering.service;
+
+import com.tvm.reportrendering.config.PdfProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BrowserReadinessIndicatorTest {
+
+    private final PdfService pdfService = mock(PdfService.class);
+    private BrowserReadinessIndicator indicator;
+
+    @AfterEach
+    void tearDown() {
+        indicator.shutdown();
+    }
+
+    @Test
+    void testOutOfServiceUntilTestRenderSucceeds() {
+        PdfProperties properties = new PdfProperties();
+        properties.getReadiness().setRetryInterval(Duration.ofHours(1));
+        indicator = new BrowserReadinessIndicator(pdfService, properties);
+        assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+
+        when(pdfService.generatePdf(eq(BrowserReadinessIndicator.TEST_DOCUMENT), any(), any()))
+                .thenThrow(new RuntimeException("Failed to generate PDF", new IllegalStateException("Executable doesn't exist")));
+        indicator.checkRender();
+        assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+        assertEquals("Executable doesn't exist", indicator.health().getDetails().get("error"));
+
+        reset(pdfService);
+        when(pdfService.generatePdf(eq(BrowserReadinessIndicator.TEST_DOCUMENT), any(), any()))
+                .thenReturn("%PDF-1.7".getBytes(StandardCharsets.US_ASCII));
+        indicator.checkRender();
+        assertEquals(Status.UP, indicator.health().getStatus());
+        assertTrue(indicator.health().getDetails().containsKey("testRenderMillis"));
+    }
+
+    @Test
+    void testRejectsOutputThatIsNotPdf() {
+        indicator = new BrowserReadinessIndicator(pdfService, new PdfProperties());
+        when(pdfService.generatePdf(any(), any(), any())).thenReturn(new byte[0]);
+
+        indicator.checkRender();
+
+        assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+    }
+}
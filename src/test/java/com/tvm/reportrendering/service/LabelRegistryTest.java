@@ -0,0 +1,82 @@
+package com.tvm.reportrendering.service;
+
+import com.tvm.reportrendering.config.TemplateProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LabelRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLoadsPackagedLabelsOnce() {
+        LabelRegistry labelRegistry = new LabelRegistry(new TemplateProperties());
+        labelRegistry.load();
+
+        Map<String, String> labels = labelRegistry.getLabels("statement", "en");
+        assertEquals("Account Statement", labels.get("statement_title"));
+        assertSame(labels, labelRegistry.getLabels("statement", "en"));
+        assertEquals(Set.of("en", "fr", "hr", "sr"), labelRegistry.getLanguages("statement"));
+        assertThrows(IllegalArgumentException.class, () -> labelRegistry.getLabels("statement", "de"));
+        assertThrows(UnsupportedOperationException.class, () -> labels.put("statement_title", "changed"));
+    }
+
+    @Test
+    void testFillsInMissingLabelsAlongTheFallbackChain() throws IOException {
+        Path invoice = Files.createDirectory(directory.resolve("invoice"));
+        Files.writeString(invoice.resolve("language_en.json"), "{\"title\": \"Invoice\", \"total\": \"Total\", \"due\": \"Due\"}");
+        Files.writeString(invoice.resolve("language_hr.json"), "{\"title\": \"Račun\", \"total\": \"Ukupno\"}");
+        Files.writeString(invoice.resolve("language_sr.json"), "{\"title\": \"Рачун\"}");
+
+        TemplateProperties properties = new TemplateProperties();
+        properties.setDirectory(directory.toString());
+        properties.getLabelFallbacks().put("sr", "hr");
+        LabelRegistry labelRegistry = new LabelRegistry(properties);
+        labelRegistry.load();
+
+        assertEquals(List.of("sr", "hr", "en"), labelRegistry.fallbackChain("sr"));
+        assertEquals(Map.of("title", "Рачун", "total", "Ukupno", "due", "Due"), labelRegistry.getLabels("invoice", "sr"));
+        assertEquals(Map.of("title", "Račun", "total", "Ukupno", "due", "Due"), labelRegistry.getLabels("invoice", "hr"));
+        // External labels come on top of the packaged ones
+        assertEquals("Account Statement", labelRegistry.getLabels("statement", "en").get("statement_title"));
+    }
+
+    @Test
+    void testReplacesLabelsOnTemplateChange() throws IOException {
+        Path statement = Files.createDirectory(directory.resolve("statement"));
+        TemplateProperties properties = new TemplateProperties();
+        properties.setDirectory(directory.toString());
+        LabelRegistry labelRegistry = new LabelRegistry(properties);
+        labelRegistry.load();
+        Map<String, String> before = labelRegistry.getLabels("statement", "en");
+
+        Files.writeString(statement.resolve("language_en.json"), "{\"statement_title\": \"Statement of Account\"}");
+        labelRegistry.onTemplatesChanged(new TemplatesChangedEvent(this, Set.of("statement")));
+
+        assertEquals("Account Statement", before.get("statement_title"));
+        assertEquals("Statement of Account", labelRegistry.getLabels("statement", "en").get("statement_title"));
+
+        Files.writeString(statement.resolve("language_en.json"), "{not json");
+        labelRegistry.onTemplatesChanged(new TemplatesChangedEvent(this, Set.of("statement")));
+        assertEquals("Statement of Account", labelRegistry.getLabels("statement", "en").get("statement_title"));
+    }
+
+    @Test
+    void testFallbackChainStopsAtCycles() {
+        TemplateProperties properties = new TemplateProperties();
+        properties.getLabelFallbacks().put("sr", "hr");
+        properties.getLabelFallbacks().put("hr", "sr");
+
+        assertEquals(List.of("sr", "hr", "en"), new LabelRegistry(properties).fallbackChain("sr"));
+    }
+}
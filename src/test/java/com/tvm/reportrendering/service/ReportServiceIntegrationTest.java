@@ -30,10 +30,11 @@ class ReportServiceIntegrationTest {
         assertTrue(templates.containsKey("statement"));
 
         List<OutputFormat> statementFormats = templates.get("statement");
-        assertEquals(3, statementFormats.size());
+        assertEquals(4, statementFormats.size());
         assertTrue(statementFormats.contains(OutputFormat.HTML));
         assertTrue(statementFormats.contains(OutputFormat.CSV));
         assertTrue(statementFormats.contains(OutputFormat.PDF));
+        assertTrue(statementFormats.contains(OutputFormat.PNG));
     }
 
     @Test
@@ -45,9 +46,9 @@ class ReportServiceIntegrationTest {
             assertNotNull(output);
             assertEquals("text/html", output.getMimeType());
             assertNotNull(output.getContent());
-            assertTrue(output.getContent() instanceof String);
+            assertTrue(output.isStreamed());
 
-            String htmlContent = (String) output.getContent();
+            String htmlContent = output.getContentAsString();
             assertFalse(htmlContent.isEmpty());
 
             // Verify HTML structure
@@ -69,9 +70,9 @@ class ReportServiceIntegrationTest {
             assertNotNull(output);
             assertEquals("text/csv", output.getMimeType());
             assertNotNull(output.getContent());
-            assertTrue(output.getContent() instanceof String);
+            assertTrue(output.isStreamed());
 
-            String csvContent = (String) output.getContent();
+            String csvContent = output.getContentAsString();
             assertFalse(csvContent.isEmpty());
 
             // Verify CSV structure
@@ -112,7 +113,7 @@ class ReportServiceIntegrationTest {
             ReportOutput output = reportService.generateReport(inputStream, "statement", OutputFormat.HTML, "en");
 
             assertNotNull(output);
-            String htmlContent = (String) output.getContent();
+            String htmlContent = output.getContentAsString();
 
             // Verify all three accounts are included
             assertTrue(htmlContent.contains("1234567890")); // Checking
@@ -165,6 +166,6 @@ class ReportServiceIntegrationTest {
         assertTrue(templates.containsKey("statement"));
 
         List<OutputFormat> formats = templates.get("statement");
-        assertEquals(3, formats.size());
+        assertEquals(4, formats.size());
     }
 }
\ No newline at end of file
@@ -1,14 +1,19 @@
 package com.tvm.reportrendering.service;
 
 import com.tvm.reportrendering.annotation.ReportName;
+import com.tvm.reportrendering.config.PdfProperties;
+import com.tvm.reportrendering.config.TemplateProperties;
 import com.tvm.reportrendering.model.OutputFormat;
+import com.tvm.reportrendering.model.RenderDeadline;
 import com.tvm.reportrendering.model.ReportOutput;
+import com.tvm.reportrendering.model.TemplateCapabilities;
 import com.tvm.reportrendering.reports.statement.StatementReport;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.context.ApplicationContext;
 import org.thymeleaf.TemplateEngine;
 import org.mockito.ArgumentMatchers;
@@ -17,9 +22,11 @@ import org.springframework.core.io.ClassPathResource;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
@@ -32,6 +39,9 @@ class ReportServiceTest {
     @Mock
     private Report<?> mockReport;
 
+    @Spy
+    private PdfProperties pdfProperties = new PdfProperties();
+
     @InjectMocks
     private ReportService reportService;
 
@@ -106,9 +116,46 @@ class ReportServiceTest {
         // Verify
         assertNotNull(templates);
         assertTrue(templates.containsKey("statement"));
-        assertEquals(3, templates.get("statement").size()); // PDF, HTML, CSV
+        assertEquals(4, templates.get("statement").size()); // PDF, HTML, CSV, PNG
+        assertSame(templates, reportService.getAvailableTemplates());
+
+        TemplateCapabilities capabilities = reportService.getTemplateCapabilities("statement");
+        assertEquals(List.of(OutputFormat.values()), capabilities.formats());
+        assertEquals(List.of("en", "fr", "hr", "sr"), capabilities.languages());
+        assertNull(reportService.getTemplateCapabilities("unknown"));
+    }
+
+    @Test
+    void testPreviewETagChangesWhenTemplatesChange() {
+        byte[] input = "{\"accounts\": []}".getBytes();
+        String before = reportService.previewETag(input, "statement", "en");
+        assertEquals(before, reportService.previewETag(input, "statement", "en"));
+        assertNotEquals(before, reportService.previewETag(input, "statement", "fr"));
+
+        reportService.onTemplatesChanged(new TemplatesChangedEvent(this, Set.of("statement")));
+
+        assertNotEquals(before, reportService.previewETag(input, "statement", "en"));
     }
 
+    @Test
+    void testRequestDeadline() {
+        pdfProperties.getDeadline().setMax(Duration.ofSeconds(60));
+        pdfProperties.getDeadline().getDefaults().put(OutputFormat.CSV, Duration.ZERO);
+
+        RenderDeadline requested = reportService.requestDeadline(OutputFormat.PDF, 5000L);
+        assertTrue(requested.isBounded());
+        assertTrue(requested.remaining().compareTo(Duration.ofSeconds(5)) <= 0);
+
+        RenderDeadline capped = reportService.requestDeadline(OutputFormat.PDF, 600_000L);
+        assertTrue(capped.remaining().compareTo(Duration.ofSeconds(60)) <= 0);
+
+        RenderDeadline byFormat = reportService.requestDeadline(OutputFormat.HTML, null);
+        assertTrue(byFormat.remaining().compareTo(Duration.ofSeconds(30)) <= 0);
+        assertTrue(byFormat.remaining().compareTo(Duration.ofSeconds(20)) > 0);
+
+        assertFalse(reportService.requestDeadline(OutputFormat.CSV, null).isBounded());
+        assertThrows(IllegalArgumentException.class, () -> reportService.requestDeadline(OutputFormat.PDF, -1L));
+    }
 
     @ReportName("test")
     static class MockReport extends Report<Object> {
@@ -117,6 +164,8 @@ class ReportServiceTest {
             // Initialize with a mock template engine for testing
             this.templateEngine = org.mockito.Mockito.mock(TemplateEngine.class);
             this.pdfService = org.mockito.Mockito.mock(PdfService.class);
+            this.labelRegistry = new LabelRegistry(new TemplateProperties());
+            this.labelRegistry.load();
 
             // Setup mock behavior
             org.mockito.Mockito.when(templateEngine.process(ArgumentMatchers.any(String.class),
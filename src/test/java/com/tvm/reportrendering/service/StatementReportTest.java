@@ -1,16 +1,39 @@
 package com.tvm.reportrendering.service;
 
+import com.tvm.reportrendering.config.TemplateProperties;
+import com.tvm.reportrendering.model.OutputFormat;
+import com.tvm.reportrendering.model.RenderCancelledException;
+import com.tvm.reportrendering.model.RenderDeadline;
+import com.tvm.reportrendering.model.RenderOptions;
+import com.tvm.reportrendering.model.ReportOutput;
 import com.tvm.reportrendering.reports.statement.StatementModel;
 import com.tvm.reportrendering.reports.statement.StatementReport;
+import com.tvm.reportrendering.template.FormatDialect;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.core.io.ClassPathResource;
+import org.thymeleaf.context.IContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class StatementReportTest {
 
@@ -19,6 +42,8 @@ class StatementReportTest {
     @BeforeEach
     void setUp() {
         statementReport = new StatementReport();
+        statementReport.labelRegistry = new LabelRegistry(new TemplateProperties());
+        statementReport.labelRegistry.load();
     }
 
     @Test
@@ -43,6 +68,100 @@ class StatementReportTest {
         assertTrue(firstAccount.getClosingBalance().compareTo(BigDecimal.ZERO) > 0);
     }
 
+    @Test
+    void testWritesCsvWithLocalizedHeadersAndQuotedFields() {
+        String json = """
+                {"startDate": "2024-01-01", "endDate": "2024-01-31", "accounts": [{
+                  "accountName": "Smith, John", "transitNumber": "00001", "accountNumber": "1234567890",
+                  "accountType": "Chequing", "transactions": [{
+                    "actionDate": "2024-01-02", "valueDate": "2024-01-03", "transactionType": "Payment",
+                    "description": "Shop \\"A\\", Main St", "creditAmount": null, "debitAmount": 12.5,
+                    "balance": 1000
+                  }]
+                }]}
+                """;
+
+        ReportOutput output = statementReport.process(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                "statement", OutputFormat.CSV, "fr");
+
+        assertTrue(output.isStreamed());
+        String[] lines = output.getContentAsString().split("\r\n", -1);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("Numéro de compte,Numéro de transit,Nom du compte,"));
+        assertEquals("1234567890,00001,\"Smith, John\",Chequing,2024-01-02,2024-01-03,Payment,"
+                + "\"Shop \"\"A\"\", Main St\",,12.50,1000.00", lines[1]);
+        assertEquals("", lines[2]);
+    }
+
+    @Test
+    void testStopsWritingCsvOnceTheDeadlineHasPassed() throws Exception {
+        RenderOptions options = new RenderOptions();
+        options.setDeadline(RenderDeadline.after(Duration.ofMillis(500)));
+        ReportOutput output;
+        try (InputStream inputStream = new ClassPathResource("sample-statement.json").getInputStream()) {
+            output = statementReport.process(inputStream, "statement", OutputFormat.CSV, "en", options);
+        }
+
+        // Written after process() returned, when the deadline has passed
+        Thread.sleep(600);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        RenderCancelledException exception = assertThrows(RenderCancelledException.class,
+                () -> output.getContentAsStreamed().writeTo(response));
+        assertEquals("writing csv", exception.getStage());
+        assertEquals(0, response.size());
+    }
+
+    @Test
+    void testStreamsLargeHtmlInChunks() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        templateEngine.addDialect(new FormatDialect());
+        statementReport.templateEngine = templateEngine;
+
+        StringBuilder transactions = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            transactions.append(i > 0 ? "," : "").append("""
+                    {"actionDate": "2024-01-02", "valueDate": "2024-01-02", "transactionType": "Payment",
+                     "description": "Transaction %d", "creditAmount": 1, "debitAmount": null, "balance": %d}
+                    """.formatted(i, i + 1));
+        }
+        String json = """
+                {"startDate": "2024-01-01", "endDate": "2024-01-31", "accounts": [{
+                  "accountName": "Chequing", "transitNumber": "00001", "accountNumber": "1234567890",
+                  "accountType": "Chequing", "transactions": [%s]
+                }]}
+                """.formatted(transactions);
+
+        ReportOutput output = statementReport.process(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                "statement", OutputFormat.HTML, "en");
+
+        assertTrue(output.isStreamed());
+        String html = output.getContentAsString();
+        // Several chunks' worth, written out completely and in order
+        assertTrue(html.length() > 4 * 64 * 1024, "length " + html.length());
+        assertTrue(html.indexOf("Transaction 0<") < html.indexOf("Transaction 1999<"));
+        assertTrue(html.stripTrailing().endsWith("</html>"));
+    }
+
+    @Test
+    void testShardSplitsStatementByAccount() throws IOException {
+        InputStream inputStream = new ClassPathResource("sample-statement.json").getInputStream();
+        StatementModel statement = statementReport.parse(inputStream);
+
+        List<StatementModel> shards = statementReport.shard(statement);
+
+        assertEquals(3, shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            StatementModel shard = shards.get(i);
+            assertEquals(List.of(statement.getAccounts().get(i)), shard.getAccounts());
+            assertEquals(statement.getStartDate(), shard.getStartDate());
+            assertEquals(statement.getTotalClosingBalance(), shard.getTotalClosingBalance());
+        }
+    }
+
     @Test
     void testParseInvalidJson() {
         // Create a simple invalid JSON stream for testing
@@ -78,4 +197,35 @@ class StatementReportTest {
         assertEquals(BigDecimal.ZERO, account.getOpeningBalance());
         assertEquals(BigDecimal.ZERO, account.getClosingBalance());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRendersHeaderAndFooterOncePerLanguage() throws IOException {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        SpringTemplateEngine templateEngine = spy(new SpringTemplateEngine());
+        templateEngine.setTemplateResolver(resolver);
+        templateEngine.addDialect(new FormatDialect());
+        TemplateIndex templateIndex = new TemplateIndex();
+        templateIndex.buildIndex();
+        PdfService pdfService = mock(PdfService.class);
+        when(pdfService.generatePdf(any(), any(), any())).thenReturn(new byte[]{1});
+
+        statementReport.templateEngine = templateEngine;
+        statementReport.templateIndex = templateIndex;
+        statementReport.pdfService = pdfService;
+
+        for (int i = 0; i < 2; i++) {
+            try (InputStream inputStream = new ClassPathResource("sample-statement.json").getInputStream()) {
+                statementReport.process(inputStream, "statement", OutputFormat.PDF, "en");
+            }
+        }
+
+        ArgumentCaptor<String> footer = ArgumentCaptor.forClass(String.class);
+        verify(pdfService, times(2)).generatePdf(any(), any(), footer.capture());
+        assertTrue(footer.getValue().matches("(?s).*Generated on <span>\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}</span>.*"),
+                footer.getValue());
+        verify(templateEngine, times(1)).process(eq("statement/pdf_footer"), any(IContext.class));
+        verify(templateEngine, times(1)).process(eq("statement/pdf_header"), any(IContext.class));
+    }
+}
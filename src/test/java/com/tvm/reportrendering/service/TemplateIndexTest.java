@@ -0,0 +1,23 @@
+package com.tvm.reportrendering.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateIndexTest {
+
+    @Test
+    void testIndexesTemplatePartsPerReport() {
+        TemplateIndex templateIndex = new TemplateIndex();
+        templateIndex.buildIndex();
+
+        assertEquals(Set.of("html", "pdf", "pdf_header", "pdf_footer"), templateIndex.getParts("statement"));
+        assertTrue(templateIndex.exists("statement", "pdf_footer"));
+        assertFalse(templateIndex.exists("statement", "pdf_watermark"));
+        assertFalse(templateIndex.exists("unknown", "pdf"));
+        assertTrue(templateIndex.getParts("resources").isEmpty());
+        assertEquals(Set.of("en", "fr", "hr", "sr"), templateIndex.getLanguages("statement"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.tvm.reportrendering.service;
+
+import com.tvm.reportrendering.config.TemplateProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.thymeleaf.TemplateEngine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TemplateWatcherTest {
+
+    @TempDir
+    Path directory;
+
+    private TemplateWatcher watcher;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    @Test
+    void testClearsCacheOnceAfterChangesSettle() throws Exception {
+        Path statement = Files.createDirectory(directory.resolve("statement"));
+        Files.writeString(statement.resolve("pdf.html"), "<p>v1</p>");
+
+        TemplateEngine templateEngine = mock(TemplateEngine.class);
+        ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+        watcher = new TemplateWatcher(templateEngine, publisher, properties(true));
+        watcher.start();
+
+        Files.writeString(statement.resolve("pdf.html"), "<p>v2</p>");
+        Files.writeString(statement.resolve("pdf_footer.html"), "<p>footer</p>");
+
+        ArgumentCaptor<TemplatesChangedEvent> event = ArgumentCaptor.forClass(TemplatesChangedEvent.class);
+        verify(publisher, timeout(5000)).publishEvent(event.capture());
+        verify(templateEngine).clearTemplateCache();
+        assertEquals(Set.of("statement"), event.getValue().getTemplateNames());
+    }
+
+    @Test
+    void testDoesNotWatchWhenDisabled() throws Exception {
+        TemplateEngine templateEngine = mock(TemplateEngine.class);
+        watcher = new TemplateWatcher(templateEngine, mock(ApplicationEventPublisher.class), properties(false));
+        watcher.start();
+
+        Files.writeString(directory.resolve("changed.html"), "<p>changed</p>");
+
+        verify(templateEngine, after(300).never()).clearTemplateCache();
+    }
+
+    @Test
+    void testIndexIncludesExternalTemplates() throws Exception {
+        Path statement = Files.createDirectory(directory.resolve("statement"));
+        Files.writeString(statement.resolve("pdf_watermark.html"), "<p>draft</p>");
+        Path invoice = Files.createDirectory(directory.resolve("invoice"));
+        Files.writeString(invoice.resolve("pdf.html"), "<p>invoice</p>");
+
+        TemplateIndex templateIndex = new TemplateIndex(properties(true));
+        templateIndex.buildIndex();
+
+        assertTrue(templateIndex.exists("statement", "pdf_watermark"));
+        assertTrue(templateIndex.exists("statement", "pdf_footer"));
+        assertEquals(Set.of("pdf"), templateIndex.getParts("invoice"));
+
+        Files.writeString(invoice.resolve("pdf_header.html"), "<p>header</p>");
+        templateIndex.onTemplatesChanged(new TemplatesChangedEvent(this, Set.of("invoice")));
+        assertEquals(Set.of("pdf", "pdf_header"), templateIndex.getParts("invoice"));
+    }
+
+    private TemplateProperties properties(boolean watch) {
+        TemplateProperties properties = new TemplateProperties();
+        properties.setDirectory(directory.toString());
+        properties.setWatch(watch);
+        properties.setDebounce(Duration.ofMillis(200));
+        return properties;
+    }
+}
@@ -0,0 +1,131 @@
+package com.tvm.reportrendering.template;
+
+import com.tvm.reportrendering.config.TemplateProperties;
+import com.tvm.reportrendering.reports.statement.StatementModel;
+import com.tvm.reportrendering.service.LabelRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the statement {@code html} template with Thymeleaf, compiled, and compiled with every
+ * account already in the {@link FragmentCache}, as when a statement is downloaded again. Run with
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=CompiledTemplateBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompiledTemplateBenchmark {
+
+    @Param({"1000"})
+    public int transactions;
+
+    private SpringTemplateEngine templateEngine;
+    private CompiledTemplate compiled;
+    private CompiledTemplate cached;
+    private Map<String, Object> variables;
+
+    @Setup
+    public void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCharacterEncoding("UTF-8");
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        templateEngine.addDialect(new FormatDialect());
+        compiled = new CompiledTemplates().get("statement/html");
+        TemplateProperties properties = new TemplateProperties();
+        cached = new CompiledTemplates(properties, null, new FragmentCache(properties, new SimpleMeterRegistry()))
+                .get("statement/html");
+
+        LabelRegistry labels = new LabelRegistry(new TemplateProperties());
+        labels.load();
+        variables = Map.of("model", statement(transactions), "labels", labels.getLabels("statement", "en"));
+
+        // Cached from an equal model, as a previous request would have parsed its own
+        try {
+            cached.render(Map.of("model", statement(transactions), "labels", variables.get("labels")),
+                    Locale.ENGLISH, new StringWriter());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public String thymeleaf() {
+        return templateEngine.process("statement/html", new Context(Locale.ENGLISH, variables));
+    }
+
+    @Benchmark
+    public String compiled() throws IOException {
+        StringWriter writer = new StringWriter();
+        compiled.render(variables, Locale.ENGLISH, writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String cachedAccounts() throws IOException {
+        StringWriter writer = new StringWriter();
+        cached.render(variables, Locale.ENGLISH, writer);
+        return writer.toString();
+    }
+
+    static StatementModel statement(int transactions) {
+        StatementModel.Account account = new StatementModel.Account();
+        account.setAccountName("Chequing");
+        account.setAccountNumber("1234567890");
+        account.setTransitNumber("00001");
+        account.setAccountType("Chequing");
+        account.setOpeningBalance(new BigDecimal("1000.00"));
+        account.setClosingBalance(new BigDecimal("1000.00"));
+        List<StatementModel.Transaction> rows = new ArrayList<>(transactions);
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < transactions; i++) {
+            StatementModel.Transaction transaction = new StatementModel.Transaction();
+            transaction.setActionDate(date.plusDays(i % 365));
+            transaction.setValueDate(date.plusDays(i % 365));
+            transaction.setDescription("Transaction " + i);
+            transaction.setTransactionType("Payment");
+            transaction.setCreditAmount(i % 2 == 0 ? new BigDecimal(i).movePointLeft(2) : null);
+            transaction.setDebitAmount(i % 2 == 1 ? new BigDecimal(i).movePointLeft(2) : null);
+            transaction.setBalance(new BigDecimal(1_000_000 + i * 37L).movePointLeft(2));
+            rows.add(transaction);
+        }
+        account.setTransactions(rows);
+
+        StatementModel statement = new StatementModel();
+        statement.setStartDate(date);
+        statement.setEndDate(date.plusDays(30));
+        statement.setAccounts(List.of(account));
+        statement.setTotalOpeningBalance(account.getOpeningBalance());
+        statement.setTotalClosingBalance(account.getClosingBalance());
+        return statement;
+    }
+}
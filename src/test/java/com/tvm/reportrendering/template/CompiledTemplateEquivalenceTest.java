@@ -0,0 +1,134 @@
+package com.tvm.reportrendering.template;
+
+import com.tvm.reportrendering.config.TemplateProperties;
+import com.tvm.reportrendering.reports.statement.StatementModel;
+import com.tvm.reportrendering.reports.statement.StatementReport;
+import com.tvm.reportrendering.service.LabelRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.core.io.ClassPathResource;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Renders the packaged templates with Thymeleaf and compiled, and expects the same output.
+ */
+class CompiledTemplateEquivalenceTest {
+
+    private static final String SPECIAL_CHARACTERS = """
+            {"startDate": "2024-01-01", "endDate": "2024-01-31", "accounts": [{
+              "accountName": "Smith & <Sons> \\"Ltd\\" 'A'", "transitNumber": "00001", "accountNumber": "1234567890",
+              "accountType": "Chequing", "transactions": [{
+                "actionDate": "2024-01-02", "valueDate": "2024-01-03", "transactionType": "Payment",
+                "description": "Café « Zagreb » — Ђурђевак", "creditAmount": null, "debitAmount": 12.5,
+                "balance": -1000
+              }]
+            }, {
+              "accountName": "Empty", "transitNumber": "00002", "accountNumber": "2", "accountType": "Savings",
+              "transactions": []
+            }]}
+            """;
+
+    private static SpringTemplateEngine templateEngine;
+    private static LabelRegistry labels;
+    private static StatementModel sample;
+    private static StatementModel special;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCharacterEncoding("UTF-8");
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        templateEngine.addDialect(new FormatDialect());
+
+        labels = new LabelRegistry(new TemplateProperties());
+        labels.load();
+
+        StatementReport report = new StatementReport();
+        try (InputStream inputStream = new ClassPathResource("sample-statement.json").getInputStream()) {
+            sample = report.parse(inputStream);
+        }
+        special = report.parse(new ByteArrayInputStream(SPECIAL_CHARACTERS.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"html, en", "html, fr", "html, hr", "html, sr", "pdf, en", "pdf, fr", "pdf, hr", "pdf, sr"})
+    void testStatementTemplatesMatchThymeleaf(String part, String language) throws IOException {
+        CompiledTemplate compiled = new CompiledTemplates().get("statement/" + part);
+        assertNotNull(compiled, "statement/" + part + " should compile");
+
+        for (StatementModel model : List.of(sample, special)) {
+            for (boolean firstShard : new boolean[]{true, false}) {
+                Map<String, Object> variables = new HashMap<>();
+                variables.put("model", model);
+                variables.put("labels", labels.getLabels("statement", language));
+                variables.put("generatedOn", "2024-02-01 09:30");
+                variables.put("firstShard", firstShard);
+                variables.put("lastShard", !firstShard);
+                Locale locale = Locale.forLanguageTag(language);
+
+                assertEquals(templateEngine.process("statement/" + part, new Context(locale, variables)),
+                        render(compiled, variables, locale));
+            }
+        }
+    }
+
+    @Test
+    void testExpressionsMatchThymeleaf() throws IOException {
+        String template = """
+                <ul class="items" th:unless="${items == null}">
+                  <li th:each="item, itemStat : ${items}" th:if="${itemStat.index >= 1}" data-x='1'
+                      th:text="${itemStat.count} + ': ' + ${item.name} + ' ' + ${#fmt.date(item.date, 'd MMM yyyy')}">x</li>
+                  <br/>
+                  <li th:each="code : ${codes}"><b th:text="${code}"></b><!-- kept --></li>
+                </ul>""";
+        Map<String, Object> variables = Map.of(
+                "items", List.of(Map.of("name", "<a>", "date", LocalDate.of(2024, 3, 1)),
+                        Map.of("name", "b & c", "date", LocalDate.of(2024, 4, 2))),
+                "codes", new String[]{"x", "y"});
+        SpringTemplateEngine stringEngine = new SpringTemplateEngine();
+        stringEngine.setTemplateResolver(new StringTemplateResolver());
+        stringEngine.addDialect(new FormatDialect());
+
+        assertEquals(stringEngine.process(template, new Context(Locale.FRENCH, variables)),
+                render(TemplateCompiler.compile(template, "test"), variables, Locale.FRENCH));
+    }
+
+    @Test
+    void testRejectsUnsupportedTemplates() {
+        assertThrows(UnsupportedTemplateException.class,
+                () -> TemplateCompiler.compile("<p th:utext=\"${html}\"></p>", "test"));
+        assertThrows(UnsupportedTemplateException.class,
+                () -> TemplateCompiler.compile("<p th:text=\"${a.b()}\"></p>", "test"));
+        assertThrows(UnsupportedTemplateException.class,
+                () -> TemplateCompiler.compile("<p>[[${name}]]</p>", "test"));
+        assertThrows(UnsupportedTemplateException.class,
+                () -> TemplateCompiler.compile("<div><p></div>", "test"));
+    }
+
+    private static String render(CompiledTemplate compiled, Map<String, ?> variables, Locale locale) throws IOException {
+        StringWriter writer = new StringWriter();
+        compiled.render(variables, locale, writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package com.tvm.reportrendering.template;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders transaction rows with the {@code #numbers} / {@code #temporals} expressions the
+ * statement templates used before and with {@code #fmt}, through the Spring template engine as
+ * in the application. Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=FormatBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatBenchmark {
+
+    private static final String STANDARD_ROWS = """
+            <tr th:each="t : ${transactions}">
+              <td th:text="${#temporals.format(t.actionDate, 'yyyy-MM-dd')}"></td>
+              <td th:text="${#temporals.format(t.valueDate, 'yyyy-MM-dd')}"></td>
+              <td th:text="'$' + ${#numbers.formatDecimal(t.creditAmount, 1, 'COMMA', 2, 'POINT')}"></td>
+              <td th:text="'$' + ${#numbers.formatDecimal(t.balance, 1, 'COMMA', 2, 'POINT')}"></td>
+            </tr>""";
+
+    private static final String FMT_ROWS = """
+            <tr th:each="t : ${transactions}">
+              <td th:text="${#fmt.date(t.actionDate)}"></td>
+              <td th:text="${#fmt.date(t.valueDate)}"></td>
+              <td th:text="'$' + ${#fmt.amount(t.creditAmount)}"></td>
+              <td th:text="'$' + ${#fmt.amount(t.balance)}"></td>
+            </tr>""";
+
+    public record Row(LocalDate actionDate, LocalDate valueDate, BigDecimal creditAmount, BigDecimal balance) {
+    }
+
+    @Param({"1000"})
+    public int rows;
+
+    private SpringTemplateEngine templateEngine;
+    private Context context;
+    private BigDecimal amount;
+    private Formats formats;
+
+    @Setup
+    public void setUp() {
+        templateEngine = new SpringTemplateEngine();
+        StringTemplateResolver resolver = new StringTemplateResolver();
+        // Cached, as in production, so only the expressions are measured
+        resolver.setCacheable(true);
+        templateEngine.setTemplateResolver(resolver);
+        templateEngine.addDialect(new FormatDialect());
+
+        List<Row> transactions = new ArrayList<>(rows);
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < rows; i++) {
+            transactions.add(new Row(date.plusDays(i % 365), date.plusDays(i % 365 + 1),
+                    new BigDecimal(i).movePointLeft(2), new BigDecimal(1_000_000 + i * 37L).movePointLeft(2)));
+        }
+        context = new Context(Locale.ENGLISH);
+        context.setVariable("transactions", transactions);
+
+        amount = new BigDecimal("1234567.89");
+        formats = Formats.forLocale(Locale.ENGLISH);
+    }
+
+    @Benchmark
+    public String standardExpressions() {
+        return templateEngine.process(STANDARD_ROWS, context);
+    }
+
+    @Benchmark
+    public String fmtExpressions() {
+        return templateEngine.process(FMT_ROWS, context);
+    }
+
+    @Benchmark
+    public String amountOnly() {
+        return formats.amount(amount);
+    }
+}
@@ -0,0 +1,54 @@
+package com.tvm.reportrendering.template;
+
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FormatsTest {
+
+    @Test
+    void testFormatsAmountsWithLocaleSeparators() {
+        Formats english = Formats.forLocale(Locale.ENGLISH);
+        assertEquals("1,234,567.89", english.amount(new BigDecimal("1234567.891")));
+        assertEquals("-5,000.00", english.amount(new BigDecimal("-5000")));
+        assertEquals("0.05", english.amount(new BigDecimal("0.05")));
+        assertEquals("0.50", english.amount(new BigDecimal("0.5")));
+        assertEquals("0.00", english.amount(BigDecimal.ZERO));
+        assertEquals("123.00", english.amount(new BigDecimal("123")));
+        assertEquals("0.12", english.amount(new BigDecimal("0.125")));
+        assertEquals("", english.amount(null));
+
+        assertEquals("1\u00A0234,56", Formats.forLocale(Locale.FRENCH).amount(new BigDecimal("1234.56")));
+        assertEquals("-1.234,56", Formats.forLocale(Locale.forLanguageTag("hr")).amount(new BigDecimal("-1234.56")));
+        assertEquals("1.234.567,00", Formats.forLocale(Locale.forLanguageTag("sr")).amount(new BigDecimal("1234567")));
+        assertSame(english, Formats.forLocale(Locale.ENGLISH));
+    }
+
+    @Test
+    void testFormatsDates() {
+        LocalDate date = LocalDate.of(2024, 1, 2);
+        assertEquals("2024-01-02", Formats.forLocale(Locale.FRENCH).date(date));
+        assertEquals("2 janvier 2024", Formats.forLocale(Locale.FRENCH).date(date, "d MMMM yyyy"));
+        assertEquals("", Formats.forLocale(Locale.ENGLISH).date(null));
+    }
+
+    @Test
+    void testDialectUsesContextLocale() {
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(new StringTemplateResolver());
+        templateEngine.addDialect(new FormatDialect());
+        Context context = new Context(Locale.forLanguageTag("hr"), Map.of(
+                "amount", new BigDecimal("5000"), "date", LocalDate.of(2024, 1, 31)));
+
+        assertEquals("<p>5.000,00 2024-01-31</p>",
+                templateEngine.process("<p th:text=\"${#fmt.amount(amount)} + ' ' + ${#fmt.date(date)}\"></p>", context));
+    }
+}
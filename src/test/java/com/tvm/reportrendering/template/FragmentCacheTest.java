@@ -0,0 +1,167 @@
+package com.tvm.reportrendering.template;
+
+import com.tvm.reportrendering.config.TemplateProperties;
+import com.tvm.reportrendering.reports.statement.StatementModel;
+import com.tvm.reportrendering.reports.statement.StatementReport;
+import com.tvm.reportrendering.service.LabelRegistry;
+import com.tvm.reportrendering.service.TemplatesChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FragmentCacheTest {
+
+    private TemplateProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private LabelRegistry labelRegistry;
+    private Map<String, String> labels;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TemplateProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        labelRegistry = new LabelRegistry(properties);
+        labelRegistry.load();
+        labels = labelRegistry.getLabels("statement", "en");
+    }
+
+    @Test
+    void testRendersOnlyChangedAccountsAgain() throws IOException {
+        FragmentCache cache = new FragmentCache(properties, meterRegistry);
+        CompiledTemplate cached = new CompiledTemplates(properties, null, cache).get("statement/html");
+        CompiledTemplate uncached = new CompiledTemplates().get("statement/html");
+
+        String first = render(cached, sample());
+        assertEquals(render(uncached, sample()), first);
+        assertEquals(0, hits());
+        assertEquals(3, misses());
+
+        StatementModel changed = sample();
+        changed.getAccounts().get(1).getTransactions().get(0).setDescription("Changed <description>");
+        String second = render(cached, changed);
+
+        assertEquals(render(uncached, changed), second);
+        assertTrue(second.contains("Changed &lt;description&gt;"));
+        assertEquals(2, hits());
+        assertEquals(4, misses());
+        assertEquals(2.0 / 6, cache.getHitRatio(), 1e-9);
+
+        // Another language has other labels and number formats
+        String french = render(cached, sample(), Locale.FRENCH, Map.of("labels", frenchLabels()));
+        assertEquals(render(uncached, sample(), Locale.FRENCH, Map.of("labels", frenchLabels())), french);
+        assertEquals(2, hits());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedFragmentsBeyondMaxSize() {
+        properties.getFragments().setMaxSize(DataSize.ofBytes(500));
+        FragmentCache cache = new FragmentCache(properties, meterRegistry);
+
+        // 160 bytes for the key and 40 for the fragment
+        cache.put(key(cache, "a"), "a".repeat(20));
+        cache.put(key(cache, "b"), "b".repeat(20));
+        assertNotNull(cache.get(key(cache, "a")));
+        cache.put(key(cache, "c"), "c".repeat(20));
+
+        assertNull(cache.get(key(cache, "b")));
+        assertNotNull(cache.get(key(cache, "a")));
+        assertNotNull(cache.get(key(cache, "c")));
+        assertEquals(400, cache.getSizeBytes());
+        assertEquals(1, meterRegistry.get("report.template.fragments.evictions").counter().count());
+
+        // Larger than the whole cache
+        cache.put(key(cache, "d"), "d".repeat(200));
+        assertNull(cache.get(key(cache, "d")));
+
+        cache.onTemplatesChanged(new TemplatesChangedEvent(this, Set.of("statement")));
+        assertEquals(0, cache.getSizeBytes());
+        assertNull(cache.get(key(cache, "a")));
+    }
+
+    @Test
+    void testKeysAreDigestsOfTheItemAndContext() throws IOException {
+        FragmentCache cache = new FragmentCache(properties, meterRegistry);
+        StatementModel.Account account = sample().getAccounts().get(0);
+        byte[] context = cache.contextDigest(List.of(labels));
+
+        FragmentCache.Key key = cache.key("test", Locale.ENGLISH, context, account);
+        assertEquals(32, key.digest().length());
+        // Equal content in other instances, with map entries in another order
+        Map<String, String> reordered = new LinkedHashMap<>();
+        labels.keySet().stream().sorted(Comparator.reverseOrder()).forEach(name -> reordered.put(name, labels.get(name)));
+        assertEquals(key, cache.key("test", Locale.ENGLISH, cache.contextDigest(List.of(reordered)),
+                sample().getAccounts().get(0)));
+
+        account.getTransactions().get(0).setDescription("Changed");
+        assertNotEquals(key, cache.key("test", Locale.ENGLISH, context, account));
+        assertNotEquals(key, cache.key("test", Locale.ENGLISH, cache.contextDigest(List.of(frenchLabels())),
+                sample().getAccounts().get(0)));
+    }
+
+    @Test
+    void testCachesOnlyConfiguredLoopsOfContentComparableItems() throws IOException {
+        properties.getFragments().setIterables(List.of("items"));
+        FragmentCache cache = new FragmentCache(properties, meterRegistry);
+        String template = "<p th:each=\"item : ${items}\" th:text=\"${item}\"></p><i th:each=\"x : ${others}\" th:text=\"${x}\"></i>";
+        CompiledTemplate compiled = TemplateCompiler.compile(template, "test", cache);
+
+        Map<String, Object> variables = Map.of("items", List.of("a", new Object()), "others", List.of("b"));
+        StringWriter writer = new StringWriter();
+        compiled.render(variables, Locale.ENGLISH, writer);
+
+        assertTrue(writer.toString().startsWith("<p>a</p><p>java.lang.Object@"));
+        // Only "a": the Object compares by identity and "others" is not configured
+        assertEquals(1, misses());
+        assertFalse(cache.caches("others"));
+    }
+
+    private StatementModel sample() throws IOException {
+        try (InputStream inputStream = new ClassPathResource("sample-statement.json").getInputStream()) {
+            return new StatementReport().parse(inputStream);
+        }
+    }
+
+    private Map<String, String> frenchLabels() {
+        return labelRegistry.getLabels("statement", "fr");
+    }
+
+    private String render(CompiledTemplate template, StatementModel model) throws IOException {
+        return render(template, model, Locale.ENGLISH, Map.of());
+    }
+
+    private String render(CompiledTemplate template, StatementModel model, Locale locale,
+                          Map<String, Object> overrides) throws IOException {
+        Map<String, Object> variables = new HashMap<>(Map.of("model", model, "labels", labels));
+        variables.putAll(overrides);
+        StringWriter writer = new StringWriter();
+        template.render(variables, locale, writer);
+        return writer.toString();
+    }
+
+    private static FragmentCache.Key key(FragmentCache cache, String content) {
+        return cache.key("test", Locale.ENGLISH, cache.contextDigest(List.of()), content);
+    }
+
+    private double hits() {
+        return meterRegistry.get("report.template.fragments.gets").tag("result", "hit").counter().count();
+    }
+
+    private double misses() {
+        return meterRegistry.get("report.template.fragments.gets").tag("result", "miss").counter().count();
+    }
+}
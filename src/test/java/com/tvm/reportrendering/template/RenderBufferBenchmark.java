@@ -0,0 +1,82 @@
+package com.tvm.reportrendering.template;
+
+import com.tvm.reportrendering.config.TemplateProperties;
+import com.tvm.reportrendering.service.LabelRegistry;
+import com.tvm.reportrendering.util.RenderBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the compiled statement {@code html} template into a String, as for PDF, and into a
+ * stream, as for HTML responses: with a new {@code StringWriter} / {@code OutputStreamWriter} per
+ * render and with {@link RenderBuffers}. {@code gc.alloc.rate.norm} in the output (the benchmark
+ * profile runs JMH's GC profiler) is the allocation per render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBufferBenchmark {
+
+    @Param({"1000"})
+    public int transactions;
+
+    private CompiledTemplate compiled;
+    private Map<String, Object> variables;
+    private final OutputStream response = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setUp() {
+        compiled = new CompiledTemplates().get("statement/html");
+        LabelRegistry labels = new LabelRegistry(new TemplateProperties());
+        labels.load();
+        variables = Map.of("model", CompiledTemplateBenchmark.statement(transactions),
+                "labels", labels.getLabels("statement", "en"));
+    }
+
+    @Benchmark
+    public String stringWriter() throws IOException {
+        StringWriter writer = new StringWriter();
+        compiled.render(variables, Locale.ENGLISH, writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String pooledString() throws IOException {
+        return RenderBuffers.render(writer -> compiled.render(variables, Locale.ENGLISH, writer));
+    }
+
+    @Benchmark
+    public void outputStreamWriter() throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response, StandardCharsets.UTF_8), 64 * 1024);
+        compiled.render(variables, Locale.ENGLISH, writer);
+        writer.flush();
+    }
+
+    @Benchmark
+    public void pooledStream() throws IOException {
+        RenderBuffers.stream(response, writer -> compiled.render(variables, Locale.ENGLISH, writer));
+    }
+}
@@ -0,0 +1,25 @@
+package com.tvm.reportrendering.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvWriterTest {
+
+    @Test
+    void testQuotesOnlyFieldsThatNeedIt() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        CsvWriter csv = new CsvWriter(outputStream);
+
+        csv.row("plain", "with,comma", "say \"hi\"", "two\nlines", null, "");
+        csv.field("Назив").field("x").endRow();
+        csv.flush();
+
+        assertEquals("plain,\"with,comma\",\"say \"\"hi\"\"\",\"two\nlines\",,\r\nНазив,x\r\n",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+}
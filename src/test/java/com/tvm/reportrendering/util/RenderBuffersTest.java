@@ -0,0 +1,58 @@
+package com.tvm.reportrendering.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderBuffersTest {
+
+    @Test
+    void testRenderReturnsWhatWasWrittenAndReusesTheBuffer() throws IOException {
+        assertEquals("<p>Ђурђевак</p>", RenderBuffers.render(writer -> {
+            writer.write("<p>");
+            writer.write("Ђурђевак".toCharArray());
+            writer.write("</p>");
+        }));
+        assertEquals("x", RenderBuffers.render(writer -> writer.write('x')));
+
+        String large = "a".repeat(5 * 1024 * 1024);
+        assertEquals(large, RenderBuffers.render(writer -> writer.write(large)));
+        assertEquals("", RenderBuffers.render(writer -> {
+        }));
+    }
+
+    @Test
+    void testStreamEncodesUtf8LikeOutputStreamWriter() throws IOException {
+        // Spans several buffers, with surrogate pairs split across writes and unpaired surrogates
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("a é € 😀 ").append(i);
+        }
+        String[] writes = {text.toString(), "x\uD83D", "\uDE00y", "\uDE00", "z\uD83D", "\uD83D"};
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(expected, StandardCharsets.UTF_8)) {
+            for (String write : writes) {
+                writer.write(write);
+            }
+        }
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        RenderBuffers.stream(actual, writer -> {
+            for (String write : writes) {
+                writer.write(write);
+            }
+        });
+
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        RenderBuffers.stream(again, writer -> writer.write("é"));
+        assertArrayEquals("é".getBytes(StandardCharsets.UTF_8), again.toByteArray());
+    }
+}